@@ -1,7 +1,5 @@
 package Client;
 
-import javafx.scene.image.Image;
-
 public class AnimationStateMachine {
     public enum AnimationType {
         // Basic states
@@ -21,51 +19,51 @@ public class AnimationStateMachine {
         KNOCKBACK, RECOVER, WIN, DEAD
     }
 
-    public static class AnimationState {
-        public AnimationType type;
-        public int frameCount;
-        public int currentFrame;
-        public long frameStartTime;
-        public int frameDelay; // milliseconds per frame
-        public boolean canBeInterrupted;
-        public boolean loops;
-        public AnimationType nextState;
-        public boolean isFinished;
-
-        public AnimationState(AnimationType type, int frameCount, int frameDelay,
-                              boolean canBeInterrupted, boolean loops) {
+    /** The fixed part of an animation for one character: length, speed and what follows it. */
+    public static final class AnimationDef {
+        public final AnimationType type;
+        public final int frameCount;
+        public final int frameDelay; // milliseconds per frame
+        public final int framesPerSprite; // frameDelay in simulation frames
+        public final boolean canBeInterrupted;
+        public final boolean loops;
+        public final AnimationType nextState; // null stays on the last frame
+
+        AnimationDef(AnimationType type, int frameCount, int frameDelay,
+                     boolean canBeInterrupted, boolean loops, AnimationType nextState) {
             this.type = type;
             this.frameCount = frameCount;
             this.frameDelay = frameDelay;
+            this.framesPerSprite = Math.max(1, Math.round(frameDelay * MatchSimulation.SIM_HZ / 1000f));
             this.canBeInterrupted = canBeInterrupted;
             this.loops = loops;
-            this.currentFrame = 0;
-            this.frameStartTime = System.currentTimeMillis();
-            this.nextState = AnimationType.IDLE;
-            this.isFinished = false;
+            this.nextState = nextState;
         }
+    }
 
-        public void reset() {
-            this.currentFrame = 0;
-            this.frameStartTime = System.currentTimeMillis();
-            this.isFinished = false;
-        }
+    /** Snapshot of the playback cursor, for replays and rollback. */
+    public static class AnimationState {
+        public AnimationType type;
+        public int currentFrame;
+        public int elapsedFrames;
+        public boolean isFinished;
     }
 
-    public AnimationState currentState;
+    private static final AnimationDef[] RYU_DEFS = createDefinitions(true);
+    private static final AnimationDef[] KEN_DEFS = createDefinitions(false);
+
     private final String characterName;
-    private final AssetManager assetManager;
-    private final boolean isRyu; // If ryu true, then ken false
+    private final AnimationDef[] defs;
+
+    // Playback cursor
+    private AnimationDef current;
+    private int currentFrame;
+    private int elapsedFrames;  // simulation frames since the animation started
+    private boolean isFinished;
 
     public AnimationStateMachine(String characterName) {
         this.characterName = characterName;
-        this.assetManager = AssetManager.getInstance();
-        this.isRyu = characterName.toUpperCase().equals("RYU");
-
-        // Ensure AssetManager is initialized
-        if (!assetManager.isInitialized()) {
-            assetManager.initialize();
-        }
+        this.defs = characterName.toUpperCase().equals("RYU") ? RYU_DEFS : KEN_DEFS;
 
         transition(AnimationType.IDLE, true);
     }
@@ -73,137 +71,94 @@ public class AnimationStateMachine {
 
     public void transition(AnimationType newType, boolean force) {
 
-        if (currentState != null && currentState.type == newType && !force && !currentState.isFinished) {
+        if (current != null && current.type == newType && !force && !isFinished) {
             return;
         }
 
-        if (!force && currentState != null && !currentState.canBeInterrupted && !currentState.isFinished) {
+        if (!force && current != null && !current.canBeInterrupted && !isFinished) {
             return;
         }
 
-        AnimationState newState = createAnimationState(newType);
-        if (newState != null) {
-            currentState = newState;
-        }
+        current = defs[newType.ordinal()];
+        currentFrame = 0;
+        elapsedFrames = 0;
+        isFinished = false;
     }
 
-    private AnimationState createAnimationState(AnimationType type) {
-
-        //Actual frame count from Sprites.
-        int actualFrameCount = getActualFrameCount(type);
+    private static AnimationDef[] createDefinitions(boolean isRyu) {
+        AnimationType[] types = AnimationType.values();
+        AnimationDef[] defs = new AnimationDef[types.length];
+        for (AnimationType type : types) {
+            defs[type.ordinal()] = createDefinition(type, getActualFrameCount(type, isRyu));
+        }
+        return defs;
+    }
 
+    private static AnimationDef createDefinition(AnimationType type, int frameCount) {
         switch (type) {
             // Basic movement
             case IDLE:
-                return new AnimationState(type, actualFrameCount, 150, true, true);
+                return new AnimationDef(type, frameCount, 150, true, true, AnimationType.IDLE);
 
             case PARRY_FORWARD:
             case PARRY_F:
-                return new AnimationState(type, actualFrameCount, 120, true, true);
+                return new AnimationDef(type, frameCount, 120, true, true, AnimationType.IDLE);
 
             case PARRY_BACKWARD:
             case PARRY_B:
-                return new AnimationState(type, actualFrameCount, 120, true, true);
+                return new AnimationDef(type, frameCount, 120, true, true, AnimationType.IDLE);
 
             case JUMP:
-                AnimationState jump = new AnimationState(type, actualFrameCount, 150, false, false);
-                jump.nextState = AnimationType.IDLE;
-                return jump;
+                return new AnimationDef(type, frameCount, 150, false, false, AnimationType.IDLE);
 
             // Flips
             case FRONT_FLIP:
             case BACK_FLIP:
-                AnimationState flip = new AnimationState(type, actualFrameCount, 150, false, false);
-                flip.nextState = AnimationType.IDLE;
-                return flip;
+                return new AnimationDef(type, frameCount, 150, false, false, AnimationType.IDLE);
 
             // Ground attacks
             case PUNCH:
-                AnimationState punch = new AnimationState(type, actualFrameCount, 100, false, false);
-                punch.nextState = AnimationType.IDLE;
-                return punch;
+                return new AnimationDef(type, frameCount, 100, false, false, AnimationType.IDLE);
 
             case QUICK_PUNCH:
-                AnimationState qPunch = new AnimationState(type, actualFrameCount, 80, false, false);
-                qPunch.nextState = AnimationType.IDLE;
-                return qPunch;
-
+                return new AnimationDef(type, frameCount, 80, false, false, AnimationType.IDLE);
 
             case UPPERCUT:
-                AnimationState uppercut = new AnimationState(type, actualFrameCount, 120, false, false);
-                uppercut.nextState = AnimationType.IDLE;
-                return uppercut;
-
             case KICK_LOW:
-                AnimationState lowKick = new AnimationState(type, actualFrameCount, 120, false, false);
-                lowKick.nextState = AnimationType.IDLE;
-                return lowKick;
-
             case UPPER_KICK:
-                AnimationState upperKick = new AnimationState(type, actualFrameCount, 120, false, false);
-                upperKick.nextState = AnimationType.IDLE;
-                return upperKick;
+                return new AnimationDef(type, frameCount, 120, false, false, AnimationType.IDLE);
 
             // Air attacks
             case AIR_PUNCH:
-                AnimationState airPunch = new AnimationState(type, actualFrameCount, 150, false, false);
-                airPunch.nextState = AnimationType.JUMP;
-                return airPunch;
-
             case AIR_KICK:
-                AnimationState airKick = new AnimationState(type, actualFrameCount, 150, false, false);
-                airKick.nextState = AnimationType.JUMP;
-                return airKick;
-
             case PUNCH_DOWN:
-                AnimationState punchDown = new AnimationState(type, actualFrameCount, 150, false, false);
-                punchDown.nextState = AnimationType.JUMP;
-                return punchDown;
+                return new AnimationDef(type, frameCount, 150, false, false, AnimationType.JUMP);
 
             // Hit reactions
             case HIT_STAND:
-                AnimationState hitStand = new AnimationState(type, actualFrameCount, 150, false, false);
-                hitStand.nextState = AnimationType.IDLE;
-                return hitStand;
+                return new AnimationDef(type, frameCount, 150, false, false, AnimationType.IDLE);
 
             case HIT_STAND_BACK:
-                AnimationState hitStandBack = new AnimationState(type, actualFrameCount, 120, false, false);
-                hitStandBack.nextState = AnimationType.IDLE;
-                return hitStandBack;
-
+                return new AnimationDef(type, frameCount, 120, false, false, AnimationType.IDLE);
 
             case KNOCKBACK:
-                AnimationState knockback = new AnimationState(type, actualFrameCount, 150, false, false);
-                knockback.nextState = AnimationType.RECOVER;
-                return knockback;
+                return new AnimationDef(type, frameCount, 150, false, false, AnimationType.RECOVER);
 
             case RECOVER:
-                AnimationState recover = new AnimationState(type, actualFrameCount, 120, false, false);
-                recover.nextState = AnimationType.IDLE;
-                return recover;
+                return new AnimationDef(type, frameCount, 120, false, false, AnimationType.IDLE);
 
             case WIN:
-                AnimationState win = new AnimationState(type, actualFrameCount, 200, false, false); // Slower frames, non-looping
-                win.nextState = null; // Stay in win state permanently
-                return win;
+                return new AnimationDef(type, frameCount, 200, false, false, null); // Slower frames, stay in win state permanently
 
             case DEAD:
-                AnimationState dead = new AnimationState(type, actualFrameCount, 150, false, false); // Non-looping death animation
-                dead.nextState = null; // Stay dead permanently
-                return dead;
+                return new AnimationDef(type, frameCount, 150, false, false, null); // Stay dead permanently
 
             default:
-                return new AnimationState(AnimationType.IDLE, getActualFrameCount(AnimationType.IDLE), 150, true, true);
+                return new AnimationDef(AnimationType.IDLE, frameCount, 150, true, true, AnimationType.IDLE);
         }
     }
-    private int getActualFrameCount(AnimationType type) {
-        String animName = getAnimationName(type);
-        Image[] animation = assetManager.getAnimation(characterName, animName);
-
-        if (animation != null && animation.length > 0) {
-            return animation.length;
-        }
 
+    private static int getActualFrameCount(AnimationType type, boolean isRyu) {
         switch (type) {
             case IDLE: return 6;
             case PARRY_FORWARD:
@@ -231,45 +186,29 @@ public class AnimationStateMachine {
         }
     }
 
-    public Image getCurrentFrame() {
-        if (currentState == null) return null;
-
-        long currentTime = System.currentTimeMillis();
-        long timeSinceStart = currentTime - currentState.frameStartTime;
-        int targetFrame = (int) (timeSinceStart / currentState.frameDelay);
+    /** Advance the current animation by one simulation frame. */
+    public void tick() {
+        elapsedFrames++;
+        int targetFrame = elapsedFrames / current.framesPerSprite;
 
-        if (currentState.loops) {
-            currentState.currentFrame = targetFrame % currentState.frameCount;
+        if (current.loops) {
+            currentFrame = targetFrame % current.frameCount;
         } else {
-            if (targetFrame >= currentState.frameCount) {
-                currentState.currentFrame = currentState.frameCount - 1;
-                currentState.isFinished = true;
+            if (targetFrame >= current.frameCount) {
+                currentFrame = current.frameCount - 1;
+                isFinished = true;
 
                 // Auto-transition to next state if specified
-                if (currentState.nextState != null && currentState.nextState != currentState.type) {
-                    transition(currentState.nextState, true);
-                    return getCurrentFrame();
+                if (current.nextState != null && current.nextState != current.type) {
+                    transition(current.nextState, true);
                 }
             } else {
-                currentState.currentFrame = targetFrame;
+                currentFrame = targetFrame;
             }
         }
-
-        String animName = getAnimationName(currentState.type);
-        Image[] animation = assetManager.getAnimation(characterName, animName);
-
-        if (animation != null && animation.length > 0 && currentState.currentFrame < animation.length) {
-            return animation[currentState.currentFrame];
-        }
-
-        if (animation != null && animation.length > 0) {
-            return animation[0];
-        }
-
-        return null;
     }
 
-    private String getAnimationName(AnimationType type) {
+    public static String getAnimationName(AnimationType type) {
         switch (type) {
             case IDLE: return "idle";
             case PARRY_FORWARD:
@@ -297,54 +236,72 @@ public class AnimationStateMachine {
         }
     }
 
+    public String getCharacterName() {
+        return characterName;
+    }
+
+    public AnimationDef getCurrentDefinition() {
+        return current;
+    }
+
     public AnimationType getCurrentAnimationType() {
-        return currentState != null ? currentState.type : AnimationType.IDLE;
+        return current.type;
     }
 
     public boolean isAnimationFinished() {
-        return currentState != null && currentState.isFinished;
+        return isFinished;
     }
 
     public boolean canInterrupt() {
-        return currentState == null || currentState.canBeInterrupted || currentState.isFinished;
+        return current.canBeInterrupted || isFinished;
     }
 
     public int getCurrentFrameIndex() {
-        return currentState != null ? currentState.currentFrame : 0;
+        return currentFrame;
     }
 
     public boolean isInFrameRange(int startFrame, int endFrame) {
-        if (currentState == null) return false;
-        return currentState.currentFrame >= startFrame &&
-                currentState.currentFrame <= endFrame;
+        return currentFrame >= startFrame && currentFrame <= endFrame;
     }
 
 
-    public boolean isInActiveFrames() {
-        if (currentState == null) return false;
+    public int getElapsedFrames() {
+        return elapsedFrames;
+    }
 
-        CombatSystem.AttackData attackData = CombatSystem.getAttackData(currentState.type);
-        if (attackData == null) return false;
+    // Length of the current animation in simulation frames
+    public int getAnimationDuration() {
+        return current.frameCount * current.framesPerSprite;
+    }
 
-        return CombatSystem.isAttackActive(currentState.type, currentState.frameStartTime);
+    // Rollback support: copy the cursor out into a reusable snapshot, or restore it from one
+    public AnimationState saveState(AnimationState dst) {
+        if (dst == null) dst = new AnimationState();
+        dst.type = current.type;
+        dst.currentFrame = currentFrame;
+        dst.elapsedFrames = elapsedFrames;
+        dst.isFinished = isFinished;
+        return dst;
     }
 
-    public long getAnimationDuration() {
-        if (currentState == null) return 0;
-        return (long) currentState.frameCount * currentState.frameDelay;
+    public void loadState(AnimationState saved) {
+        current = defs[saved.type.ordinal()];
+        currentFrame = saved.currentFrame;
+        elapsedFrames = saved.elapsedFrames;
+        isFinished = saved.isFinished;
     }
 
     public void resetCurrentAnimation() {
-        if (currentState != null) {
-            currentState.reset();
-        }
+        currentFrame = 0;
+        elapsedFrames = 0;
+        isFinished = false;
     }
 
 
     public void finishCurrentAnimation() {
-        if (currentState != null && !currentState.loops) {
-            currentState.currentFrame = currentState.frameCount - 1;
-            currentState.isFinished = true;
+        if (!current.loops) {
+            currentFrame = current.frameCount - 1;
+            isFinished = true;
         }
     }
-}
\ No newline at end of file
+}
@@ -8,6 +8,8 @@ public class AssetManager {
     private static AssetManager instance;
     private Map<String, Map<String, Image[]>> characterAnimations = new HashMap<>();
     private Map<String, Image> backgrounds = new HashMap<>();
+    // Per character, sprite frames indexed by AnimationType ordinal
+    private Map<String, Image[][]> frameTables = new HashMap<>();
     private boolean initialized = false;
 
     private AssetManager() {}
@@ -241,6 +243,25 @@ public class AssetManager {
         return null;
     }
 
+    /**
+     * All of a character's animations resolved up front, indexed by
+     * {@link AnimationStateMachine.AnimationType} ordinal, so renderers can
+     * fetch a frame with two array loads instead of string-keyed map lookups.
+     */
+    public Image[][] getAnimationFrames(String character) {
+        String name = character.toUpperCase();
+        Image[][] frames = frameTables.get(name);
+        if (frames == null) {
+            AnimationStateMachine.AnimationType[] types = AnimationStateMachine.AnimationType.values();
+            frames = new Image[types.length][];
+            for (AnimationStateMachine.AnimationType type : types) {
+                frames[type.ordinal()] = getAnimation(name, AnimationStateMachine.getAnimationName(type));
+            }
+            frameTables.put(name, frames);
+        }
+        return frames;
+    }
+
     public void loadBackground(String mapName, String imagePath) {
         try {
             Image bg = ImageLoader.loadImage(imagePath);
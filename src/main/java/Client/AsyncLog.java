@@ -0,0 +1,250 @@
+package Client;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logging for the networking code that never blocks the thread that logs.
+ *
+ * A call below the current level returns straight away. Otherwise it claims a
+ * slot in a fixed ring with one CAS, stores the pattern and up to four
+ * arguments and publishes it; a single writer thread formats the entries
+ * ({@code {}} placeholders are filled in there, not by the caller) and prints
+ * them in batches. If the ring is full the message is dropped and counted
+ * rather than waiting for the console, and the writer reports how many were
+ * lost.
+ *
+ * Warnings and errors are rate limited per pattern, so a flood of bad packets
+ * prints a few lines a second plus a count of the ones held back instead of
+ * one line per packet. DEBUG and INFO go to stdout, WARN and ERROR to stderr.
+ *
+ * The level starts from the {@code log.level} system property, INFO if unset.
+ */
+public final class AsyncLog {
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final int CAPACITY = 8192; // power of two
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_PARK_NANOS = 100_000_000L;
+    private static final long FLUSH_TIMEOUT_NANOS = 1_000_000_000L;
+    private static final int RATE_LIMIT_PER_SECOND = 10;
+    private static final DateTimeFormatter TIME =
+            DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final class Entry {
+        volatile long sequence = -1; // set last; the writer reads the slot only once it matches
+        Level level;
+        long millis;
+        String pattern;
+        int argCount;
+        Object a, b, c, d;
+        long suppressed;
+    }
+
+    // One per warn/error pattern; patterns are constants, so this stays small
+    private static final class Limiter {
+        final AtomicLong second = new AtomicLong();
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicLong suppressed = new AtomicLong();
+    }
+
+    private static final Entry[] ring = new Entry[CAPACITY];
+    private static final AtomicLong tail = new AtomicLong();  // next sequence to claim
+    private static volatile long head = 0;                    // next sequence to print; writer only
+    private static final LongAdder dropped = new LongAdder();
+    private static final ConcurrentHashMap<String, Limiter> limiters = new ConcurrentHashMap<>();
+    private static volatile Level level = parseLevel(System.getProperty("log.level"), Level.INFO);
+    private static volatile boolean writerParked = false;
+    private static final Thread writer;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) ring[i] = new Entry();
+        writer = new Thread(AsyncLog::writeLoop, "Log-Writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(AsyncLog::flush, "Log-Flush"));
+    }
+
+    private AsyncLog() {
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static boolean isEnabled(Level l) {
+        return l.ordinal() >= level.ordinal();
+    }
+
+    /** Level by name, e.g. "debug"; {@code fallback} if null or unknown. */
+    public static Level parseLevel(String name, Level fallback) {
+        if (name == null) return fallback;
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+
+    public static long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public static void debug(String pattern) { log(Level.DEBUG, pattern, 0, null, null, null, null); }
+    public static void debug(String pattern, Object a) { log(Level.DEBUG, pattern, 1, a, null, null, null); }
+    public static void debug(String pattern, Object a, Object b) { log(Level.DEBUG, pattern, 2, a, b, null, null); }
+    public static void debug(String pattern, Object a, Object b, Object c) { log(Level.DEBUG, pattern, 3, a, b, c, null); }
+    public static void debug(String pattern, Object a, Object b, Object c, Object d) { log(Level.DEBUG, pattern, 4, a, b, c, d); }
+
+    public static void info(String pattern) { log(Level.INFO, pattern, 0, null, null, null, null); }
+    public static void info(String pattern, Object a) { log(Level.INFO, pattern, 1, a, null, null, null); }
+    public static void info(String pattern, Object a, Object b) { log(Level.INFO, pattern, 2, a, b, null, null); }
+    public static void info(String pattern, Object a, Object b, Object c) { log(Level.INFO, pattern, 3, a, b, c, null); }
+    public static void info(String pattern, Object a, Object b, Object c, Object d) { log(Level.INFO, pattern, 4, a, b, c, d); }
+
+    public static void warn(String pattern) { log(Level.WARN, pattern, 0, null, null, null, null); }
+    public static void warn(String pattern, Object a) { log(Level.WARN, pattern, 1, a, null, null, null); }
+    public static void warn(String pattern, Object a, Object b) { log(Level.WARN, pattern, 2, a, b, null, null); }
+    public static void warn(String pattern, Object a, Object b, Object c) { log(Level.WARN, pattern, 3, a, b, c, null); }
+    public static void warn(String pattern, Object a, Object b, Object c, Object d) { log(Level.WARN, pattern, 4, a, b, c, d); }
+
+    public static void error(String pattern) { log(Level.ERROR, pattern, 0, null, null, null, null); }
+    public static void error(String pattern, Object a) { log(Level.ERROR, pattern, 1, a, null, null, null); }
+    public static void error(String pattern, Object a, Object b) { log(Level.ERROR, pattern, 2, a, b, null, null); }
+    public static void error(String pattern, Object a, Object b, Object c) { log(Level.ERROR, pattern, 3, a, b, c, null); }
+    public static void error(String pattern, Object a, Object b, Object c, Object d) { log(Level.ERROR, pattern, 4, a, b, c, d); }
+
+    private static void log(Level l, String pattern, int argCount, Object a, Object b, Object c, Object d) {
+        if (l.ordinal() < level.ordinal()) return;
+
+        long suppressed = 0;
+        if (l.ordinal() >= Level.WARN.ordinal()) {
+            Limiter limiter = limiters.computeIfAbsent(pattern, k -> new Limiter());
+            long second = System.nanoTime() / 1_000_000_000L;
+            long current = limiter.second.get();
+            if (current != second && limiter.second.compareAndSet(current, second)) limiter.count.set(0);
+            if (limiter.count.incrementAndGet() > RATE_LIMIT_PER_SECOND) {
+                limiter.suppressed.incrementAndGet();
+                return;
+            }
+            suppressed = limiter.suppressed.getAndSet(0);
+        }
+
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head >= CAPACITY) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+
+        Entry e = ring[(int) (seq & MASK)];
+        e.level = l;
+        e.millis = System.currentTimeMillis();
+        e.pattern = pattern;
+        e.argCount = argCount;
+        e.a = a;
+        e.b = b;
+        e.c = c;
+        e.d = d;
+        e.suppressed = suppressed;
+        e.sequence = seq;
+        if (writerParked) LockSupport.unpark(writer);
+    }
+
+    /** Waits, up to a second, until everything logged so far has been printed. */
+    public static void flush() {
+        long target = tail.get();
+        long deadline = System.nanoTime() + FLUSH_TIMEOUT_NANOS;
+        while (head < target && System.nanoTime() - deadline < 0) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(1_000_000L);
+        }
+    }
+
+    private static void writeLoop() {
+        StringBuilder out = new StringBuilder(4096);
+        StringBuilder err = new StringBuilder(1024);
+        long reportedDrops = 0;
+
+        while (true) {
+            long h = head;
+            Entry e = ring[(int) (h & MASK)];
+            if (e.sequence != h) {
+                // Nothing published: print the batch, then sleep until a producer wakes us
+                long drops = dropped.sum();
+                if (drops != reportedDrops) {
+                    appendTime(err, System.currentTimeMillis()).append("WARN  ")
+                            .append(drops - reportedDrops).append(" log messages dropped, ring full\n");
+                    reportedDrops = drops;
+                }
+                print(System.out, out);
+                print(System.err, err);
+
+                writerParked = true;
+                if (e.sequence != h) LockSupport.parkNanos(IDLE_PARK_NANOS);
+                writerParked = false;
+                continue;
+            }
+
+            // Keep stdout and stderr lines in order relative to each other
+            boolean toErr = e.level.ordinal() >= Level.WARN.ordinal();
+            StringBuilder sb = toErr ? err : out;
+            if (toErr && out.length() > 0) print(System.out, out);
+            if (!toErr && err.length() > 0) print(System.err, err);
+
+            appendTime(sb, e.millis).append(e.level.name());
+            for (int pad = e.level.name().length(); pad < 6; pad++) sb.append(' ');
+            appendMessage(sb, e);
+            if (e.suppressed > 0) sb.append(" (").append(e.suppressed).append(" similar suppressed)");
+            sb.append('\n');
+
+            e.pattern = null;
+            e.a = null;
+            e.b = null;
+            e.c = null;
+            e.d = null;
+            head = h + 1;
+
+            if (sb.length() > 16384) print(toErr ? System.err : System.out, sb);
+        }
+    }
+
+    private static StringBuilder appendTime(StringBuilder sb, long millis) {
+        TIME.formatTo(Instant.ofEpochMilli(millis), sb);
+        return sb.append(' ');
+    }
+
+    private static void appendMessage(StringBuilder sb, Entry e) {
+        String p = e.pattern;
+        int arg = 0;
+        int from = 0;
+        int at;
+        while (arg < e.argCount && (at = p.indexOf("{}", from)) >= 0) {
+            sb.append(p, from, at);
+            sb.append(arg == 0 ? e.a : arg == 1 ? e.b : arg == 2 ? e.c : e.d);
+            arg++;
+            from = at + 2;
+        }
+        sb.append(p, from, p.length());
+    }
+
+    private static void print(PrintStream stream, StringBuilder sb) {
+        if (sb.length() == 0) return;
+        stream.print(sb);
+        stream.flush();
+        sb.setLength(0);
+    }
+}
@@ -17,6 +17,8 @@ public class AudioManager {
     private static double bgmVolume = 0.1;
     private static double sfxVolume = 0.3;
     private static boolean soundEnabled = true;
+    // Set while rollback re-simulates frames so replayed hits don't play twice
+    private static boolean sfxSuppressed = false;
 
     // Background Music Methods
     public static void playBGM(String filename) {
@@ -61,7 +63,7 @@ public class AudioManager {
 
     // Sound Effects Methods
     public static void playSFX(String soundName) {
-        if (!soundEnabled) return;
+        if (!soundEnabled || sfxSuppressed) return;
 
         try {
             Media media = soundCache.get(soundName);
@@ -141,6 +143,19 @@ public class AudioManager {
         playSFX("fightFX");
     }
 
+    // Plays the fight simulation's sound cues through the SFX channel
+    public static final AudioSink FIGHTER_SOUNDS = sound -> {
+        switch (sound) {
+            case JUMP: playJumpSound(); break;
+            case PUNCH: playPunchSound(); break;
+            case KICK: playKickSound(); break;
+            case HIT: playHitSound(); break;
+            case DEATH: playDeathSound(); break;
+            case P1_WIN: playP1WinSound(); break;
+            case P2_WIN: playP2WinSound(); break;
+        }
+    };
+
     // Volume
     public static void setBGMVolume(double volume) {
         bgmVolume = Math.max(0.0, Math.min(1.0, volume));
@@ -172,6 +187,10 @@ public class AudioManager {
         activePlayers.clear();
     }
 
+    public static void setSFXSuppressed(boolean suppressed) {
+        sfxSuppressed = suppressed;
+    }
+
     public static double getBGMVolume() {
         return bgmVolume;
     }
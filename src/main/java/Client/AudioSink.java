@@ -0,0 +1,15 @@
+package Client;
+
+/**
+ * Receives the sound cues raised by the fight simulation, so the simulation
+ * itself never touches JavaFX media.
+ */
+public interface AudioSink {
+    enum Sound {
+        JUMP, PUNCH, KICK, HIT, DEATH, P1_WIN, P2_WIN
+    }
+
+    void play(Sound sound);
+
+    AudioSink SILENT = sound -> { };
+}
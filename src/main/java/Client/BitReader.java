@@ -0,0 +1,37 @@
+package Client;
+
+import java.nio.ByteBuffer;
+
+/** Reads values written by {@link BitWriter}, in the same order and widths. */
+public class BitReader {
+    private ByteBuffer in;
+    private long pending;
+    private int pendingBits;
+
+    public BitReader wrap(ByteBuffer in) {
+        this.in = in;
+        pending = 0;
+        pendingBits = 0;
+        return this;
+    }
+
+    public int read(int bits) {
+        while (pendingBits < bits) {
+            pending |= (long) (in.get() & 0xFF) << pendingBits;
+            pendingBits += 8;
+        }
+        int value = (int) (pending & ((1L << bits) - 1));
+        pending >>>= bits;
+        pendingBits -= bits;
+        return value;
+    }
+
+    public boolean readBoolean() {
+        return read(1) != 0;
+    }
+
+    public int readSigned(int bits) {
+        int shift = 32 - bits;
+        return (read(bits) << shift) >> shift;
+    }
+}
@@ -0,0 +1,50 @@
+package Client;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs values of arbitrary bit width into a {@link ByteBuffer}, least
+ * significant bit first. Call {@link #flush()} once done to write out the
+ * last partial byte.
+ */
+public class BitWriter {
+    private ByteBuffer out;
+    private long pending;
+    private int pendingBits;
+
+    public BitWriter wrap(ByteBuffer out) {
+        this.out = out;
+        pending = 0;
+        pendingBits = 0;
+        return this;
+    }
+
+    /** Writes the low {@code bits} bits of {@code value}, 1 to 32 bits. */
+    public void write(int value, int bits) {
+        pending |= (value & ((1L << bits) - 1)) << pendingBits;
+        pendingBits += bits;
+        while (pendingBits >= 8) {
+            out.put((byte) pending);
+            pending >>>= 8;
+            pendingBits -= 8;
+        }
+    }
+
+    public void writeBoolean(boolean value) {
+        write(value ? 1 : 0, 1);
+    }
+
+    /** True if {@code value} survives a round trip through {@link BitReader#readSigned} of this width. */
+    public static boolean fitsSigned(int value, int bits) {
+        int limit = 1 << (bits - 1);
+        return value >= -limit && value < limit;
+    }
+
+    public void flush() {
+        if (pendingBits > 0) {
+            out.put((byte) pending);
+            pending = 0;
+            pendingBits = 0;
+        }
+    }
+}
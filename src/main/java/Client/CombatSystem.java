@@ -1,145 +1,98 @@
 package Client;
 
-import javafx.geometry.Rectangle2D;
-
 public class CombatSystem {
+    /** Attack hitbox placement relative to the attacker's position. */
+    public static class HitboxShape {
+        public final double width, height;
+        public final double yOffset;
+        public final double frontOffset;  // x offset from the attacker when facing right
+        public final double backOffset;   // distance left of the attacker when facing left
+
+        public HitboxShape(double width, double height, double yOffset, double frontOffset, double backOffset) {
+            this.width = width;
+            this.height = height;
+            this.yOffset = yOffset;
+            this.frontOffset = frontOffset;
+            this.backOffset = backOffset;
+        }
+    }
+
+    public static final HitboxShape DEFAULT_HITBOX = new HitboxShape(40, 30, 20, 50, 50);
+
+    /** Everything the combat code needs to know about one attack. Immutable. */
     public static class AttackData {
-        public int startupFrames;   // Frames before attack
-        public int activeFrames;    // Frames where attack can hit
-        public int recoveryFrames;  // Frames after attack
-        public int damage;
-        public int blockstun;
-        public int hitstun;
-        public boolean canCancel;
-        public double knockback;
-
-        public AttackData(int startup, int active, int recovery, int damage) {
+        public final int startupFrames;   // Frames before attack
+        public final int activeFrames;    // Frames where attack can hit
+        public final int recoveryFrames;  // Frames after attack
+        public final int damage;
+        public final int blockstun;
+        public final int hitstun;
+        public final boolean canCancel;
+        public final double knockback;
+        public final int priority;
+        public final HitboxShape hitbox;
+
+        // Stun and knockback derived from the damage and active frames
+        public AttackData(int startup, int active, int recovery, int damage, boolean canCancel,
+                          int priority, HitboxShape hitbox) {
+            this(startup, active, recovery, damage, Math.max(3, active + 2), Math.max(5, damage / 8),
+                    damage / 40.0, canCancel, priority, hitbox);
+        }
+
+        public AttackData(int startup, int active, int recovery, int damage, int blockstun, int hitstun,
+                          double knockback, boolean canCancel, int priority, HitboxShape hitbox) {
             this.startupFrames = startup;
             this.activeFrames = active;
             this.recoveryFrames = recovery;
             this.damage = damage;
-            this.blockstun = Math.max(3, active + 2);
-            this.hitstun = Math.max(5, damage / 8);
-            this.canCancel = false;
-            this.knockback = damage / 40.0;
-        }
-
-        public AttackData(int startup, int active, int recovery, int damage, boolean canCancel) {
-            this(startup, active, recovery, damage);
+            this.blockstun = blockstun;
+            this.hitstun = hitstun;
+            this.knockback = knockback;
             this.canCancel = canCancel;
+            this.priority = priority;
+            this.hitbox = hitbox != null ? hitbox : DEFAULT_HITBOX;
         }
 
         public int getTotalFrames() {
             return startupFrames + activeFrames + recoveryFrames;
         }
-    }
-
-    // Frame data
-    private static final java.util.Map<AnimationStateMachine.AnimationType, AttackData> ATTACK_DATA =
-            new java.util.HashMap<AnimationStateMachine.AnimationType, AttackData>() {{
-
-                // Light attacks - fast startup can cancel
-                put(AnimationStateMachine.AnimationType.QUICK_PUNCH,
-                        new AttackData(3, 2, 6, 12, true)); // Fast jab
-
-                put(AnimationStateMachine.AnimationType.KICK_LOW,
-                        new AttackData(5, 3, 8, 18, true)); // Low kick
 
-                // Heavy attacks - slower, more damage
-                put(AnimationStateMachine.AnimationType.PUNCH,
-                        new AttackData(8, 4, 12, 25, false)); // Heavy punch
-
-                put(AnimationStateMachine.AnimationType.UPPER_KICK,
-                        new AttackData(12, 6, 15, 35, false)); // Uppercut kick
-
-                // Air attacks
-                put(AnimationStateMachine.AnimationType.AIR_PUNCH,
-                        new AttackData(5, 3, 8, 20, false));
+        public boolean isActive(int elapsedFrames) {
+            return elapsedFrames >= startupFrames && elapsedFrames < startupFrames + activeFrames;
+        }
 
-                put(AnimationStateMachine.AnimationType.AIR_KICK,
-                        new AttackData(8, 5, 12, 28, false));
+        public boolean isInStartup(int elapsedFrames) {
+            return elapsedFrames < startupFrames;
+        }
 
-                put(AnimationStateMachine.AnimationType.PUNCH_DOWN,
-                        new AttackData(6, 4, 10, 22, false));
-            }};
+        public boolean isInRecovery(int elapsedFrames) {
+            return elapsedFrames >= startupFrames + activeFrames;
+        }
+    }
 
     public static AttackData getAttackData(AnimationStateMachine.AnimationType attackType) {
-        return ATTACK_DATA.get(attackType);
+        return FrameDataTable.DEFAULT.get(attackType);
     }
 
     public static boolean isAttackActive(AnimationStateMachine.AnimationType attackType,
-                                         long animationStartTime) {
+                                         int elapsedFrames) {
         AttackData data = getAttackData(attackType);
-        if (data == null) return false;
-
-        long elapsed = System.currentTimeMillis() - animationStartTime;
-        long frameTime = elapsed / 16; // 60fps
+        return data != null && data.isActive(elapsedFrames);
+    }
 
-        return frameTime >= data.startupFrames &&
-                frameTime < (data.startupFrames + data.activeFrames);
+    /** Fills {@code out} with the attack's hitbox, or clears it if the animation isn't an attack. */
+    public static Hitbox getAttackHitbox(Entity attacker,
+                                         AnimationStateMachine.AnimationType attackType,
+                                         boolean facingRight, Hitbox out) {
+        return getAttackHitbox(attacker, getAttackData(attackType), facingRight, out);
     }
 
-    public static Rectangle2D getAttackHitbox(Entity attacker,
-                                              AnimationStateMachine.AnimationType attackType,
-                                              boolean facingRight) {
-        AttackData data = getAttackData(attackType);
-        if (data == null) return new Rectangle2D(0, 0, 0, 0);
-
-        //Hitbox dimensions
-        double hitboxWidth = 40;
-        double hitboxHeight = 30;
-        double hitboxX = facingRight ? attacker.x + 50 : attacker.x - hitboxWidth - 10;
-        double hitboxY = attacker.y + 20;
-
-        // Adjust hitbox based on attack type
-        switch (attackType) {
-            case QUICK_PUNCH:
-                hitboxWidth = 35;
-                hitboxHeight = 25;
-                hitboxY = attacker.y + 15;
-                break;
-
-            case PUNCH:
-                hitboxWidth = 50;
-                hitboxHeight = 35;
-                hitboxY = attacker.y + 10;
-                hitboxX = facingRight ? attacker.x + 55 : attacker.x - hitboxWidth - 15;
-                break;
-
-            case KICK_LOW:
-                hitboxWidth = 45;
-                hitboxHeight = 30;
-                hitboxY = attacker.y + 50;
-                break;
-
-            case UPPER_KICK:
-                hitboxWidth = 60;
-                hitboxHeight = 40;
-                hitboxY = attacker.y + 45;
-                hitboxX = facingRight ? attacker.x + 60 : attacker.x - hitboxWidth - 20;
-                break;
-
-            case AIR_PUNCH:
-                hitboxWidth = 40;
-                hitboxHeight = 35;
-                hitboxY = attacker.y + 10;
-                break;
-
-            case AIR_KICK:
-                hitboxWidth = 50;
-                hitboxHeight = 30;
-                hitboxY = attacker.y + 40;
-                hitboxX = facingRight ? attacker.x + 45 : attacker.x - hitboxWidth - 5;
-                break;
-
-            case PUNCH_DOWN:
-                hitboxWidth = 35;
-                hitboxHeight = 40;
-                hitboxY = attacker.y + 20;
-                break;
-        }
+    public static Hitbox getAttackHitbox(Entity attacker, AttackData data, boolean facingRight, Hitbox out) {
+        if (data == null) return out.clear();
 
-        return new Rectangle2D(hitboxX, hitboxY, hitboxWidth, hitboxHeight);
+        HitboxShape shape = data.hitbox;
+        double hitboxX = facingRight ? attacker.x + shape.frontOffset : attacker.x - shape.backOffset;
+        return out.set(hitboxX, attacker.y + shape.yOffset, shape.width, shape.height);
     }
 
 
@@ -167,24 +120,8 @@ public class CombatSystem {
 
 
     public static int getAttackPriority(AnimationStateMachine.AnimationType attackType) {
-        switch (attackType) {
-            case QUICK_PUNCH:
-            case KICK_LOW:
-                return 1; // low priority
-
-            case PUNCH:
-            case UPPER_KICK:
-                return 2; // medium priority
-
-
-            case AIR_PUNCH:
-            case AIR_KICK:
-            case PUNCH_DOWN:
-                return 2; // Air attacks
-
-            default:
-                return 0;
-        }
+        AttackData data = getAttackData(attackType);
+        return data != null ? data.priority : 0;
     }
 
     // Knockback
@@ -207,24 +144,14 @@ public class CombatSystem {
 
     // Startup frames -> CHECK
     public static boolean isInStartup(AnimationStateMachine.AnimationType attackType,
-                                      long animationStartTime) {
+                                      int elapsedFrames) {
         AttackData data = getAttackData(attackType);
-        if (data == null) return false;
-
-        long elapsed = System.currentTimeMillis() - animationStartTime;
-        long frameTime = elapsed / 16;
-
-        return frameTime < data.startupFrames;
+        return data != null && data.isInStartup(elapsedFrames);
     }
 
     public static boolean isInRecovery(AnimationStateMachine.AnimationType attackType,
-                                       long animationStartTime) {
+                                       int elapsedFrames) {
         AttackData data = getAttackData(attackType);
-        if (data == null) return false;
-
-        long elapsed = System.currentTimeMillis() - animationStartTime;
-        long frameTime = elapsed / 16;
-
-        return frameTime >= (data.startupFrames + data.activeFrames);
+        return data != null && data.isInRecovery(elapsedFrames);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,105 @@
+package Client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Messages for the server that leave together as one datagram, e.g.
+ * everything one frame produces: [BATCH][room u16][slot] followed by
+ * [len u16][type][body] per message.
+ *
+ * Each message is written into its own buffer with room for its length in
+ * front, so {@link #flush} hands the header and the message buffers to the
+ * channel in one gathering write without copying them together. A batch of a
+ * single message goes out as the plain [type][room u16][slot][body] packet
+ * instead, from the same buffers.
+ *
+ * Not thread-safe: one thread fills and flushes a batch.
+ */
+public class DatagramBatch {
+    public static final int MAX_MESSAGES = 8;
+    public static final int MAX_MESSAGE_SIZE = 256;
+    // The server's receive buffer; a batch is flushed early rather than grow past it
+    public static final int MAX_DATAGRAM = 1024;
+    private static final int HEADER = 4;
+
+    private final DatagramChannel channel;
+    private final short roomId;
+    private volatile byte slot = -1;
+    private final ByteBuffer header = ByteBuffer.allocateDirect(HEADER);
+    private final ByteBuffer[] messages = new ByteBuffer[MAX_MESSAGES];
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_MESSAGES + 1];
+    private int count = 0;
+    private int bytes = HEADER;
+
+    /** {@code channel} must be connected to the server. */
+    public DatagramBatch(DatagramChannel channel, int roomId) {
+        this.channel = channel;
+        this.roomId = (short) roomId;
+        for (int i = 0; i < MAX_MESSAGES; i++) {
+            messages[i] = ByteBuffer.allocateDirect(2 + MAX_MESSAGE_SIZE);
+        }
+    }
+
+    /** Seat assigned by the server; goes into every header from the next flush on. */
+    public void setSlot(byte slot) {
+        this.slot = slot;
+    }
+
+    /**
+     * Starts a message of {@code type} and returns the buffer to write its body
+     * into; {@link #end} adds it. Flushes first if the batch is full.
+     */
+    public ByteBuffer begin(byte type) throws IOException {
+        if (count == MAX_MESSAGES || bytes + 2 + MAX_MESSAGE_SIZE > MAX_DATAGRAM) flush();
+        ByteBuffer m = messages[count];
+        m.clear();
+        m.position(2);
+        m.put(type);
+        return m;
+    }
+
+    /** Adds the message begun last. */
+    public void end() {
+        ByteBuffer m = messages[count];
+        m.putShort(0, (short) (m.position() - 2));
+        m.flip();
+        bytes += m.remaining();
+        count++;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /** Sends what was added as one datagram; returns its size, 0 if there was nothing to send. */
+    public int flush() throws IOException {
+        if (count == 0) return 0;
+
+        header.clear();
+        if (count == 1) {
+            // Lone message: its own type leads and its length stays behind
+            header.put(messages[0].get(2));
+            messages[0].position(3);
+        } else {
+            header.put(NetworkClient.PacketType.BATCH);
+        }
+        header.putShort(roomId);
+        header.put(slot);
+        header.flip();
+
+        gather[0] = header;
+        for (int i = 0; i < count; i++) {
+            gather[i + 1] = messages[i];
+        }
+        int n = count;
+        count = 0;
+        bytes = HEADER;
+        return (int) channel.write(gather, 0, n + 1);
+    }
+}
@@ -0,0 +1,136 @@
+package Client;
+
+import java.util.Arrays;
+
+/**
+ * Delay-based lockstep driver for a two player networked match.
+ *
+ * The input sampled on frame f is scheduled for frame f + inputDelay and sent
+ * at once; a frame is only simulated when both players' inputs for it are in,
+ * so both clients step through identical inputs and nothing is ever predicted
+ * or rolled back. A delay that covers the one-way trip to the opponent keeps
+ * the remote input arriving before it is needed, at the cost of that many
+ * frames of input lag.
+ *
+ * Remote inputs arrive on the network thread, everything else runs on the
+ * game loop; both go through this object's monitor.
+ */
+public class DelaySession implements NetplaySession {
+    public static final int MIN_INPUT_DELAY = 1;
+    public static final int MAX_INPUT_DELAY = 10;
+    public static final int DEFAULT_INPUT_DELAY = 3;
+    private static final int HISTORY = 64; // power of two, larger than the delay plus any stall
+    private static final int MASK = HISTORY - 1;
+
+    private final Simulation simulation;
+    private final InputSender sender;
+    private final boolean localIsP1;
+
+    private final short[] localInputs = new short[HISTORY];
+    private final short[] remoteInputs = new short[HISTORY];
+    private final long[] remoteFrames = new long[HISTORY];   // frame each remoteInputs entry belongs to
+
+    private int inputDelay = DEFAULT_INPUT_DELAY;
+    private long currentFrame;          // next frame to simulate
+    private long lastScheduledFrame;    // newest frame a local input was sent for
+
+    private int stallCount = 0;
+
+    public DelaySession(Simulation simulation, InputSender sender, boolean localIsP1) {
+        this.simulation = simulation;
+        this.sender = sender;
+        this.localIsP1 = localIsP1;
+        reset();
+    }
+
+    /**
+     * Frames of delay that cover the given one-way latency plus two jitter
+     * deviations, within [MIN_INPUT_DELAY, MAX_INPUT_DELAY].
+     */
+    public static int delayFor(long latencyNanos, long jitterNanos) {
+        double frames = Math.ceil((latencyNanos + 2 * jitterNanos) * MatchSimulation.SIM_HZ / 1e9);
+        return (int) Math.max(MIN_INPUT_DELAY, Math.min(MAX_INPUT_DELAY, frames));
+    }
+
+    /**
+     * Can change mid-match: a longer delay repeats the current input over the
+     * frames it skips, a shorter one drops local input until the schedule is
+     * back in step.
+     */
+    public synchronized void setInputDelay(int frames) {
+        inputDelay = Math.max(MIN_INPUT_DELAY, Math.min(MAX_INPUT_DELAY, frames));
+    }
+
+    public synchronized int getInputDelay() {
+        return inputDelay;
+    }
+
+    @Override
+    public synchronized void reset() {
+        currentFrame = 0;
+        lastScheduledFrame = -1;
+        Arrays.fill(localInputs, (short) 0);
+        Arrays.fill(remoteInputs, (short) 0);
+        Arrays.fill(remoteFrames, -1);
+    }
+
+    @Override
+    public synchronized boolean addRemoteInput(long frame, short inputBits) {
+        // A simulated frame had its input already
+        if (frame < currentFrame) return true;
+        if (frame >= currentFrame + HISTORY) return false;
+
+        int idx = (int) (frame & MASK);
+        remoteFrames[idx] = frame;
+        remoteInputs[idx] = inputBits;
+        return true;
+    }
+
+    // Nothing is simulated before its inputs are in, so there is nothing to correct
+    @Override
+    public void applyCorrections() {
+    }
+
+    @Override
+    public synchronized boolean advance(short localInput) {
+        // The first call also covers frames 0..inputDelay-1, so the opening frames need no special case
+        long target = currentFrame + inputDelay;
+        while (lastScheduledFrame < target) {
+            lastScheduledFrame++;
+            localInputs[(int) (lastScheduledFrame & MASK)] = localInput;
+            sender.sendInput(lastScheduledFrame, localInput);
+        }
+
+        int idx = (int) (currentFrame & MASK);
+        if (remoteFrames[idx] != currentFrame) {
+            stallCount++;
+            return false;
+        }
+
+        short local = localInputs[idx];
+        short remote = remoteInputs[idx];
+        if (localIsP1) {
+            simulation.advanceFrame(local, remote, false);
+        } else {
+            simulation.advanceFrame(remote, local, false);
+        }
+        currentFrame++;
+        return true;
+    }
+
+    // Only fully known frames are ever simulated
+    @Override
+    public boolean isConfirmed() {
+        return true;
+    }
+
+    @Override
+    public synchronized long getCurrentFrame() {
+        return currentFrame;
+    }
+
+    @Override
+    public synchronized int getStallCount() {
+        return stallCount;
+    }
+}
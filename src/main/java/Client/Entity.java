@@ -1,7 +1,5 @@
 package Client;
 
-import javafx.scene.canvas.GraphicsContext;
-
 public abstract class Entity {
     protected float x,y;
 
@@ -13,7 +11,5 @@ public abstract class Entity {
 
     public abstract void tick();
 
-    public abstract void render(GraphicsContext gc);
-
     public abstract String getName();
 }
\ No newline at end of file
@@ -1,10 +1,6 @@
 package Client;
 
-import javafx.geometry.Rectangle2D;
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.image.Image;
-import javafx.scene.input.KeyCode;
-import javafx.scene.paint.Color;
+import java.nio.ByteBuffer;
 
 public class Fighter extends Entity {
     // Core stats
@@ -19,24 +15,29 @@ public class Fighter extends Entity {
     private final double JUMP_FORCE = -14;
     private final double MOVE_SPEED = 4;
     private final double AIR_MOVE_SPEED = 2.5;
-    private final double GROUND_Y = 270;
+    public static final double GROUND_Y = 270;
     private boolean onGround = true;
 
     // Systems
     AnimationStateMachine animationSM;
-    private InputManager inputManager;
+    private final FighterInput inputManager;
+    private final AudioSink audio;
+    private final FrameDataTable frameData;
     private String playerId;
+    private final PlayerSlot slot;
+    private short inputBits;    // buttons held this frame, sampled once at the start of tick()
 
     // Combat state
     private int blockstunTimer = 0;
     private int hitstunTimer = 0;
     private boolean invulnerable = false;
-    private long invulnerabilityEnd = 0;
+    private int invulnerableFrames = 0;
     private int comboCount = 0;
 
     // Special move
+    private static final int CANCEL_WINDOW_FRAMES = 18;
     private boolean canCancelAttack = false;
-    private long lastAttackTime = 0;
+    private int cancelWindowFrames = 0;
 
     // Jump state
     private boolean jumpInitiated = false;
@@ -44,29 +45,135 @@ public class Fighter extends Entity {
 
     // Attack state tracking
     private boolean isPerformingGroundAttack = false;
-    private long attackStartTime = 0;
 
-    public Fighter(String characterName, float startX, float startY, String playerId, boolean facingRight) {
+    // Reused by the collision checks every frame
+    private final Hitbox attackBox = new Hitbox();
+    private final Hitbox hurtBox = new Hitbox();
+
+    // Position at the start of the last simulation step, for render interpolation
+    private float prevX, prevY;
+
+    /** Everything {@link #tick()} reads or writes, captured for rollback. */
+    public static class State {
+        float x, y;
+        int health;
+        boolean facingRight;
+        double velX, velY;
+        boolean onGround;
+        int blockstunTimer, hitstunTimer;
+        boolean invulnerable;
+        int invulnerableFrames;
+        int comboCount;
+        boolean canCancelAttack;
+        int cancelWindowFrames;
+        boolean jumpInitiated, canPerformAirAction;
+        boolean isPerformingGroundAttack;
+        AnimationStateMachine.AnimationState animation;
+
+        // Serialized size in bytes, see write()
+        public static final int SIZE = 4 + 4 + 2 + 8 + 8 + 5 * 2 + 1 + 2 + 4 + 1;
+
+        /** Writes every field, bit-exact, so a remote peer can resume the simulation from it. */
+        public void write(ByteBuffer bb) {
+            bb.putFloat(x);
+            bb.putFloat(y);
+            bb.putShort((short) health);
+            bb.putDouble(velX);
+            bb.putDouble(velY);
+            bb.putShort((short) blockstunTimer);
+            bb.putShort((short) hitstunTimer);
+            bb.putShort((short) invulnerableFrames);
+            bb.putShort((short) comboCount);
+            bb.putShort((short) cancelWindowFrames);
+            bb.put((byte) animation.type.ordinal());
+            bb.putShort((short) animation.currentFrame);
+            bb.putInt(animation.elapsedFrames);
+
+            int flags = 0;
+            if (facingRight) flags |= 1;
+            if (onGround) flags |= 1 << 1;
+            if (invulnerable) flags |= 1 << 2;
+            if (canCancelAttack) flags |= 1 << 3;
+            if (jumpInitiated) flags |= 1 << 4;
+            if (canPerformAirAction) flags |= 1 << 5;
+            if (isPerformingGroundAttack) flags |= 1 << 6;
+            if (animation.isFinished) flags |= 1 << 7;
+            bb.put((byte) flags);
+        }
+
+        public void read(ByteBuffer bb) {
+            if (animation == null) animation = new AnimationStateMachine.AnimationState();
+            x = bb.getFloat();
+            y = bb.getFloat();
+            health = bb.getShort();
+            velX = bb.getDouble();
+            velY = bb.getDouble();
+            blockstunTimer = bb.getShort();
+            hitstunTimer = bb.getShort();
+            invulnerableFrames = bb.getShort();
+            comboCount = bb.getShort();
+            cancelWindowFrames = bb.getShort();
+            animation.type = AnimationStateMachine.AnimationType.values()[bb.get()];
+            animation.currentFrame = bb.getShort();
+            animation.elapsedFrames = bb.getInt();
+
+            int flags = bb.get();
+            facingRight = (flags & 1) != 0;
+            onGround = (flags & 1 << 1) != 0;
+            invulnerable = (flags & 1 << 2) != 0;
+            canCancelAttack = (flags & 1 << 3) != 0;
+            jumpInitiated = (flags & 1 << 4) != 0;
+            canPerformAirAction = (flags & 1 << 5) != 0;
+            isPerformingGroundAttack = (flags & 1 << 6) != 0;
+            animation.isFinished = (flags & 1 << 7) != 0;
+        }
+
+        public boolean sameAs(State o) {
+            return x == o.x && y == o.y && health == o.health && facingRight == o.facingRight &&
+                    velX == o.velX && velY == o.velY && onGround == o.onGround &&
+                    blockstunTimer == o.blockstunTimer && hitstunTimer == o.hitstunTimer &&
+                    invulnerable == o.invulnerable && invulnerableFrames == o.invulnerableFrames &&
+                    comboCount == o.comboCount && canCancelAttack == o.canCancelAttack &&
+                    cancelWindowFrames == o.cancelWindowFrames && jumpInitiated == o.jumpInitiated &&
+                    canPerformAirAction == o.canPerformAirAction &&
+                    isPerformingGroundAttack == o.isPerformingGroundAttack &&
+                    animation.type == o.animation.type && animation.currentFrame == o.animation.currentFrame &&
+                    animation.elapsedFrames == o.animation.elapsedFrames &&
+                    animation.isFinished == o.animation.isFinished;
+        }
+    }
+
+    public Fighter(String characterName, float startX, float startY, String playerId, boolean facingRight,
+                   FighterInput input, AudioSink audio) {
+        this(characterName, startX, startY, playerId, facingRight, input, audio, FrameDataTable.DEFAULT);
+    }
+
+    public Fighter(String characterName, float startX, float startY, String playerId, boolean facingRight,
+                   FighterInput input, AudioSink audio, FrameDataTable frameData) {
         super(startX, startY);
         this.characterName = characterName.toUpperCase();
         this.playerId = playerId;
+        this.slot = PlayerSlot.valueOf(playerId);
         this.facingRight = facingRight;
         this.health = maxHealth;
 
-        AssetManager assetManager = AssetManager.getInstance();
-        if (!assetManager.isInitialized()) {
-            assetManager.initialize();
-        }
-
         this.animationSM = new AnimationStateMachine(this.characterName);
-        this.inputManager = InputManager.getInstance();
+        this.inputManager = input;
+        this.audio = audio;
+        this.frameData = frameData;
 
         // Position on ground
         this.y = (float) GROUND_Y;
+        this.prevX = x;
+        this.prevY = y;
     }
 
     @Override
     public void tick() {
+        prevX = x;
+        prevY = y;
+        inputBits = inputManager.getInputBits(slot);
+
         if (isDead()) {
             y = (float) GROUND_Y;
             velX = 0;
@@ -78,10 +185,11 @@ public class Fighter extends Entity {
             velY = 0;
             onGround = true;
         }
+        // Advance the animation first so anything started this frame begins at frame 0
+        updateAnimations();
         updatePhysics();
         updateCombatState();
         processInput();
-        updateAnimations();
     }
 
     private void updatePhysics() {
@@ -173,22 +281,43 @@ public class Fighter extends Entity {
             }
         }
 
-        if (invulnerable && System.currentTimeMillis() > invulnerabilityEnd) {
-            invulnerable = false;
+        if (invulnerableFrames > 0) {
+            invulnerableFrames--;
+            if (invulnerableFrames == 0) {
+                invulnerable = false;
+            }
         }
 
-        if (canCancelAttack && (System.currentTimeMillis() - lastAttackTime) > 300) {
-            canCancelAttack = false;
+        if (cancelWindowFrames > 0) {
+            cancelWindowFrames--;
+            if (cancelWindowFrames == 0) {
+                canCancelAttack = false;
+            }
         }
     }
 
     private void updateAnimations() {
-        animationSM.getCurrentFrame();
+        animationSM.tick();
+    }
+
+    // Keeps intro, KO and win animations playing while the match itself is not running
+    public void tickAnimation() {
+        prevX = x;
+        prevY = y;
+        updateAnimations();
+    }
+
+    private boolean pressed(InputAction action) {
+        return (inputBits & action.bit) != 0;
+    }
+
+    public short getInputBits() {
+        return inputBits;
     }
 
     private boolean isMovementInputPressed() {
-        return inputManager.isActionPressed(playerId, "left") ||
-                inputManager.isActionPressed(playerId, "right");
+        return pressed(InputAction.LEFT) ||
+                pressed(InputAction.RIGHT);
     }
 
     private void processInput() {
@@ -205,9 +334,9 @@ public class Fighter extends Entity {
     }
 
     private void handleAirborneInput() {
-        boolean upPressed = inputManager.isActionPressed(playerId, "up");
-        boolean forwardPressed = inputManager.isActionPressed(playerId, facingRight ? "right" : "left");
-        boolean backwardPressed = inputManager.isActionPressed(playerId, facingRight ? "left" : "right");
+        boolean upPressed = pressed(InputAction.UP);
+        boolean forwardPressed = pressed(facingRight ? InputAction.RIGHT : InputAction.LEFT);
+        boolean backwardPressed = pressed(facingRight ? InputAction.LEFT : InputAction.RIGHT);
 
         AnimationStateMachine.AnimationType currentAnim = animationSM.getCurrentAnimationType();
 
@@ -227,32 +356,32 @@ public class Fighter extends Entity {
                 currentAnim == AnimationStateMachine.AnimationType.FRONT_FLIP ||
                 currentAnim == AnimationStateMachine.AnimationType.BACK_FLIP)) {
 
-            if (inputManager.isActionPressed(playerId, "light_punch") ||
-                    inputManager.isActionPressed(playerId, "heavy_punch")) {
+            if (pressed(InputAction.LIGHT_PUNCH) ||
+                    pressed(InputAction.HEAVY_PUNCH)) {
 
-                if (inputManager.isActionPressed(playerId, "down")) {
+                if (pressed(InputAction.DOWN)) {
                     performAirAttack(AnimationStateMachine.AnimationType.PUNCH_DOWN);
                 } else {
                     performAirAttack(AnimationStateMachine.AnimationType.AIR_PUNCH);
                 }
-            } else if (inputManager.isActionPressed(playerId, "light_kick") ||
-                    inputManager.isActionPressed(playerId, "heavy_kick")) {
+            } else if (pressed(InputAction.LIGHT_KICK) ||
+                    pressed(InputAction.HEAVY_KICK)) {
                 performAirAttack(AnimationStateMachine.AnimationType.AIR_KICK);
             }
         }
 
         // Air movement
-        if (inputManager.isActionPressed(playerId, "left")) {
+        if (pressed(InputAction.LEFT)) {
             velX -= 0.2;
             velX = Math.max(-AIR_MOVE_SPEED, velX);
-        } else if (inputManager.isActionPressed(playerId, "right")) {
+        } else if (pressed(InputAction.RIGHT)) {
             velX += 0.2;
             velX = Math.min(AIR_MOVE_SPEED, velX);
         }
     }
 
     private void handleGroundInput(AnimationStateMachine.AnimationType currentAnim) {
-        if (inputManager.isActionPressed(playerId, "up") && animationSM.canInterrupt()) {
+        if (pressed(InputAction.UP) && animationSM.canInterrupt()) {
             jump();
             return;
         }
@@ -269,8 +398,8 @@ public class Fighter extends Entity {
     }
 
     private void handleMovementInput(AnimationStateMachine.AnimationType currentAnim) {
-        boolean leftPressed = inputManager.isActionPressed(playerId, "left");
-        boolean rightPressed = inputManager.isActionPressed(playerId, "right");
+        boolean leftPressed = pressed(InputAction.LEFT);
+        boolean rightPressed = pressed(InputAction.RIGHT);
 
         if (leftPressed && !rightPressed) {
             moveLeft();
@@ -282,7 +411,7 @@ public class Fighter extends Entity {
     }
 
     private void handleBlockInput(AnimationStateMachine.AnimationType currentAnim) {
-        boolean blockPressed = inputManager.isActionPressed(playerId, "block");
+        boolean blockPressed = pressed(InputAction.BLOCK);
 
         if (blockPressed && animationSM.canInterrupt()) {
             block();
@@ -295,17 +424,17 @@ public class Fighter extends Entity {
         AnimationStateMachine.AnimationType currentAnim = animationSM.getCurrentAnimationType();
 
         if (animationSM.canInterrupt()) {
-            if (inputManager.isActionPressed(playerId, "light_punch")) {
+            if (pressed(InputAction.LIGHT_PUNCH)) {
                 performAttack(AnimationStateMachine.AnimationType.QUICK_PUNCH);
-            } else if (inputManager.isActionPressed(playerId, "heavy_punch")) {
-                if (inputManager.isActionPressed(playerId, "down")) {
+            } else if (pressed(InputAction.HEAVY_PUNCH)) {
+                if (pressed(InputAction.DOWN)) {
                     performAttack(AnimationStateMachine.AnimationType.UPPERCUT);
                 } else {
                     performAttack(AnimationStateMachine.AnimationType.PUNCH);
                 }
-            } else if (inputManager.isActionPressed(playerId, "light_kick")) {
+            } else if (pressed(InputAction.LIGHT_KICK)) {
                 performAttack(AnimationStateMachine.AnimationType.KICK_LOW);
-            } else if (inputManager.isActionPressed(playerId, "heavy_kick")) {
+            } else if (pressed(InputAction.HEAVY_KICK)) {
                 performAttack(AnimationStateMachine.AnimationType.UPPER_KICK);
             }
         }
@@ -364,14 +493,14 @@ public class Fighter extends Entity {
             jumpInitiated = true;
             canPerformAirAction = true;
 
-            if (inputManager.isActionPressed(playerId, "left")) {
+            if (pressed(InputAction.LEFT)) {
                 velX = -MOVE_SPEED * 0.6;
-            } else if (inputManager.isActionPressed(playerId, "right")) {
+            } else if (pressed(InputAction.RIGHT)) {
                 velX = MOVE_SPEED * 0.6;
             }
 
             animationSM.transition(AnimationStateMachine.AnimationType.JUMP, true);
-            AudioManager.playJumpSound();
+            audio.play(AudioSink.Sound.JUMP);
         }
     }
 
@@ -397,7 +526,7 @@ public class Fighter extends Entity {
         if (canPerformAirAction) {
             animationSM.transition(attackType, true);
             canPerformAirAction = false;
-            lastAttackTime = System.currentTimeMillis();
+            cancelWindowFrames = CANCEL_WINDOW_FRAMES;
 
             velX *= 0.5;
 
@@ -408,9 +537,9 @@ public class Fighter extends Entity {
             }
 
             if (attackType == AnimationStateMachine.AnimationType.AIR_KICK) {
-                AudioManager.playKickSound();
+                audio.play(AudioSink.Sound.KICK);
             } else {
-                AudioManager.playPunchSound();
+                audio.play(AudioSink.Sound.PUNCH);
             }
         }
     }
@@ -429,56 +558,41 @@ public class Fighter extends Entity {
     private void performAttack(AnimationStateMachine.AnimationType attackType) {
         isPerformingGroundAttack = true;
         velX = 0;
-        attackStartTime = System.currentTimeMillis();
 
         animationSM.transition(attackType, true);
-        lastAttackTime = System.currentTimeMillis();
+        cancelWindowFrames = CANCEL_WINDOW_FRAMES;
 
-        CombatSystem.AttackData attackData = CombatSystem.getAttackData(attackType);
+        CombatSystem.AttackData attackData = frameData.get(attackType);
         canCancelAttack = attackData != null && attackData.canCancel;
 
         switch (attackType) {
             case PUNCH:
             case QUICK_PUNCH:
-                AudioManager.playPunchSound();
+                audio.play(AudioSink.Sound.PUNCH);
                 break;
             case KICK_LOW:
             case UPPER_KICK:
-                AudioManager.playKickSound();
+                audio.play(AudioSink.Sound.KICK);
                 break;
             default:
-                AudioManager.playPunchSound();
+                audio.play(AudioSink.Sound.PUNCH);
                 break;
         }
     }
 
-    @Override
-    public void render(GraphicsContext g) {
-        Image currentFrame = animationSM.getCurrentFrame();
-
-        if (currentFrame == null) {
-            return;
-        }
-
-        //shadow
-        g.setFill(Color.rgb(0, 0, 0, 0.3));
-        g.fillOval(x + 10, GROUND_Y + 90, 40, 8);
+    // Position between the previous and current simulation step, for the renderer
+    public float getRenderX(double alpha) {
+        return (float) (prevX + (x - prevX) * alpha);
+    }
 
-        // Draw character
-        if (!facingRight) {
-            g.save();
-            g.scale(-1, 1);
-            g.drawImage(currentFrame, -x - currentFrame.getWidth(), y);
-            g.restore();
-        } else {
-            g.drawImage(currentFrame, x, y);
-        }
+    public float getRenderY(double alpha) {
+        return (float) (prevY + (y - prevY) * alpha);
     }
 
     public void takeDamage(int damage, AnimationStateMachine.AnimationType attackType) {
         if (invulnerable || isDead()) return;
 
-        CombatSystem.AttackData attackData = CombatSystem.getAttackData(attackType);
+        CombatSystem.AttackData attackData = frameData.get(attackType);
         AnimationStateMachine.AnimationType currentAnim = animationSM.getCurrentAnimationType();
 
         if (currentAnim == AnimationStateMachine.AnimationType.PARRY_B) {
@@ -498,7 +612,7 @@ public class Fighter extends Entity {
             animationSM.transition(hitAnim, true);
             hitstunTimer = attackData != null ? attackData.hitstun : 15;
 
-            double knockback = CombatSystem.getKnockbackForce(attackType);
+            double knockback = attackData != null ? attackData.knockback : 0;
             velX += facingRight ? -knockback : knockback;
 
             if (!onGround) {
@@ -518,7 +632,7 @@ public class Fighter extends Entity {
             velY = 0;
             onGround = true;
         }
-        AudioManager.playHitSound();
+        audio.play(AudioSink.Sound.HIT);
     }
 
     private void die() {
@@ -531,42 +645,49 @@ public class Fighter extends Entity {
 
         jumpInitiated = false;
         canPerformAirAction = false;
-        AudioManager.playDeathSound();
+        audio.play(AudioSink.Sound.DEATH);
     }
 
     public boolean isAttacking() {
-        AnimationStateMachine.AnimationType currentType = animationSM.getCurrentAnimationType();
-        return CombatSystem.getAttackData(currentType) != null;
+        return frameData.isAttack(animationSM.getCurrentAnimationType());
     }
 
-    public Rectangle2D getAttackHitbox() {
-        if (!isAttacking() || !animationSM.isInActiveFrames()) {
-            return new Rectangle2D(0, 0, 0, 0);
+    /** Frame data of the attack being performed, or null if not attacking. */
+    public CombatSystem.AttackData getCurrentAttackData() {
+        return frameData.get(animationSM.getCurrentAnimationType());
+    }
+
+    public boolean isInActiveFrames() {
+        CombatSystem.AttackData attackData = getCurrentAttackData();
+        return attackData != null && attackData.isActive(animationSM.getElapsedFrames());
+    }
+
+    // Filled in place on every call; the returned box belongs to this fighter
+    public Hitbox getAttackHitbox() {
+        CombatSystem.AttackData attackData = getCurrentAttackData();
+        if (attackData == null || !attackData.isActive(animationSM.getElapsedFrames())) {
+            return attackBox.clear();
         }
 
-        AnimationStateMachine.AnimationType currentType = animationSM.getCurrentAnimationType();
-        return CombatSystem.getAttackHitbox(this, currentType, facingRight);
+        return CombatSystem.getAttackHitbox(this, attackData, facingRight, attackBox);
     }
 
-    public Rectangle2D getHurtbox() {
+    public Hitbox getHurtbox() {
         AnimationStateMachine.AnimationType currentAnim = animationSM.getCurrentAnimationType();
 
         if (currentAnim == AnimationStateMachine.AnimationType.JUMP) {
-            return new Rectangle2D(x + 10, y + 10, 40, 80);
+            return hurtBox.set(x + 10, y + 10, 40, 80);
         }
 
-        return new Rectangle2D(x + 10, y + 10, 40, 90);
+        return hurtBox.set(x + 10, y + 10, 40, 90);
     }
 
     public boolean canBeHit(Fighter attacker) {
         if (invulnerable || hitstunTimer > 0 || isDead()) return false;
         if (attacker == this) return false;
+        if (!attacker.isInActiveFrames()) return false;
 
-        Rectangle2D attackHitbox = attacker.getAttackHitbox();
-        Rectangle2D myHurtbox = getHurtbox();
-
-        return attackHitbox.intersects(myHurtbox) &&
-                attacker.animationSM.isInActiveFrames();
+        return attacker.getAttackHitbox().intersects(getHurtbox());
     }
 
     public void faceOpponent(Fighter opponent) {
@@ -587,9 +708,9 @@ public class Fighter extends Entity {
         onGround = true;
 
         if (playerId.equals("P1")) {
-            AudioManager.playP1WinSound();
+            audio.play(AudioSink.Sound.P1_WIN);
         } else {
-            AudioManager.playP2WinSound();
+            audio.play(AudioSink.Sound.P2_WIN);
         }
     }
 
@@ -599,7 +720,9 @@ public class Fighter extends Entity {
         blockstunTimer = 0;
         hitstunTimer = 0;
         invulnerable = false;
+        invulnerableFrames = 0;
         canCancelAttack = false;
+        cancelWindowFrames = 0;
         velX = 0;
         velY = 0;
         y = (float) GROUND_Y;
@@ -610,17 +733,53 @@ public class Fighter extends Entity {
         animationSM.transition(AnimationStateMachine.AnimationType.IDLE, true);
     }
 
-    public void handleKeyPressed(KeyCode key) {
-        inputManager.handleKeyPressed(key);
-    }
-
-    public void handleKeyReleased(KeyCode key) {
-        inputManager.handleKeyReleased(key);
+    public void saveState(State dst) {
+        dst.x = x;
+        dst.y = y;
+        dst.health = health;
+        dst.facingRight = facingRight;
+        dst.velX = velX;
+        dst.velY = velY;
+        dst.onGround = onGround;
+        dst.blockstunTimer = blockstunTimer;
+        dst.hitstunTimer = hitstunTimer;
+        dst.invulnerable = invulnerable;
+        dst.invulnerableFrames = invulnerableFrames;
+        dst.comboCount = comboCount;
+        dst.canCancelAttack = canCancelAttack;
+        dst.cancelWindowFrames = cancelWindowFrames;
+        dst.jumpInitiated = jumpInitiated;
+        dst.canPerformAirAction = canPerformAirAction;
+        dst.isPerformingGroundAttack = isPerformingGroundAttack;
+        dst.animation = animationSM.saveState(dst.animation);
+    }
+
+    public void loadState(State src) {
+        x = src.x;
+        y = src.y;
+        health = src.health;
+        facingRight = src.facingRight;
+        velX = src.velX;
+        velY = src.velY;
+        onGround = src.onGround;
+        blockstunTimer = src.blockstunTimer;
+        hitstunTimer = src.hitstunTimer;
+        invulnerable = src.invulnerable;
+        invulnerableFrames = src.invulnerableFrames;
+        comboCount = src.comboCount;
+        canCancelAttack = src.canCancelAttack;
+        cancelWindowFrames = src.cancelWindowFrames;
+        jumpInitiated = src.jumpInitiated;
+        canPerformAirAction = src.canPerformAirAction;
+        isPerformingGroundAttack = src.isPerformingGroundAttack;
+        animationSM.loadState(src.animation);
     }
 
     // Getters
     @Override
     public String getName() { return characterName; }
+    public float getX() { return x; }
+    public float getY() { return y; }
     public int getHealth() { return health; }
     public int getMaxHealth() { return maxHealth; }
     public boolean isFacingRight() { return facingRight; }
@@ -628,6 +787,7 @@ public class Fighter extends Entity {
     public AnimationStateMachine.AnimationType getCurrentAnimation() {
         return animationSM.getCurrentAnimationType();
     }
+    public int getCurrentFrameIndex() { return animationSM.getCurrentFrameIndex(); }
     public boolean isOnGround() { return onGround; }
     public int getComboCount() { return comboCount; }
     public boolean isInvulnerable() { return invulnerable; }
@@ -636,11 +796,9 @@ public class Fighter extends Entity {
     public String getPlayerId() { return playerId; }
     public boolean isPerformingAttack() { return isPerformingGroundAttack; }
 
-    public void setInvulnerable(boolean invulnerable, long duration) {
+    public void setInvulnerable(boolean invulnerable, int frames) {
         this.invulnerable = invulnerable;
-        if (invulnerable && duration > 0) {
-            this.invulnerabilityEnd = System.currentTimeMillis() + duration;
-        }
+        this.invulnerableFrames = invulnerable ? Math.max(1, frames) : 0;
     }
 
     @Override
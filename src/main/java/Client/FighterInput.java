@@ -0,0 +1,14 @@
+package Client;
+
+/**
+ * Where a {@link Fighter} reads its buttons from. The game uses
+ * {@link InputManager}; headless runs plug in scripted input instead.
+ */
+public interface FighterInput {
+    /** Buttons currently held by {@code player}, packed as {@link InputAction} bits. */
+    short getInputBits(PlayerSlot player);
+
+    default boolean isActionPressed(PlayerSlot player, InputAction action) {
+        return action.isSet(getInputBits(player));
+    }
+}
@@ -0,0 +1,59 @@
+package Client;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+
+/**
+ * Draws one character's {@link Fighter} onto the game canvas. The
+ * character's sprite frames are resolved from {@link AssetManager} once, so
+ * drawing a frame is just an array index by animation and frame number.
+ */
+public class FighterRenderer {
+    private final Image[][] frames;
+
+    public FighterRenderer(String characterName) {
+        AssetManager assetManager = AssetManager.getInstance();
+        if (!assetManager.isInitialized()) {
+            assetManager.initialize();
+        }
+        this.frames = assetManager.getAnimationFrames(characterName);
+    }
+
+    /**
+     * Draw the fighter between its previous and current simulation position;
+     * {@code alpha} is how far the renderer is into the next fixed step.
+     */
+    public void render(GraphicsContext g, Fighter fighter, double alpha) {
+        Image currentFrame = getCurrentFrame(fighter.animationSM);
+
+        if (currentFrame == null) {
+            return;
+        }
+
+        float x = fighter.getRenderX(alpha);
+        float y = fighter.getRenderY(alpha);
+
+        //shadow
+        g.setFill(Color.rgb(0, 0, 0, 0.3));
+        g.fillOval(x + 10, Fighter.GROUND_Y + 90, 40, 8);
+
+        // Draw character
+        if (!fighter.isFacingRight()) {
+            g.save();
+            g.scale(-1, 1);
+            g.drawImage(currentFrame, -x - currentFrame.getWidth(), y);
+            g.restore();
+        } else {
+            g.drawImage(currentFrame, x, y);
+        }
+    }
+
+    private Image getCurrentFrame(AnimationStateMachine animationSM) {
+        Image[] animation = frames[animationSM.getCurrentAnimationType().ordinal()];
+        if (animation == null || animation.length == 0) return null;
+
+        int frame = animationSM.getCurrentFrameIndex();
+        return frame < animation.length ? animation[frame] : animation[0];
+    }
+}
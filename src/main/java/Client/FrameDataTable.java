@@ -0,0 +1,59 @@
+package Client;
+
+import Client.AnimationStateMachine.AnimationType;
+import Client.CombatSystem.AttackData;
+import Client.CombatSystem.HitboxShape;
+
+/**
+ * Immutable frame data for every attack, indexed by {@link AnimationType}
+ * ordinal so a combat query is a single array load. Animations that aren't
+ * attacks have no entry.
+ *
+ * Tables are values: {@link #with} returns a modified copy, so a balance
+ * sweep can run variants side by side while the game keeps using
+ * {@link #DEFAULT}.
+ */
+public final class FrameDataTable {
+    public static final FrameDataTable DEFAULT = new FrameDataTable(new AttackData[AnimationType.values().length])
+            // Light attacks - fast startup can cancel
+            .with(AnimationType.QUICK_PUNCH, new AttackData(3, 2, 6, 12, true, 1,
+                    new HitboxShape(35, 25, 15, 50, 50)))   // Fast jab
+            .with(AnimationType.KICK_LOW, new AttackData(5, 3, 8, 18, true, 1,
+                    new HitboxShape(45, 30, 50, 50, 50)))   // Low kick
+
+            // Heavy attacks - slower, more damage
+            .with(AnimationType.PUNCH, new AttackData(8, 4, 12, 25, false, 2,
+                    new HitboxShape(50, 35, 10, 55, 65)))   // Heavy punch
+            .with(AnimationType.UPPER_KICK, new AttackData(12, 6, 15, 35, false, 2,
+                    new HitboxShape(60, 40, 45, 60, 80)))   // Uppercut kick
+
+            // Air attacks
+            .with(AnimationType.AIR_PUNCH, new AttackData(5, 3, 8, 20, false, 2,
+                    new HitboxShape(40, 35, 10, 50, 50)))
+            .with(AnimationType.AIR_KICK, new AttackData(8, 5, 12, 28, false, 2,
+                    new HitboxShape(50, 30, 40, 45, 55)))
+            .with(AnimationType.PUNCH_DOWN, new AttackData(6, 4, 10, 22, false, 2,
+                    new HitboxShape(35, 40, 20, 50, 50)));
+
+    private final AttackData[] attacks;
+
+    private FrameDataTable(AttackData[] attacks) {
+        this.attacks = attacks;
+    }
+
+    /** Frame data for the animation, or null if it isn't an attack. */
+    public AttackData get(AnimationType type) {
+        return attacks[type.ordinal()];
+    }
+
+    public boolean isAttack(AnimationType type) {
+        return attacks[type.ordinal()] != null;
+    }
+
+    /** Copy of this table with one entry replaced; null removes the attack. */
+    public FrameDataTable with(AnimationType type, AttackData data) {
+        AttackData[] copy = attacks.clone();
+        copy[type.ordinal()] = data;
+        return new FrameDataTable(copy);
+    }
+}
@@ -46,6 +46,8 @@ public class GameSceneController {
     private Fighter player2;
     private InputManager inputManager;
     private AssetManager assetManager;
+    private FighterRenderer player1Renderer;
+    private FighterRenderer player2Renderer;
     private GraphicsContext gc;
     private AnimationTimer gameLoop;
     private Image backgroundImage;
@@ -55,8 +57,8 @@ public class GameSceneController {
     private String selectedPlayer2 = "KEN";
 
     private GameState currentGameState = GameState.READY;
-    private int roundTimer = 99;
-    private long lastSecond = System.currentTimeMillis();
+    private int roundTimer = MatchSimulation.ROUND_SECONDS;
+    private int roundFrames = 0; // simulated this round when there is no netplay session
     private int currentRound = 1;
     private int player1Wins = 0;
     private int player2Wins = 0;
@@ -65,11 +67,29 @@ public class GameSceneController {
     private int currentFPS = 0;
     private boolean showFPS = true;
 
+    // Fixed timestep: the simulation always advances in 1/60 s steps, rendering runs at the pulse rate
+    private static final long STEP_NANOS = 1_000_000_000L / MatchSimulation.SIM_HZ;
+    private int maxCatchUpSteps = 5;
+    private long lastPulse = -1;
+    private long accumulator = 0;
+
     private NetworkClient networkClient = null;
     private String localPlayerId = null;
     private boolean isNetworkMode = false;
     private boolean isHost = false;
     private int stateUpdateCounter = 0;
+    private static final int NET_STATS_INTERVAL = MatchSimulation.SIM_HZ / 4;
+    private int netStatsCounter = 0;
+    // Rollback time sync: running more than this many frames ahead of the opponent sits out a step,
+    // at most one step per TIME_SYNC_INTERVAL so the slower side is waited for without a visible freeze
+    private static final double MAX_FRAME_ADVANTAGE = 1.0;
+    private static final int TIME_SYNC_INTERVAL = 10;
+    private int timeSyncCounter = 0;
+    private int serverCorrections = 0;
+    private NetcodeMode netcodeMode = NetcodeMode.ROLLBACK;
+    private NetplaySession netSession = null;
+    private final Fighter.State[] p1History = new Fighter.State[RollbackSession.HISTORY];
+    private final Fighter.State[] p2History = new Fighter.State[RollbackSession.HISTORY];
 
     private FontManager fontManager = FontManager.getInstance();
 
@@ -80,6 +100,11 @@ public class GameSceneController {
         READY, FIGHTING, ROUND_OVER, GAME_OVER, PAUSED
     }
 
+    public enum NetcodeMode {
+        ROLLBACK,   // predict remote input, correct by re-simulating
+        DELAY       // lockstep with local input delayed to cover the latency; relay servers only
+    }
+
     @FXML
     private void initialize() {
         fontManager.initialize();
@@ -146,7 +171,21 @@ public class GameSceneController {
     }
 
     public void setNetworkMode(NetworkClient client, String playerId) {
+        setNetworkMode(client, playerId, NetcodeMode.ROLLBACK);
+    }
+
+    /**
+     * An authoritative server corrects the clients with snapshots of past
+     * frames, which only a rollback session can re-simulate from, so DELAY
+     * falls back to ROLLBACK there.
+     */
+    public void setNetworkMode(NetworkClient client, String playerId, NetcodeMode mode) {
+        if (mode == NetcodeMode.DELAY && client.isServerAuthoritative()) {
+            AsyncLog.warn("Server is authoritative, using rollback instead of delay netcode");
+            mode = NetcodeMode.ROLLBACK;
+        }
         this.networkClient = client;
+        this.netcodeMode = mode;
         this.localPlayerId = playerId;
         this.isNetworkMode = true;
         this.isHost = client.isHost();
@@ -177,12 +216,10 @@ public class GameSceneController {
                 }
 
                 @Override
-                public void onInputReceived(String playerId, long frameNumber, short inputBits) {
-                    String remotePlayerId = playerId.equals(localPlayerId) ? null : playerId;
-                    if (remotePlayerId != null) {
-                        inputManager.setPlayerNetworkControlled(remotePlayerId, true);
-                        NetworkClient.InputPacker.applyInputs(inputBits, inputManager, remotePlayerId);
-                    }
+                public boolean onInputReceived(String playerId, long frameNumber, short inputBits) {
+                    NetplaySession session = netSession;
+                    return !playerId.equals(localPlayerId) && session != null
+                            && session.addRemoteInput(frameNumber, inputBits);
                 }
 
                 @Override
@@ -242,15 +279,52 @@ public class GameSceneController {
                 public void onWaitingForHost() {
                     Platform.runLater(() -> System.out.println("Client waiting for host"));
                 }
+
+                @Override
+                public void onSnapshot(long frame, int round, Fighter.State p1, Fighter.State p2) {
+                    Platform.runLater(() -> applySnapshot(frame, round, p1, p2));
+                }
+
+                @Override
+                public void onRoundEnd(int round, int winner, int p1Wins, int p2Wins) {
+                    Platform.runLater(() -> applyRoundEnd(round, winner, p1Wins, p2Wins));
+                }
             });
 
-            if (localPlayerId.equals("P1")) {
-                inputManager.setPlayerNetworkControlled("P1", false);
-                inputManager.setPlayerNetworkControlled("P2", true);
-            } else {
-                inputManager.setPlayerNetworkControlled("P1", true);
-                inputManager.setPlayerNetworkControlled("P2", false);
-            }
+            // Both fighters read the inputs the session feeds them for each frame;
+            // the local keyboard is sampled separately once per frame
+            inputManager.setPlayerNetworkControlled(PlayerSlot.P1, true);
+            inputManager.setPlayerNetworkControlled(PlayerSlot.P2, true);
+
+            NetplaySession.Simulation simulation = new NetplaySession.Simulation() {
+                @Override
+                public void saveState(int slot) {
+                    if (p1History[slot] == null) p1History[slot] = new Fighter.State();
+                    if (p2History[slot] == null) p2History[slot] = new Fighter.State();
+                    player1.saveState(p1History[slot]);
+                    player2.saveState(p2History[slot]);
+                }
+
+                @Override
+                public void loadState(int slot) {
+                    player1.loadState(p1History[slot]);
+                    player2.loadState(p2History[slot]);
+                }
+
+                @Override
+                public void advanceFrame(short p1Input, short p2Input, boolean resimulating) {
+                    NetworkClient.InputPacker.applyInputs(p1Input, inputManager, PlayerSlot.P1);
+                    NetworkClient.InputPacker.applyInputs(p2Input, inputManager, PlayerSlot.P2);
+                    AudioManager.setSFXSuppressed(resimulating);
+                    simulateFrame();
+                    AudioManager.setSFXSuppressed(false);
+                }
+            };
+
+            boolean localIsP1 = localPlayerId.equals("P1");
+            netSession = mode == NetcodeMode.DELAY
+                    ? new DelaySession(simulation, networkClient::sendInput, localIsP1)
+                    : new RollbackSession(simulation, networkClient::sendInput, localIsP1);
 
             updateNetworkStatus("Connected " + (isHost ? "HOST" : "CLIENT"));
         }
@@ -311,12 +385,26 @@ public class GameSceneController {
     }
 
     private void initializeGame() {
-        player1 = new Fighter(selectedPlayer1, 150, 270, "P1", true);
-        player2 = new Fighter(selectedPlayer2, 550, 270, "P2", false);
+        player1 = new Fighter(selectedPlayer1, 150, 270, "P1", true, inputManager, AudioManager.FIGHTER_SOUNDS);
+        player2 = new Fighter(selectedPlayer2, 550, 270, "P2", false, inputManager, AudioManager.FIGHTER_SOUNDS);
+        player1Renderer = new FighterRenderer(selectedPlayer1);
+        player2Renderer = new FighterRenderer(selectedPlayer2);
 
-        roundTimer = 99;
+        roundTimer = MatchSimulation.ROUND_SECONDS;
+        roundFrames = 0;
         currentGameState = GameState.READY;
-        lastSecond = System.currentTimeMillis();
+
+        if (netSession != null) {
+            if (netSession instanceof DelaySession) {
+                // Re-picked every round from the latency measured so far
+                RttEstimator rtt = networkClient.getRttEstimator();
+                ((DelaySession) netSession).setInputDelay(rtt.hasSamples()
+                        ? DelaySession.delayFor(networkClient.getPeerLatencyNanos(), rtt.getJitterNanos())
+                        : DelaySession.DEFAULT_INPUT_DELAY);
+            }
+            netSession.reset();
+            networkClient.resetInputHistory();
+        }
 
         updateUI();
         showGameMessage("READY? FIGHT!", 2000);
@@ -333,11 +421,6 @@ public class GameSceneController {
         KeyCode key = event.getCode();
         inputManager.handleKeyPressed(key);
 
-        if (isNetworkMode && networkClient != null && networkClient.isConnected()) {
-            short inputBits = NetworkClient.InputPacker.packInputs(inputManager, localPlayerId);
-            networkClient.sendInput(inputBits);
-        }
-
         if (key == KeyCode.ESCAPE) {
             if (currentGameState == GameState.FIGHTING) {
                 if (isNetworkMode && networkClient != null) {
@@ -359,42 +442,77 @@ public class GameSceneController {
 
     private void handleKeyReleased(KeyEvent event) {
         inputManager.handleKeyReleased(event.getCode());
-
-        if (isNetworkMode && networkClient != null && networkClient.isConnected()) {
-            short inputBits = NetworkClient.InputPacker.packInputs(inputManager, localPlayerId);
-            networkClient.sendInput(inputBits);
-        }
     }
 
     private void startGameLoop() {
         if (gameLoop != null) gameLoop.stop();
 
+        lastPulse = -1;
+        accumulator = 0;
         gameLoop = new AnimationTimer() {
             @Override
             public void handle(long now) {
-                if (currentGameState != GameState.PAUSED) {
+                if (lastPulse < 0 || currentGameState == GameState.PAUSED) {
+                    lastPulse = now;
+                    return;
+                }
+
+                accumulator += now - lastPulse;
+                lastPulse = now;
+
+                int steps = 0;
+                while (accumulator >= STEP_NANOS) {
                     update();
-                    render();
+                    accumulator -= STEP_NANOS;
+
+                    // After a long stall drop the backlog instead of spiralling
+                    if (++steps >= maxCatchUpSteps) {
+                        accumulator = 0;
+                        break;
+                    }
                 }
+
+                updateUI();
+                render((double) accumulator / STEP_NANOS);
             }
         };
         gameLoop.start();
     }
 
-    private void update() {
-        updateTimer();
+    /** Most simulation steps run in a single pulse before the loop gives up on catching up. */
+    public void setMaxCatchUpSteps(int maxCatchUpSteps) {
+        this.maxCatchUpSteps = Math.max(1, maxCatchUpSteps);
+    }
 
+    private void update() {
         if (currentGameState == GameState.FIGHTING) {
-            player1.tick();
-            player2.tick();
-
-            player1.faceOpponent(player2);
-            player2.faceOpponent(player1);
+            if (netSession == null) {
+                simulateFrame();
+                roundFrames++;
+                checkWinConditions();
+            } else if (netSession.getCurrentFrame() < MatchSimulation.ROUND_FRAMES) {
+                short localInput = NetworkClient.InputPacker.packLocalInputs(inputManager, PlayerSlot.valueOf(localPlayerId));
+                if (isTooFarAhead() || !netSession.advance(localInput)) {
+                    // Waiting for the opponent: keep our own unacked inputs and ack flowing
+                    networkClient.resendInputs();
+                }
 
-            checkCombat();
-            checkWinConditions();
+                // A KO only counts once it can no longer be rolled back; an authoritative server decides itself
+                if (netSession.isConfirmed() && !isServerAuthoritative()) {
+                    checkWinConditions();
+                }
+            } else {
+                // Out of time: hold the last frame, still taking corrections, until the opponent's inputs confirm it
+                netSession.applyCorrections();
+                networkClient.resendInputs();
+                if (netSession.isConfirmed() && !isServerAuthoritative()) {
+                    checkWinConditions();
+                }
+            }
+            updateTimer();
 
-            if (isNetworkMode && networkClient != null) {
+            // Lockstep clients cannot diverge, so delay mode sends inputs only
+            if (isNetworkMode && networkClient != null && netcodeMode != NetcodeMode.DELAY) {
                 stateUpdateCounter++;
                 if (stateUpdateCounter >= 5) {
                     Fighter localFighter = localPlayerId.equals("P1") ? player1 : player2;
@@ -402,45 +520,109 @@ public class GameSceneController {
                             localFighter.x,
                             localFighter.y,
                             localFighter.getHealth(),
-                            localFighter.getCurrentAnimation().toString(),
+                            localFighter.getCurrentAnimation(),
                             localFighter.animationSM.getCurrentFrameIndex()
                     );
                     stateUpdateCounter = 0;
                 }
             }
+
+            // Everything this frame queued leaves as one datagram
+            if (isNetworkMode && networkClient != null) {
+                networkClient.flushOutbound();
+            }
+        } else if (player1 != null && player2 != null) {
+            player1.tickAnimation();
+            player2.tickAnimation();
         }
 
-        updateUI();
+        if (isNetworkMode && networkClient != null && ++netStatsCounter >= NET_STATS_INTERVAL) {
+            netStatsCounter = 0;
+            updateNetworkStats();
+        }
     }
 
-    private void updateTimer() {
-        if (currentGameState == GameState.FIGHTING) {
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - lastSecond >= 1000) {
-                roundTimer--;
-                lastSecond = currentTime;
+    private void updateNetworkStats() {
+        RttEstimator rtt = networkClient.getRttEstimator();
+        if (!rtt.hasSamples()) return;
 
-                if (roundTimer <= 0) {
-                    endRoundByTime();
-                }
-            }
+        String status = String.format("%.0f ms  jitter %.0f", rtt.getRttMillis(), rtt.getJitterMillis());
+        if (netSession instanceof DelaySession) {
+            status += "  delay " + ((DelaySession) netSession).getInputDelay();
+        } else if (netSession != null && currentGameState == GameState.FIGHTING) {
+            double advantage = networkClient.estimateFrameAdvantage(netSession.getCurrentFrame());
+            status += String.format("  %+.1f f", advantage);
+        }
+        if (serverCorrections > 0) {
+            status += "  resync " + serverCorrections;
         }
+        updateNetworkStatus(status);
     }
 
-    private void checkCombat() {
-        if (player1.isAttacking() && player2.canBeHit(player1)) {
-            CombatSystem.AttackData attackData = CombatSystem.getAttackData(player1.getCurrentAnimation());
-            if (attackData != null) {
-                player2.takeDamage(attackData.damage, player1.getCurrentAnimation());
-            }
+    // A side running ahead sees the opponent's inputs late and rolls back nearly every frame
+    private boolean isTooFarAhead() {
+        if (!(netSession instanceof RollbackSession) || ++timeSyncCounter < TIME_SYNC_INTERVAL) return false;
+        timeSyncCounter = 0;
+        return networkClient.estimateFrameAdvantage(netSession.getCurrentFrame()) > MAX_FRAME_ADVANTAGE;
+    }
+
+    private void simulateFrame() {
+        MatchSimulation.step(player1, player2);
+    }
+
+    // The clock counts simulated frames, so stalls do not run it down and rollbacks rewind it
+    private void updateTimer() {
+        if (currentGameState != GameState.FIGHTING) return;
+
+        long frames = netSession != null ? netSession.getCurrentFrame() : roundFrames;
+        roundTimer = (int) Math.max(0, MatchSimulation.ROUND_SECONDS - frames / MatchSimulation.SIM_HZ);
+
+        // Like a KO, time only runs out once the last frame is confirmed; an authoritative server decides itself
+        if (frames >= MatchSimulation.ROUND_FRAMES && !isServerAuthoritative()
+                && (netSession == null || netSession.isConfirmed())) {
+            endRoundByTime();
         }
+    }
 
-        if (player2.isAttacking() && player1.canBeHit(player2)) {
-            CombatSystem.AttackData attackData = CombatSystem.getAttackData(player2.getCurrentAnimation());
-            if (attackData != null) {
-                player1.takeDamage(attackData.damage, player2.getCurrentAnimation());
-            }
+    private boolean isServerAuthoritative() {
+        return isNetworkMode && networkClient != null && networkClient.isServerAuthoritative();
+    }
+
+    // Server state differing from what we simulated replaces our saved state and gets re-simulated.
+    // setNetworkMode never pairs an authoritative server with a DelaySession
+    private void applySnapshot(long frame, int round, Fighter.State p1, Fighter.State p2) {
+        if (round != currentRound || currentGameState != GameState.FIGHTING) return;
+        if (!(netSession instanceof RollbackSession)) return;
+
+        RollbackSession rollback = (RollbackSession) netSession;
+        if (!rollback.hasSavedState(frame)) return;
+
+        int slot = (int) (frame & (RollbackSession.HISTORY - 1));
+        if (p1History[slot].sameAs(p1) && p2History[slot].sameAs(p2)) return;
+
+        p1History[slot] = p1;
+        p2History[slot] = p2;
+        rollback.invalidateFrom(frame);
+        serverCorrections++;
+    }
+
+    private void applyRoundEnd(int round, int winner, int p1Wins, int p2Wins) {
+        // The server repeats ROUND_END until the next round starts
+        if (round != currentRound || currentGameState != GameState.FIGHTING) return;
+
+        player1Wins = p1Wins;
+        player2Wins = p2Wins;
+        String prefix = roundTimer <= 0 ? "TIME UP! " : "";
+        if (winner == 1) {
+            player1.performWin();
+            showGameMessage(prefix + selectedPlayer1 + " WINS!", 3000);
+        } else if (winner == 2) {
+            player2.performWin();
+            showGameMessage(prefix + selectedPlayer2 + " WINS!", 3000);
+        } else {
+            showGameMessage("TIME UP! DRAW!", 3000);
         }
+        endRound();
     }
 
     private void checkWinConditions() {
@@ -594,7 +776,7 @@ public class GameSceneController {
         if (continueButton != null) continueButton.setVisible(false);
     }
 
-    private void render() {
+    private void render(double alpha) {
         frameCount++;
         long currentTime = System.currentTimeMillis();
 
@@ -607,8 +789,8 @@ public class GameSceneController {
         gc.clearRect(0, 0, gameCanvas.getWidth(), gameCanvas.getHeight());
         drawMapBackground();
 
-        if (player1 != null) player1.render(gc);
-        if (player2 != null) player2.render(gc);
+        if (player1 != null) player1Renderer.render(gc, player1, alpha);
+        if (player2 != null) player2Renderer.render(gc, player2, alpha);
 
         if (showFPS) {
             gc.setFont(FontManager.getInstance().getSmall());
@@ -668,7 +850,7 @@ public class GameSceneController {
         if (gameStateLabel != null) gameStateLabel.setText(message);
         if (messageBox != null) messageBox.setVisible(true);
 
-        new Thread(() -> {
+        Thread.ofVirtual().start(() -> {
             try {
                 Thread.sleep(duration);
                 if (currentGameState == GameState.READY) {
@@ -680,7 +862,7 @@ public class GameSceneController {
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
-        }).start();
+        });
     }
 
     private void pauseGame() {
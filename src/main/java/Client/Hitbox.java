@@ -0,0 +1,41 @@
+package Client;
+
+/**
+ * Axis-aligned box used for hit detection, a stand-in for
+ * {@code javafx.geometry.Rectangle2D} that works without JavaFX.
+ *
+ * Boxes are mutable so each fighter can keep its own and refill it every
+ * frame instead of allocating a new one per collision check.
+ */
+public class Hitbox {
+    public double x, y, width, height;
+
+    public Hitbox() {
+    }
+
+    public Hitbox(double x, double y, double width, double height) {
+        set(x, y, width, height);
+    }
+
+    public Hitbox set(double x, double y, double width, double height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        return this;
+    }
+
+    public Hitbox clear() {
+        return set(0, 0, 0, 0);
+    }
+
+    public boolean isEmpty() {
+        return width <= 0 || height <= 0;
+    }
+
+    public boolean intersects(Hitbox other) {
+        if (isEmpty() || other.isEmpty()) return false;
+        return other.x + other.width > x && other.y + other.height > y &&
+                other.x < x + width && other.y < y + height;
+    }
+}
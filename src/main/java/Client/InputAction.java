@@ -0,0 +1,26 @@
+package Client;
+
+import Client.NetworkClient.InputPacker;
+
+/** Fighter buttons, each mapped to its bit in the packed input word sent over the network. */
+public enum InputAction {
+    LEFT(InputPacker.LEFT),
+    RIGHT(InputPacker.RIGHT),
+    UP(InputPacker.UP),
+    DOWN(InputPacker.DOWN),
+    LIGHT_PUNCH(InputPacker.LIGHT_PUNCH),
+    HEAVY_PUNCH(InputPacker.HEAVY_PUNCH),
+    LIGHT_KICK(InputPacker.LIGHT_KICK),
+    HEAVY_KICK(InputPacker.HEAVY_KICK),
+    BLOCK(InputPacker.BLOCK);
+
+    public final short bit;
+
+    InputAction(short bit) {
+        this.bit = bit;
+    }
+
+    public boolean isSet(short bits) {
+        return (bits & bit) != 0;
+    }
+}
@@ -0,0 +1,109 @@
+package Client;
+
+import java.util.Arrays;
+
+/**
+ * Ring buffer of one player's packed inputs, stamped with the simulation
+ * frame they belong to.
+ *
+ * The local player's history is filled every frame with {@link #record} and
+ * remembers the newest frame the opponent has acknowledged, so each outgoing
+ * packet can repeat every input the other side has not confirmed yet. The
+ * remote player's history is filled with {@link #receive}, drops duplicates
+ * and tracks the last frame up to which nothing is missing; that frame is the
+ * ack sent back. The same buffer serves replays and rollback lookups.
+ */
+public class InputHistory {
+    public static final int CAPACITY = 128; // power of two, comfortably above the rollback window
+    private static final int MASK = CAPACITY - 1;
+
+    private final long[] frames = new long[CAPACITY];
+    private final short[] inputs = new short[CAPACITY];
+
+    private long newestFrame;
+    private long contiguousFrame;   // every frame up to this one is present
+    private long ackedFrame;        // newest frame the other side confirmed
+
+    public InputHistory() {
+        reset();
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(frames, -1);
+        Arrays.fill(inputs, (short) 0);
+        newestFrame = -1;
+        contiguousFrame = -1;
+        ackedFrame = -1;
+    }
+
+    /** Local side: store the input sampled for {@code frame}. */
+    public synchronized void record(long frame, short bits) {
+        int idx = (int) (frame & MASK);
+        frames[idx] = frame;
+        inputs[idx] = bits;
+        if (frame > newestFrame) newestFrame = frame;
+        advanceContiguous();
+    }
+
+    /**
+     * Remote side: store an input read from a packet.
+     * Returns false for duplicates and for frames too old to keep.
+     */
+    public synchronized boolean receive(long frame, short bits) {
+        if (!isMissing(frame)) return false;
+
+        int idx = (int) (frame & MASK);
+        frames[idx] = frame;
+        inputs[idx] = bits;
+        if (frame > newestFrame) newestFrame = frame;
+        advanceContiguous();
+        return true;
+    }
+
+    /** Remote side: true when {@link #receive} would store {@code frame}. */
+    public synchronized boolean isMissing(long frame) {
+        if (frame < 0 || frame <= contiguousFrame || frame <= newestFrame - CAPACITY) return false;
+        return frames[(int) (frame & MASK)] != frame;
+    }
+
+    private void advanceContiguous() {
+        while (frames[(int) ((contiguousFrame + 1) & MASK)] == contiguousFrame + 1) {
+            contiguousFrame++;
+        }
+    }
+
+    /** Local side: the other player has everything up to {@code frame}. */
+    public synchronized void acknowledge(long frame) {
+        // Acks for frames not recorded yet can only be stale ones from before a reset
+        if (frame > ackedFrame && frame <= newestFrame) {
+            ackedFrame = frame;
+        }
+    }
+
+    /** Oldest frame still owed to the other side, or -1 when everything is acknowledged. */
+    public synchronized long firstUnacked() {
+        if (newestFrame <= ackedFrame) return -1;
+        return Math.max(ackedFrame + 1, Math.max(0, newestFrame - CAPACITY + 1));
+    }
+
+    public synchronized boolean contains(long frame) {
+        return frame >= 0 && frames[(int) (frame & MASK)] == frame;
+    }
+
+    public synchronized short get(long frame) {
+        int idx = (int) (frame & MASK);
+        return frames[idx] == frame ? inputs[idx] : 0;
+    }
+
+    public synchronized long getNewestFrame() {
+        return newestFrame;
+    }
+
+    public synchronized long getContiguousFrame() {
+        return contiguousFrame;
+    }
+
+    public synchronized long getAckedFrame() {
+        return ackedFrame;
+    }
+}
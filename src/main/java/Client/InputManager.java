@@ -3,14 +3,17 @@ package Client;
 import javafx.scene.input.KeyCode;
 import java.util.*;
 
-public class InputManager {
+public class InputManager implements FighterInput {
     private static InputManager instance;
     private Set<KeyCode> pressedKeys = new HashSet<>();
-    private Map<String, Map<String, KeyCode>> playerBindings = new HashMap<>();
+    private final KeyCode[][] playerBindings = new KeyCode[PlayerSlot.COUNT][InputAction.values().length];
+
+    // Packed InputAction bits per player, rebuilt from pressedKeys on every key event
+    private final short[] keyboardBits = new short[PlayerSlot.COUNT];
 
     // Network input state for remote players
-    private Map<String, Map<String, Boolean>> networkInputState = new HashMap<>();
-    private Map<String, Boolean> isNetworkPlayer = new HashMap<>();
+    private final short[] networkBits = new short[PlayerSlot.COUNT];
+    private final boolean[] isNetworkPlayer = new boolean[PlayerSlot.COUNT];
 
     InputManager() {
         setupDefaultBindings();
@@ -25,101 +28,94 @@ public class InputManager {
 
     private void setupDefaultBindings() {
         // Player 1 bindings
-        Map<String, KeyCode> p1Bindings = new HashMap<>();
-        p1Bindings.put("left", KeyCode.A);
-        p1Bindings.put("right", KeyCode.D);
-        p1Bindings.put("up", KeyCode.W);
-        p1Bindings.put("light_punch", KeyCode.F);
-        p1Bindings.put("heavy_punch", KeyCode.G);
-        p1Bindings.put("light_kick", KeyCode.H);
-        p1Bindings.put("heavy_kick", KeyCode.R);
-        p1Bindings.put("block", KeyCode.T);
-        playerBindings.put("P1", p1Bindings);
+        bind(PlayerSlot.P1, InputAction.LEFT, KeyCode.A);
+        bind(PlayerSlot.P1, InputAction.RIGHT, KeyCode.D);
+        bind(PlayerSlot.P1, InputAction.UP, KeyCode.W);
+        bind(PlayerSlot.P1, InputAction.LIGHT_PUNCH, KeyCode.F);
+        bind(PlayerSlot.P1, InputAction.HEAVY_PUNCH, KeyCode.G);
+        bind(PlayerSlot.P1, InputAction.LIGHT_KICK, KeyCode.H);
+        bind(PlayerSlot.P1, InputAction.HEAVY_KICK, KeyCode.R);
+        bind(PlayerSlot.P1, InputAction.BLOCK, KeyCode.T);
 
         // Player 2 bindings
-        Map<String, KeyCode> p2Bindings = new HashMap<>();
-        p2Bindings.put("left", KeyCode.LEFT);
-        p2Bindings.put("right", KeyCode.RIGHT);
-        p2Bindings.put("up", KeyCode.UP);
-        p2Bindings.put("light_punch", KeyCode.J);
-        p2Bindings.put("heavy_punch", KeyCode.K);
-        p2Bindings.put("light_kick", KeyCode.L);
-        p2Bindings.put("heavy_kick", KeyCode.U);
-        p2Bindings.put("block", KeyCode.I);
-        playerBindings.put("P2", p2Bindings);
-
-        // Initialize network state maps
-        networkInputState.put("P1", new HashMap<>());
-        networkInputState.put("P2", new HashMap<>());
-        isNetworkPlayer.put("P1", false);
-        isNetworkPlayer.put("P2", false);
+        bind(PlayerSlot.P2, InputAction.LEFT, KeyCode.LEFT);
+        bind(PlayerSlot.P2, InputAction.RIGHT, KeyCode.RIGHT);
+        bind(PlayerSlot.P2, InputAction.UP, KeyCode.UP);
+        bind(PlayerSlot.P2, InputAction.LIGHT_PUNCH, KeyCode.J);
+        bind(PlayerSlot.P2, InputAction.HEAVY_PUNCH, KeyCode.K);
+        bind(PlayerSlot.P2, InputAction.LIGHT_KICK, KeyCode.L);
+        bind(PlayerSlot.P2, InputAction.HEAVY_KICK, KeyCode.U);
+        bind(PlayerSlot.P2, InputAction.BLOCK, KeyCode.I);
+    }
+
+    public void bind(PlayerSlot player, InputAction action, KeyCode key) {
+        playerBindings[player.ordinal()][action.ordinal()] = key;
+        rebuildKeyboardBits();
     }
 
     public void handleKeyPressed(KeyCode key) {
-        pressedKeys.add(key);
+        if (pressedKeys.add(key)) rebuildKeyboardBits();
     }
 
     public void handleKeyReleased(KeyCode key) {
-        pressedKeys.remove(key);
+        if (pressedKeys.remove(key)) rebuildKeyboardBits();
     }
 
-    public boolean isActionPressed(String playerId, String action) {
-        // Check if this player is controlled by network
-        if (Boolean.TRUE.equals(isNetworkPlayer.get(playerId))) {
-            Map<String, Boolean> networkState = networkInputState.get(playerId);
-            return networkState != null && Boolean.TRUE.equals(networkState.get(action));
+    // Key events are rare next to polling, so the bindings are only walked here
+    private void rebuildKeyboardBits() {
+        InputAction[] actions = InputAction.values();
+        for (int p = 0; p < PlayerSlot.COUNT; p++) {
+            short bits = 0;
+            for (InputAction action : actions) {
+                KeyCode key = playerBindings[p][action.ordinal()];
+                if (key != null && pressedKeys.contains(key)) bits |= action.bit;
+            }
+            keyboardBits[p] = bits;
         }
+    }
 
-        // Local player - check keyboard
-        Map<String, KeyCode> bindings = playerBindings.get(playerId);
-        if (bindings == null) return false;
+    @Override
+    public short getInputBits(PlayerSlot player) {
+        int p = player.ordinal();
+        return isNetworkPlayer[p] ? networkBits[p] : keyboardBits[p];
+    }
 
-        KeyCode key = bindings.get(action);
-        return key != null && pressedKeys.contains(key);
+    // Keyboard state only, even for a player whose fighter is driven by network input
+    public short getLocalInputBits(PlayerSlot player) {
+        return keyboardBits[player.ordinal()];
     }
 
     // Network input methods
-    public void setNetworkInput(String playerId, String action, boolean pressed) {
-        Map<String, Boolean> state = networkInputState.get(playerId);
-        if (state == null) {
-            state = new HashMap<>();
-            networkInputState.put(playerId, state);
-        }
-        state.put(action, pressed);
+    public void setNetworkInputs(PlayerSlot player, short bits) {
+        networkBits[player.ordinal()] = bits;
     }
 
-    public void setPlayerNetworkControlled(String playerId, boolean isNetwork) {
-        isNetworkPlayer.put(playerId, isNetwork);
+    public void setPlayerNetworkControlled(PlayerSlot player, boolean isNetwork) {
+        isNetworkPlayer[player.ordinal()] = isNetwork;
         if (isNetwork) {
             // Clear network input state when switching to network control
-            Map<String, Boolean> state = networkInputState.get(playerId);
-            if (state != null) {
-                state.clear();
-            }
+            networkBits[player.ordinal()] = 0;
         }
     }
 
-    public boolean isPlayerNetworkControlled(String playerId) {
-        return Boolean.TRUE.equals(isNetworkPlayer.get(playerId));
+    public boolean isPlayerNetworkControlled(PlayerSlot player) {
+        return isNetworkPlayer[player.ordinal()];
     }
 
     public void clearAllInput() {
         pressedKeys.clear();
-        for (Map<String, Boolean> state : networkInputState.values()) {
-            state.clear();
-        }
+        rebuildKeyboardBits();
+        Arrays.fill(networkBits, (short) 0);
     }
 
-    public void clearBuffer(String playerId) {
+    public void clearBuffer(PlayerSlot player) {
         pressedKeys.clear();
-        Map<String, Boolean> state = networkInputState.get(playerId);
-        if (state != null) {
-            state.clear();
-        }
+        rebuildKeyboardBits();
+        networkBits[player.ordinal()] = 0;
     }
 
     // Debug method
     public Set<KeyCode> getPressedKeys() {
         return new HashSet<>(pressedKeys);
     }
-}
\ No newline at end of file
+}
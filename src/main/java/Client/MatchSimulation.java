@@ -0,0 +1,53 @@
+package Client;
+
+/**
+ * One fixed step of a fight between two fighters, shared by the JavaFX game
+ * loop and headless runs so both advance the match exactly the same way.
+ */
+public class MatchSimulation {
+    public static final int SIM_HZ = 60;
+    public static final int ROUND_SECONDS = 99;
+    public static final int ROUND_FRAMES = ROUND_SECONDS * SIM_HZ;
+    public static final int ROUNDS_TO_WIN = 2;
+
+    /** Told about every hit that lands, with the health the defender actually lost. */
+    public interface HitListener {
+        void onHit(Fighter attacker, Fighter defender, AnimationStateMachine.AnimationType attack, int damage);
+    }
+
+    public static void step(Fighter player1, Fighter player2) {
+        step(player1, player2, null);
+    }
+
+    public static void step(Fighter player1, Fighter player2, HitListener listener) {
+        player1.tick();
+        player2.tick();
+
+        player1.faceOpponent(player2);
+        player2.faceOpponent(player1);
+
+        checkCombat(player1, player2, listener);
+    }
+
+    private static void checkCombat(Fighter player1, Fighter player2, HitListener listener) {
+        if (player1.isAttacking() && player2.canBeHit(player1)) {
+            applyHit(player1, player2, listener);
+        }
+
+        if (player2.isAttacking() && player1.canBeHit(player2)) {
+            applyHit(player2, player1, listener);
+        }
+    }
+
+    private static void applyHit(Fighter attacker, Fighter defender, HitListener listener) {
+        AnimationStateMachine.AnimationType attack = attacker.getCurrentAnimation();
+        CombatSystem.AttackData attackData = attacker.getCurrentAttackData();
+        if (attackData == null) return;
+
+        int healthBefore = defender.getHealth();
+        defender.takeDamage(attackData.damage, attack);
+        if (listener != null) {
+            listener.onHit(attacker, defender, attack, healthBefore - defender.getHealth());
+        }
+    }
+}
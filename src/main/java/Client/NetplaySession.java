@@ -0,0 +1,48 @@
+package Client;
+
+/**
+ * Drives the shared simulation of a two player networked match from the
+ * local player's input and the inputs arriving from the opponent.
+ * Implemented by {@link RollbackSession} and {@link DelaySession}.
+ */
+public interface NetplaySession {
+    interface Simulation {
+        /** Store the current match state in history slot {@code slot}. */
+        void saveState(int slot);
+
+        /** Restore the match state saved in history slot {@code slot}. */
+        void loadState(int slot);
+
+        /** Run one simulation step with both players' inputs. */
+        void advanceFrame(short p1Input, short p2Input, boolean resimulating);
+    }
+
+    interface InputSender {
+        void sendInput(long frame, short inputBits);
+    }
+
+    /**
+     * Called from the network thread for every remote input received, duplicates included.
+     * Returns false when {@code frame} is too far ahead to store yet; the input
+     * then has to stay unacknowledged so the opponent sends it again.
+     */
+    boolean addRemoteInput(long frame, short inputBits);
+
+    /**
+     * Advance the match by one frame with the local player's input.
+     * Returns false when the frame has to wait for remote input instead.
+     */
+    boolean advance(short localInput);
+
+    /** Re-simulate what late remote input corrected, without advancing to a new frame. */
+    void applyCorrections();
+
+    /** True when nothing simulated so far can still be corrected by late remote input. */
+    boolean isConfirmed();
+
+    void reset();
+
+    long getCurrentFrame();
+
+    int getStallCount();
+}
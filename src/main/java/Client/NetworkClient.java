@@ -3,10 +3,14 @@ package Client;
 import javafx.application.Platform;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.*;
 
 public class NetworkClient {
     private DatagramSocket socket;
+    // A frame's INPUT, STATE_UPDATE and any due PING, sent together by flushOutbound()
+    private DatagramBatch frameBatch;
     private InetAddress serverAddress;
     private int serverPort;
     private volatile boolean connected = false;
@@ -15,15 +19,49 @@ public class NetworkClient {
     private String playerId;
     private String playerName;
     private boolean isHost;
+    private final int roomId;
+    // Seat assigned by the server at CONNECT; identifies this player on every later packet
+    private volatile byte slot = -1;
+    // Set by the server at CONNECT: it runs the fight itself and decides rounds
+    private volatile boolean serverAuthoritative = false;
 
     private ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
     private NetworkCallback callback;
 
-    private long frameNumber = 0;
     private static final int BUFFER_SIZE = 1024;
-    private static final int INPUT_BUFFER_SIZE = 3;
-    private long lastInputSendTime = 0;
-    private static final long INPUT_SEND_INTERVAL = 16;
+    // Server seats the host in slot 0, so slots map straight onto the local player ids
+    private static final String[] SLOT_PLAYER_IDS = {"P1", "P2"};
+    // STATE_UPDATEs sent recently, by seq, and the newest one the server acknowledged in PONG
+    private final StateSnapshot[] sentStates = new StateSnapshot[StateSnapshot.WINDOW];
+    private int stateSeq = 0;
+    private volatile int ackedStateSeq = -1;
+    private final BitWriter bitWriter = new BitWriter();
+
+    // Control messages go through the reliable channel: [RELIABLE][room][slot][seq u16][ack u16][ack bits int][type][body]
+    private static final int RETRANSMIT_CHECK_MS = 50;
+    private final ReliableChannel reliable = new ReliableChannel();
+    private final ReliableChannel.Transmitter reliableTransmitter = this::transmitReliable;
+
+    // CONNECT goes again on this period until the server accepts or rejects it, up to CONNECT_ATTEMPTS in all
+    private static final int CONNECT_RETRY_MS = 500;
+    private static final int CONNECT_ATTEMPTS = 10;
+    private volatile ScheduledFuture<?> connectRetry;
+    private int connectAttempts = 0;
+
+    private static final int PING_INTERVAL_MS = 250;
+    // While frames went out this recently a due ping waits for the next one instead of going alone
+    private static final long FRAME_IDLE_NANOS = 50_000_000L;
+    private volatile long lastFrameNanos;
+    private volatile boolean pingDue = false;
+    private final RttEstimator rttEstimator = new RttEstimator();
+    // Opponent's round trip to the server as relayed in PONG, -1 until known
+    private volatile long peerRttNanos = -1;
+    private volatile long remoteFrameNanos;    // local time the newest remote input frame arrived
+
+    // Every INPUT repeats the local inputs the opponent has not acknowledged yet, up to this many
+    private static final int MAX_INPUTS_PER_PACKET = 32;
+    // Both players' input histories, indexed by slot
+    private final InputHistory[] inputHistories = {new InputHistory(), new InputHistory()};
 
     private Object lobbyController = null;
 
@@ -31,7 +69,8 @@ public class NetworkClient {
         void onConnected();
         void onDisconnected();
         void onGameStart();
-        void onInputReceived(String playerId, long frameNumber, short inputBits);
+        // False leaves the input unacknowledged, so the opponent keeps sending it
+        boolean onInputReceived(String playerId, long frameNumber, short inputBits);
         void onPlayerDisconnected(String playerId);
         void onGameConfig(String p1Char, String p2Char, String mapFile);
         void onPauseGame(String pausedBy);
@@ -39,12 +78,26 @@ public class NetworkClient {
         void onRematchRequest();
         void onNextRound(int round, int p1Wins, int p2Wins); // NEW
         void onWaitingForHost();
+
+        // Authoritative server only: its state before {@code frame} of the current round
+        default void onSnapshot(long frame, int round, Fighter.State p1, Fighter.State p2) {}
+
+        // Authoritative server only: winner is 1 or 2, 0 for a draw
+        default void onRoundEnd(int round, int winner, int p1Wins, int p2Wins) {}
     }
 
     public NetworkClient(String playerId, String playerName) {
+        this(playerId, playerName, 0);
+    }
+
+    public NetworkClient(String playerId, String playerName, int roomId) {
         this.playerId = playerId;
         this.playerName = playerName;
         this.isHost = playerId.equals("P1");
+        this.roomId = roomId;
+        for (int i = 0; i < sentStates.length; i++) {
+            sentStates[i] = new StateSnapshot();
+        }
     }
 
     public void setLobbyController(Object controller) {
@@ -54,7 +107,11 @@ public class NetworkClient {
     public void connect(String serverIP, int port) throws Exception {
         this.serverAddress = InetAddress.getByName(serverIP);
         this.serverPort = port;
-        this.socket = new DatagramSocket();
+        // Connected, so a frame's messages can leave in one gathering write
+        DatagramChannel channel = DatagramChannel.open();
+        channel.connect(new InetSocketAddress(serverAddress, serverPort));
+        this.frameBatch = new DatagramBatch(channel, roomId);
+        this.socket = channel.socket();
         this.socket.setSoTimeout(100);
 
         running = true;
@@ -63,14 +120,19 @@ public class NetworkClient {
         receiverThread.setDaemon(true);
         receiverThread.start();
 
+        connectAttempts = 1;
         sendConnectRequest();
-        scheduler.scheduleAtFixedRate(this::sendHeartbeat, 1, 1, TimeUnit.SECONDS);
+        connectRetry = scheduler.scheduleAtFixedRate(this::retryConnect, CONNECT_RETRY_MS, CONNECT_RETRY_MS, TimeUnit.MILLISECONDS);
+        // Pings double as the heartbeat
+        scheduler.scheduleAtFixedRate(this::sendPing, PING_INTERVAL_MS, PING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::retransmitControl, RETRANSMIT_CHECK_MS, RETRANSMIT_CHECK_MS, TimeUnit.MILLISECONDS);
     }
 
     private void sendConnectRequest() {
         try {
             ByteBuffer bb = ByteBuffer.allocate(256);
             bb.put(PacketType.CONNECT);
+            bb.putShort((short) roomId);
             writeString(bb, playerId);
             writeString(bb, playerName);
             bb.put((byte) (isHost ? 1 : 0));
@@ -83,43 +145,84 @@ public class NetworkClient {
             socket.send(packet);
 
         } catch (Exception e) {
-            System.err.println(e.getMessage());
+            AsyncLog.error("Error sending connect: {}", e.getMessage());
         }
     }
 
+    // A lost CONNECT or CONNECT_ACCEPTED, or a server not up yet, would otherwise leave the client waiting forever
+    private void retryConnect() {
+        if (connected || !running) {
+            connectRetry.cancel(false);
+            return;
+        }
+        if (connectAttempts >= CONNECT_ATTEMPTS) {
+            AsyncLog.warn("No answer from server after {} CONNECTs", connectAttempts);
+            close();
+            if (callback != null) {
+                callback.onDisconnected();
+            }
+            return;
+        }
+        connectAttempts++;
+        sendConnectRequest();
+    }
+
     private void receiveLoop() {
         byte[] buffer = new byte[BUFFER_SIZE];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        ByteBuffer bb = ByteBuffer.wrap(buffer);
 
         while (running) {
             try {
-                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                packet.setLength(buffer.length);
                 socket.receive(packet);
-                handlePacket(packet);
+                bb.clear();
+                bb.limit(packet.getLength());
+                handlePacket(bb);
             } catch (SocketTimeoutException e) {
                 // Normal timeout
+            } catch (PortUnreachableException e) {
+                // Server not up yet; retryConnect() sends the CONNECT again
             } catch (Exception e) {
                 if (running) {
-                    System.err.println(e.getMessage());
+                    AsyncLog.error("Receive error: {}", e.getMessage());
                 }
             }
         }
     }
 
-    private void handlePacket(DatagramPacket packet) {
+    private void handlePacket(ByteBuffer bb) {
         try {
-            ByteBuffer bb = ByteBuffer.wrap(packet.getData(), 0, packet.getLength());
             byte packetType = bb.get();
 
             switch (packetType) {
+                case PacketType.BATCH:
+                    handleBatch(bb);
+                    break;
                 case PacketType.CONNECT_ACCEPTED:
                     handleConnectAccepted(bb);
                     break;
                 case PacketType.CONNECT_REJECTED:
                     handleConnectRejected(bb);
                     break;
+                case PacketType.RELIABLE:
+                    handleReliable(bb);
+                    break;
+                case PacketType.RELIABLE_ACK:
+                    reliable.acknowledge(bb.getShort() & ReliableChannel.SEQ_MASK, bb.getInt(), System.nanoTime());
+                    break;
                 case PacketType.INPUT_BROADCAST:
                     handleInputBroadcast(bb);
                     break;
+                case PacketType.PONG:
+                    handlePong(bb);
+                    break;
+                case PacketType.SNAPSHOT:
+                    handleSnapshot(bb);
+                    break;
+                case PacketType.ROUND_END:
+                    handleRoundEnd(bb);
+                    break;
                 case PacketType.GAME_START:
                     handleGameStart(bb);
                     break;
@@ -145,17 +248,34 @@ public class NetworkClient {
                     handleWaitingForHost(bb);
                     break;
                 default:
-                    System.err.println("Unknown packet type: " + packetType);
+                    AsyncLog.warn("Unknown packet type: {}", packetType);
             }
         } catch (Exception e) {
-            System.err.println("Error handling packet: " + e.getMessage());
+            AsyncLog.error("Error handling packet: {}", e.getMessage());
+        }
+    }
+
+    // [len u16][type][body] per message, each handled as if it had come in its own datagram
+    private void handleBatch(ByteBuffer bb) {
+        int end = bb.limit();
+        while (bb.remaining() >= 3) {
+            int length = bb.getShort() & 0xFFFF;
+            int next = bb.position() + length;
+            if (length == 0 || next > end) return;
+            bb.limit(next);
+            handlePacket(bb);
+            bb.limit(end);
+            bb.position(next);
         }
     }
 
     private void handleConnectAccepted(ByteBuffer bb) {
+        slot = bb.get();
+        frameBatch.setSlot(slot);
         String assignedId = readString(bb);
+        serverAuthoritative = bb.hasRemaining() && bb.get() == 1;
         connected = true;
-        System.out.println("Connected to server! Player ID: " + assignedId + (isHost ? " (HOST)" : " (CLIENT)"));
+        AsyncLog.info("Connected to server! Player ID: {} {}", assignedId, isHost ? "(HOST)" : "(CLIENT)");
         if (callback != null) {
             callback.onConnected();
         }
@@ -163,25 +283,94 @@ public class NetworkClient {
 
     private void handleConnectRejected(ByteBuffer bb) {
         String reason = readString(bb);
-        System.err.println("Connection rejected: " + reason);
-        disconnect();
+        AsyncLog.warn("Connection rejected: {}", reason);
+        if (connected) {
+            disconnect();
+        } else {
+            close();
+        }
         if (callback != null) {
             callback.onDisconnected();
         }
     }
 
+    // Acked whether or not it is new, so a lost ack only costs a retransmit
+    private void handleReliable(ByteBuffer bb) {
+        int seq = bb.getShort() & ReliableChannel.SEQ_MASK;
+        reliable.acknowledge(bb.getShort() & ReliableChannel.SEQ_MASK, bb.getInt(), System.nanoTime());
+        byte[] message = new byte[bb.remaining()];
+        bb.get(message);
+        reliable.receive(seq, message);
+        sendReliableAck();
+
+        byte[] next;
+        while ((next = reliable.poll()) != null) {
+            handlePacket(ByteBuffer.wrap(next));
+        }
+    }
+
     private void handleInputBroadcast(ByteBuffer bb) {
-        String playerId = readString(bb);
+        int fromSlot = bb.get();
+        if (fromSlot < 0 || fromSlot >= SLOT_PLAYER_IDS.length || fromSlot == slot) return;
+        String playerId = SLOT_PLAYER_IDS[fromSlot];
         long frameNumber = bb.getLong();
-        short inputBits = bb.getShort();
+        long ackFrame = bb.getLong();
+        int count = bb.get();
+
+        // The sender's ack covers our own inputs
+        if (slot >= 0) inputHistories[slot].acknowledge(ackFrame);
+
+        // Newest input first; hand the ones not seen before over oldest first, and only
+        // count them received once taken, or a refused one would never be sent again
+        InputHistory remote = inputHistories[fromSlot];
+        if (frameNumber > remote.getNewestFrame()) remoteFrameNanos = System.nanoTime();
+        int base = bb.position();
+        for (int i = count - 1; i >= 0; i--) {
+            long frame = frameNumber - i;
+            short bits = bb.getShort(base + i * 2);
+            if (!remote.isMissing(frame)) continue;
+            if (callback == null || callback.onInputReceived(playerId, frame, bits)) {
+                remote.receive(frame, bits);
+            }
+        }
+    }
+
+    private void handlePong(ByteBuffer bb) {
+        long sentNanos = bb.getLong();
+        int peerRttMicros = bb.getInt();
+        int stateAck = bb.getInt();
+        rttEstimator.addSample(sentNanos, System.nanoTime());
+        if (stateAck >= 0 && (ackedStateSeq < 0 || StateSnapshot.isNewer(stateAck, ackedStateSeq))) {
+            ackedStateSeq = stateAck;
+        }
+        peerRttNanos = peerRttMicros < 0 ? -1 : peerRttMicros * 1000L;
+    }
+
+    private void handleSnapshot(ByteBuffer bb) {
+        long frame = bb.getLong();
+        int round = bb.get();
+        Fighter.State p1 = new Fighter.State();
+        Fighter.State p2 = new Fighter.State();
+        p1.read(bb);
+        p2.read(bb);
         if (callback != null) {
-            callback.onInputReceived(playerId, frameNumber, inputBits);
+            callback.onSnapshot(frame, round, p1, p2);
+        }
+    }
+
+    private void handleRoundEnd(ByteBuffer bb) {
+        int round = bb.get();
+        int winner = bb.get();
+        int p1Wins = bb.get();
+        int p2Wins = bb.get();
+        if (callback != null) {
+            callback.onRoundEnd(round, winner, p1Wins, p2Wins);
         }
     }
 
     private void handleGameStart(ByteBuffer bb) {
         int playerCount = bb.getInt();
-        System.out.println("Game starting with " + playerCount + " players");
+        AsyncLog.info("Game starting with {} players", playerCount);
         if (callback != null) {
             callback.onGameStart();
         }
@@ -192,7 +381,7 @@ public class NetworkClient {
         String p2Char = readString(bb);
         String mapFile = readString(bb);
 
-        System.out.println("Received game config: " + p1Char + " vs " + p2Char + " on " + mapFile);
+        AsyncLog.info("Received game config: {} vs {} on {}", p1Char, p2Char, mapFile);
 
         if (callback != null) {
             callback.onGameConfig(p1Char, p2Char, mapFile);
@@ -203,16 +392,18 @@ public class NetworkClient {
                 java.lang.reflect.Method method = lobbyController.getClass()
                         .getMethod("launchGame", String.class, String.class, String.class);
                 method.invoke(lobbyController, p1Char, p2Char, mapFile);
+            } catch (java.lang.reflect.InvocationTargetException e) {
+                // launchGame itself threw; the wrapper has no message of its own
+                AsyncLog.error("Error launching game from lobby: {}", e.getCause().toString());
             } catch (Exception e) {
-                System.err.println("Error launching game from lobby: " + e.getMessage());
-                e.printStackTrace();
+                AsyncLog.error("Error launching game from lobby: {}", e.getMessage());
             }
         }
     }
 
     private void handlePlayerDisconnected(ByteBuffer bb) {
         String playerId = readString(bb);
-        System.out.println("Player disconnected: " + playerId);
+        AsyncLog.info("Player disconnected: {}", playerId);
         if (callback != null) {
             callback.onPlayerDisconnected(playerId);
         }
@@ -220,21 +411,21 @@ public class NetworkClient {
 
     private void handlePauseGame(ByteBuffer bb) {
         String pausedBy = readString(bb);
-        System.out.println("Game paused by: " + pausedBy);
+        AsyncLog.info("Game paused by: {}", pausedBy);
         if (callback != null) {
             Platform.runLater(() -> callback.onPauseGame(pausedBy));
         }
     }
 
     private void handleResumeGame(ByteBuffer bb) {
-        System.out.println("Game resumed");
+        AsyncLog.info("Game resumed");
         if (callback != null) {
             Platform.runLater(() -> callback.onResumeGame());
         }
     }
 
     private void handleRematch(ByteBuffer bb) {
-        System.out.println("Host started rematch");
+        AsyncLog.info("Host started rematch");
         if (callback != null) {
             Platform.runLater(() -> callback.onRematchRequest());
         }
@@ -245,7 +436,7 @@ public class NetworkClient {
         int p1Wins = bb.getInt();
         int p2Wins = bb.getInt();
 
-        System.out.println("Received next round: Round " + round + " (P1: " + p1Wins + ", P2: " + p2Wins + ")");
+        AsyncLog.info("Received next round: Round {} (P1: {}, P2: {})", round, p1Wins, p2Wins);
 
         if (callback != null) {
             Platform.runLater(() -> callback.onNextRound(round, p1Wins, p2Wins));
@@ -253,7 +444,7 @@ public class NetworkClient {
     }
 
     private void handleWaitingForHost(ByteBuffer bb) {
-        System.out.println("Waiting for host to start rematch");
+        AsyncLog.info("Waiting for host to start rematch");
         if (callback != null) {
             Platform.runLater(() -> callback.onWaitingForHost());
         }
@@ -262,197 +453,230 @@ public class NetworkClient {
     public void sendPauseRequest() {
         if (!connected) return;
 
-        try {
-            ByteBuffer bb = ByteBuffer.allocate(128);
-            bb.put(PacketType.PAUSE_GAME);
-            writeString(bb, playerId);
-
-            byte[] data = new byte[bb.position()];
-            bb.flip();
-            bb.get(data);
-
-            DatagramPacket packet = new DatagramPacket(data, data.length, serverAddress, serverPort);
-            socket.send(packet);
-            System.out.println("Pause request sent");
-        } catch (Exception e) {
-            System.err.println("Error sending pause request: " + e.getMessage());
-        }
+        ByteBuffer bb = ByteBuffer.allocate(1);
+        bb.put(PacketType.PAUSE_GAME);
+        sendControl(bb);
+        AsyncLog.info("Pause request sent");
     }
 
     public void sendResumeRequest() {
         if (!connected) return;
 
-        try {
-            ByteBuffer bb = ByteBuffer.allocate(128);
-            bb.put(PacketType.RESUME_GAME);
-            writeString(bb, playerId);
-
-            byte[] data = new byte[bb.position()];
-            bb.flip();
-            bb.get(data);
-
-            DatagramPacket packet = new DatagramPacket(data, data.length, serverAddress, serverPort);
-            socket.send(packet);
-            System.out.println("Resume request sent");
-        } catch (Exception e) {
-            System.err.println("Error sending resume request: " + e.getMessage());
-        }
+        ByteBuffer bb = ByteBuffer.allocate(1);
+        bb.put(PacketType.RESUME_GAME);
+        sendControl(bb);
+        AsyncLog.info("Resume request sent");
     }
 
     public void sendRematchRequest() {
         if (!connected || !isHost) {
-            System.out.println("Only host can start rematch");
+            AsyncLog.warn("Only host can start rematch");
             return;
         }
 
-        try {
-            ByteBuffer bb = ByteBuffer.allocate(128);
-            bb.put(PacketType.REMATCH);
-            writeString(bb, playerId);
-
-            byte[] data = new byte[bb.position()];
-            bb.flip();
-            bb.get(data);
-
-            DatagramPacket packet = new DatagramPacket(data, data.length, serverAddress, serverPort);
-            socket.send(packet);
-            System.out.println("Rematch request sent");
-        } catch (Exception e) {
-            System.err.println("Error sending rematch request: " + e.getMessage());
-        }
+        ByteBuffer bb = ByteBuffer.allocate(1);
+        bb.put(PacketType.REMATCH);
+        sendControl(bb);
+        AsyncLog.info("Rematch request sent");
     }
 
     public void sendNextRound(int round, int p1Wins, int p2Wins) {
         if (!connected || !isHost) {
-            System.out.println("Only host can send next round");
+            AsyncLog.warn("Only host can send next round");
             return;
         }
 
-        try {
-            ByteBuffer bb = ByteBuffer.allocate(128);
-            bb.put(PacketType.NEXT_ROUND);
-            writeString(bb, playerId);
-            bb.putInt(round);
-            bb.putInt(p1Wins);
-            bb.putInt(p2Wins);
-
-            byte[] data = new byte[bb.position()];
-            bb.flip();
-            bb.get(data);
-
-            DatagramPacket packet = new DatagramPacket(data, data.length, serverAddress, serverPort);
-            socket.send(packet);
+        ByteBuffer bb = ByteBuffer.allocate(13);
+        bb.put(PacketType.NEXT_ROUND);
+        bb.putInt(round);
+        bb.putInt(p1Wins);
+        bb.putInt(p2Wins);
+        sendControl(bb);
 
-            System.out.println("Sent next round: Round " + round + " (P1: " + p1Wins + ", P2: " + p2Wins + ")");
-        } catch (Exception e) {
-            System.err.println("Error sending next round: " + e.getMessage());
-        }
+        AsyncLog.info("Sent next round: Round {} (P1: {}, P2: {})", round, p1Wins, p2Wins);
     }
 
     public void sendWaitingForHost() {
         if (!connected || isHost) return;
 
-        try {
-            ByteBuffer bb = ByteBuffer.allocate(128);
-            bb.put(PacketType.WAITING_FOR_HOST);
-            writeString(bb, playerId);
-
-            byte[] data = new byte[bb.position()];
-            bb.flip();
-            bb.get(data);
-
-            DatagramPacket packet = new DatagramPacket(data, data.length, serverAddress, serverPort);
-            socket.send(packet);
-        } catch (Exception e) {
-            System.err.println("Error sending waiting status: " + e.getMessage());
-        }
+        ByteBuffer bb = ByteBuffer.allocate(1);
+        bb.put(PacketType.WAITING_FOR_HOST);
+        sendControl(bb);
     }
 
     public void sendGameConfig(String p1Char, String p2Char, String mapFile) {
         if (!connected || !isHost) {
-            System.out.println("Only host can send game config");
+            AsyncLog.warn("Only host can send game config");
             return;
         }
 
-        try {
-            ByteBuffer bb = ByteBuffer.allocate(256);
-            bb.put(PacketType.GAME_CONFIG);
-            writeString(bb, playerId);
-            writeString(bb, p1Char);
-            writeString(bb, p2Char);
-            writeString(bb, mapFile);
+        ByteBuffer bb = ByteBuffer.allocate(256);
+        bb.put(PacketType.GAME_CONFIG);
+        writeString(bb, p1Char);
+        writeString(bb, p2Char);
+        writeString(bb, mapFile);
+        sendControl(bb);
 
-            byte[] data = new byte[bb.position()];
-            bb.flip();
-            bb.get(data);
+        AsyncLog.info("Sent game config: {} vs {} on {}", p1Char, p2Char, mapFile);
+    }
 
-            DatagramPacket packet = new DatagramPacket(data, data.length, serverAddress, serverPort);
+    // Hands [type][body] written into bb to the reliable channel
+    private void sendControl(ByteBuffer bb) {
+        byte[] message = new byte[bb.position()];
+        bb.flip();
+        bb.get(message);
+        reliable.send(message, System.nanoTime(), reliableTransmitter);
+    }
+
+    private void retransmitControl() {
+        if (!connected) return;
+        if (rttEstimator.hasSamples()) {
+            reliable.setRtt(rttEstimator.getRttNanos(), rttEstimator.getJitterNanos());
+        }
+        reliable.retransmit(System.nanoTime(), reliableTransmitter);
+    }
+
+    private void transmitReliable(int seq, int ack, int ackBits, byte[] message) {
+        try {
+            ByteBuffer bb = ByteBuffer.allocate(12 + message.length);
+            bb.put(PacketType.RELIABLE);
+            bb.putShort((short) roomId);
+            bb.put(slot);
+            bb.putShort((short) seq);
+            bb.putShort((short) ack);
+            bb.putInt(ackBits);
+            bb.put(message);
+
+            DatagramPacket packet = new DatagramPacket(bb.array(), bb.position(), serverAddress, serverPort);
             socket.send(packet);
+        } catch (Exception e) {
+            AsyncLog.error("Error sending control message: {}", e.getMessage());
+        }
+    }
 
-            System.out.println("Sent game config: " + p1Char + " vs " + p2Char + " on " + mapFile);
+    private void sendReliableAck() {
+        try {
+            ByteBuffer bb = ByteBuffer.allocate(10);
+            bb.put(PacketType.RELIABLE_ACK);
+            bb.putShort((short) roomId);
+            bb.put(slot);
+            bb.putShort((short) reliable.getAck());
+            bb.putInt(reliable.getAckBits());
+
+            DatagramPacket packet = new DatagramPacket(bb.array(), bb.position(), serverAddress, serverPort);
+            socket.send(packet);
         } catch (Exception e) {
-            System.err.println("Error sending game config: " + e.getMessage());
+            AsyncLog.error("Error sending ack: {}", e.getMessage());
         }
     }
 
-    public void sendInput(short inputBits) {
+    /** Records this frame's input and queues an INPUT for {@link #flushOutbound}. */
+    public void sendInput(long frame, short inputBits) {
         if (!connected) return;
+        inputHistories[slot].record(frame, inputBits);
+        sendUnackedInputs();
+    }
 
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastInputSendTime < INPUT_SEND_INTERVAL) {
-            return;
-        }
-        lastInputSendTime = currentTime;
+    /** Repeats the unacknowledged inputs without a new frame, e.g. while rollback is stalled. */
+    public void resendInputs() {
+        if (!connected) return;
+        sendUnackedInputs();
+    }
 
-        try {
-            ByteBuffer bb = ByteBuffer.allocate(128);
-            bb.put(PacketType.INPUT);
-            writeString(bb, playerId);
-            bb.putLong(frameNumber++);
-            bb.putShort(inputBits);
+    private void sendUnackedInputs() {
+        InputHistory local = inputHistories[slot];
+        InputHistory remote = inputHistories[1 - slot];
 
-            byte[] data = new byte[bb.position()];
-            bb.flip();
-            bb.get(data);
+        // With nothing outstanding the packet still carries our ack
+        long newest = local.getNewestFrame();
+        long first = local.firstUnacked();
+        int count = 0;
+        if (first >= 0) {
+            newest = Math.min(newest, first + MAX_INPUTS_PER_PACKET - 1);
+            count = (int) (newest - first + 1);
+        }
 
-            DatagramPacket packet = new DatagramPacket(data, data.length, serverAddress, serverPort);
-            socket.send(packet);
-        } catch (Exception e) {
-            System.err.println("Error sending input: " + e.getMessage());
+        synchronized (frameBatch) {
+            try {
+                ByteBuffer bb = frameBatch.begin(PacketType.INPUT);
+                bb.putLong(newest);
+                bb.putLong(remote.getContiguousFrame());
+                bb.put((byte) count);
+                for (int i = 0; i < count; i++) {
+                    bb.putShort(local.get(newest - i));
+                }
+                frameBatch.end();
+            } catch (Exception e) {
+                AsyncLog.error("Error sending input: {}", e.getMessage());
+            }
         }
     }
 
-    public void sendStateUpdate(float x, float y, int health, String animType, int frameIdx) {
+    /**
+     * Sends the INPUT and STATE_UPDATE queued since the last call, and a ping
+     * if one is due, as one datagram; the game loop calls it once per frame.
+     */
+    public void flushOutbound() {
+        if (frameBatch == null) return;
+        synchronized (frameBatch) {
+            try {
+                if (frameBatch.isEmpty()) return;
+                // Stamped here, so riding along adds nothing to the measured round trip
+                if (pingDue) {
+                    pingDue = false;
+                    writePing(frameBatch.begin(PacketType.PING));
+                    frameBatch.end();
+                }
+                frameBatch.flush();
+                lastFrameNanos = System.nanoTime();
+            } catch (Exception e) {
+                AsyncLog.error("Error sending frame: {}", e.getMessage());
+            }
+        }
+    }
+
+    public void sendStateUpdate(float x, float y, int health, AnimationStateMachine.AnimationType animation, int frameIdx) {
         if (!connected) return;
 
-        try {
-            ByteBuffer bb = ByteBuffer.allocate(256);
-            bb.put(PacketType.STATE_UPDATE);
-            writeString(bb, playerId);
-            bb.putFloat(x);
-            bb.putFloat(y);
-            bb.putInt(health);
-            writeString(bb, animType);
-            bb.putInt(frameIdx);
+        int seq = stateSeq;
+        stateSeq = (stateSeq + 1) & StateSnapshot.SEQ_MASK;
+        StateSnapshot snapshot = sentStates[seq & (StateSnapshot.WINDOW - 1)];
+        snapshot.set(x, y, health, animation, frameIdx);
+        snapshot.seq = seq;
 
-            byte[] data = new byte[bb.position()];
-            bb.flip();
-            bb.get(data);
+        // Delta against the newest update the server has confirmed, while it is still in the window
+        StateSnapshot base = null;
+        int acked = ackedStateSeq;
+        if (acked >= 0) {
+            StateSnapshot candidate = sentStates[acked & (StateSnapshot.WINDOW - 1)];
+            if (candidate.seq == acked && candidate != snapshot) base = candidate;
+        }
 
-            DatagramPacket packet = new DatagramPacket(data, data.length, serverAddress, serverPort);
-            socket.send(packet);
-        } catch (Exception e) {
-            System.err.println("Error sending state update: " + e.getMessage());
+        synchronized (frameBatch) {
+            try {
+                ByteBuffer bb = frameBatch.begin(PacketType.STATE_UPDATE);
+                snapshot.write(bitWriter.wrap(bb), base);
+                bitWriter.flush();
+                frameBatch.end();
+            } catch (Exception e) {
+                AsyncLog.error("Error sending state update: {}", e.getMessage());
+            }
         }
     }
 
-    private void sendHeartbeat() {
+    private void sendPing() {
         if (!connected) return;
+        if (System.nanoTime() - lastFrameNanos < FRAME_IDLE_NANOS) {
+            pingDue = true;
+            return;
+        }
 
         try {
             ByteBuffer bb = ByteBuffer.allocate(64);
-            bb.put(PacketType.HEARTBEAT);
-            writeString(bb, playerId);
+            bb.put(PacketType.PING);
+            bb.putShort((short) roomId);
+            bb.put(slot);
+            writePing(bb);
 
             byte[] data = new byte[bb.position()];
             bb.flip();
@@ -461,17 +685,60 @@ public class NetworkClient {
             DatagramPacket packet = new DatagramPacket(data, data.length, serverAddress, serverPort);
             socket.send(packet);
         } catch (Exception e) {
-            System.err.println("Error sending heartbeat: " + e.getMessage());
+            AsyncLog.error("Error sending ping: {}", e.getMessage());
         }
     }
 
+    private void writePing(ByteBuffer bb) {
+        bb.putLong(System.nanoTime());
+        // Our own estimate rides along so the server can report it and relay it to the opponent
+        boolean measured = rttEstimator.hasSamples();
+        bb.putInt(measured ? (int) (rttEstimator.getRttNanos() / 1000) : -1);
+        bb.putInt(measured ? (int) (rttEstimator.getJitterNanos() / 1000) : -1);
+    }
+
+    public boolean isServerAuthoritative() {
+        return serverAuthoritative;
+    }
+
+    public ReliableChannel getReliableChannel() {
+        return reliable;
+    }
+
+    public RttEstimator getRttEstimator() {
+        return rttEstimator;
+    }
+
+    /** One-way delay from the opponent's client to ours through the server, in nanoseconds. */
+    public long getPeerLatencyNanos() {
+        long own = rttEstimator.getRttNanos();
+        long peer = peerRttNanos;
+        return (own + (peer < 0 ? own : peer)) / 2;
+    }
+
+    /**
+     * How many frames the local simulation is ahead of the opponent's, judged
+     * from the newest remote input frame, how long ago it arrived and how long
+     * it was in flight. Positive means we run ahead; 0 before any input arrived.
+     */
+    public double estimateFrameAdvantage(long localFrame) {
+        if (slot < 0) return 0;
+        long remoteNewest = inputHistories[1 - slot].getNewestFrame();
+        if (remoteNewest < 0) return 0;
+
+        long elapsed = getPeerLatencyNanos() + (System.nanoTime() - remoteFrameNanos);
+        double remoteNow = remoteNewest + elapsed * MatchSimulation.SIM_HZ / 1e9;
+        return localFrame - remoteNow;
+    }
+
     public void disconnect() {
         if (!connected) return;
 
         try {
             ByteBuffer bb = ByteBuffer.allocate(64);
             bb.put(PacketType.DISCONNECT);
-            writeString(bb, playerId);
+            bb.putShort((short) roomId);
+            bb.put(slot);
 
             byte[] data = new byte[bb.position()];
             bb.flip();
@@ -480,9 +747,12 @@ public class NetworkClient {
             DatagramPacket packet = new DatagramPacket(data, data.length, serverAddress, serverPort);
             socket.send(packet);
         } catch (Exception e) {
-            System.err.println("Error sending disconnect: " + e.getMessage());
+            AsyncLog.error("Error sending disconnect: {}", e.getMessage());
         }
+        close();
+    }
 
+    private void close() {
         connected = false;
         running = false;
         scheduler.shutdown();
@@ -491,11 +761,11 @@ public class NetworkClient {
             socket.close();
         }
 
-        System.out.println("Disconnected from server");
+        AsyncLog.info("Disconnected from server");
     }
 
     private void writeString(ByteBuffer bb, String str) {
-        byte[] bytes = str.getBytes();
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
         bb.putShort((short) bytes.length);
         bb.put(bytes);
     }
@@ -504,7 +774,17 @@ public class NetworkClient {
         short length = bb.getShort();
         byte[] bytes = new byte[length];
         bb.get(bytes);
-        return new String(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public void resetInputHistory() {
+        for (InputHistory history : inputHistories) {
+            history.reset();
+        }
+    }
+
+    public InputHistory getInputHistory(PlayerSlot player) {
+        return inputHistories[player.ordinal()];
     }
 
     public void setCallback(NetworkCallback callback) {
@@ -523,16 +803,28 @@ public class NetworkClient {
         return isHost;
     }
 
+    public int getRoomId() {
+        return roomId;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
     public static class PacketType {
         public static final byte CONNECT = 0x01;
         public static final byte CONNECT_ACCEPTED = 0x02;
         public static final byte CONNECT_REJECTED = 0x03;
         public static final byte DISCONNECT = 0x04;
+        public static final byte RELIABLE = 0x05;
+        public static final byte RELIABLE_ACK = 0x06;
         public static final byte INPUT = 0x10;
         public static final byte INPUT_BROADCAST = 0x11;
         public static final byte STATE_UPDATE = 0x20;
         public static final byte GAME_START = 0x30;
         public static final byte HEARTBEAT = 0x40;
+        public static final byte PING = 0x41;
+        public static final byte PONG = 0x42;
         public static final byte PLAYER_DISCONNECTED = 0x50;
         public static final byte GAME_CONFIG = 0x60;
         public static final byte PAUSE_GAME = 0x70;
@@ -540,6 +832,9 @@ public class NetworkClient {
         public static final byte REMATCH = (byte) 0x80;
         public static final byte NEXT_ROUND = (byte) 0x82;
         public static final byte WAITING_FOR_HOST = (byte) 0x81;
+        public static final byte SNAPSHOT = (byte) 0x90;
+        public static final byte ROUND_END = (byte) 0x91;
+        public static final byte BATCH = (byte) 0xA0;
     }
 
     public static class InputPacker {
@@ -553,30 +848,16 @@ public class NetworkClient {
         public static final short HEAVY_KICK = 1 << 7;
         public static final short BLOCK = 1 << 8;
 
-        public static short packInputs(InputManager inputManager, String playerId) {
-            short bits = 0;
-            if (inputManager.isActionPressed(playerId, "left")) bits |= LEFT;
-            if (inputManager.isActionPressed(playerId, "right")) bits |= RIGHT;
-            if (inputManager.isActionPressed(playerId, "up")) bits |= UP;
-            if (inputManager.isActionPressed(playerId, "down")) bits |= DOWN;
-            if (inputManager.isActionPressed(playerId, "light_punch")) bits |= LIGHT_PUNCH;
-            if (inputManager.isActionPressed(playerId, "heavy_punch")) bits |= HEAVY_PUNCH;
-            if (inputManager.isActionPressed(playerId, "light_kick")) bits |= LIGHT_KICK;
-            if (inputManager.isActionPressed(playerId, "heavy_kick")) bits |= HEAVY_KICK;
-            if (inputManager.isActionPressed(playerId, "block")) bits |= BLOCK;
-            return bits;
-        }
-
-        public static void applyInputs(short inputBits, InputManager inputManager, String playerId) {
-            inputManager.setNetworkInput(playerId, "left", (inputBits & LEFT) != 0);
-            inputManager.setNetworkInput(playerId, "right", (inputBits & RIGHT) != 0);
-            inputManager.setNetworkInput(playerId, "up", (inputBits & UP) != 0);
-            inputManager.setNetworkInput(playerId, "down", (inputBits & DOWN) != 0);
-            inputManager.setNetworkInput(playerId, "light_punch", (inputBits & LIGHT_PUNCH) != 0);
-            inputManager.setNetworkInput(playerId, "heavy_punch", (inputBits & HEAVY_PUNCH) != 0);
-            inputManager.setNetworkInput(playerId, "light_kick", (inputBits & LIGHT_KICK) != 0);
-            inputManager.setNetworkInput(playerId, "heavy_kick", (inputBits & HEAVY_KICK) != 0);
-            inputManager.setNetworkInput(playerId, "block", (inputBits & BLOCK) != 0);
+        public static short packInputs(InputManager inputManager, PlayerSlot player) {
+            return inputManager.getInputBits(player);
+        }
+
+        public static short packLocalInputs(InputManager inputManager, PlayerSlot player) {
+            return inputManager.getLocalInputBits(player);
+        }
+
+        public static void applyInputs(short inputBits, InputManager inputManager, PlayerSlot player) {
+            inputManager.setNetworkInputs(player, inputBits);
         }
     }
 }
\ No newline at end of file
@@ -18,6 +18,7 @@ public class NetworkLobbyController {
     @FXML private Button hostButton;
     @FXML private Button joinButton;
     @FXML private TextField ipField;
+    @FXML private TextField roomField;
     @FXML private Label statusLabel;
     @FXML private Label ipLabel;
     @FXML private Button backButton;
@@ -45,6 +46,12 @@ public class NetworkLobbyController {
         ipField.setStyle(fontManager.getStyleString(12) +
                 "-fx-background-color: white; -fx-background-radius: 5; -fx-padding: 5;");
 
+        if (roomField != null) {
+            roomField.setText("0");
+            roomField.setStyle(fontManager.getStyleString(12) +
+                    "-fx-background-color: white; -fx-background-radius: 5; -fx-padding: 5;");
+        }
+
         hostButton.setOnAction(e -> startHost());
         joinButton.setOnAction(e -> joinGame());
         backButton.setOnAction(e -> goBack());
@@ -68,19 +75,36 @@ public class NetworkLobbyController {
             statusLabel.setStyle(fontManager.getStyleString(12, "white"));
     }
 
+    private int readRoomId() {
+        if (roomField == null) return 0;
+        try {
+            int roomId = Integer.parseInt(roomField.getText().trim());
+            return (roomId >= 0 && roomId < NetworkGameServer.MAX_ROOMS) ? roomId : -1;
+        } catch (NumberFormatException e) {
+            return roomField.getText().trim().isEmpty() ? 0 : -1;
+        }
+    }
+
     private void startHost() {
+        int roomId = readRoomId();
+        if (roomId < 0) {
+            statusLabel.setText("Invalid room number");
+            statusLabel.setStyle(fontManager.getStyleString(10, "red"));
+            return;
+        }
+
         statusLabel.setText("Starting server...");
         statusLabel.setStyle(fontManager.getStyleString(12, "yellow"));
         hostButton.setDisable(true);
         joinButton.setDisable(true);
 
-        new Thread(() -> {
+        Thread.ofVirtual().start(() -> {
             try {
                 gameServer = new NetworkGameServer();
                 gameServer.start();
                 Thread.sleep(500);
 
-                networkClient = new NetworkClient("P1", "Player 1");
+                networkClient = new NetworkClient("P1", "Player 1", roomId);
                 setupHostCallback();
                 networkClient.connect("localhost", 5555);
 
@@ -97,7 +121,7 @@ public class NetworkLobbyController {
                     joinButton.setDisable(false);
                 });
             }
-        }).start();
+        });
     }
 
     private void joinGame() {
@@ -109,14 +133,21 @@ public class NetworkLobbyController {
             return;
         }
 
+        int roomId = readRoomId();
+        if (roomId < 0) {
+            statusLabel.setText("Invalid room number");
+            statusLabel.setStyle(fontManager.getStyleString(10, "red"));
+            return;
+        }
+
         statusLabel.setText("Connecting...");
         statusLabel.setStyle(fontManager.getStyleString(12, "yellow"));
         hostButton.setDisable(true);
         joinButton.setDisable(true);
 
-        new Thread(() -> {
+        Thread.ofVirtual().start(() -> {
             try {
-                networkClient = new NetworkClient("P2", "Player 2");
+                networkClient = new NetworkClient("P2", "Player 2", roomId);
                 networkClient.setLobbyController(this);
                 setupClientCallback();
                 networkClient.connect(serverIP, 5555);
@@ -145,7 +176,7 @@ public class NetworkLobbyController {
                     joinButton.setDisable(false);
                 });
             }
-        }).start();
+        });
     }
 
     private void setupHostCallback() {
@@ -169,19 +200,21 @@ public class NetworkLobbyController {
                     statusLabel.setText("P2 connected!");
                     statusLabel.setStyle(fontManager.getStyleString(12, "lime"));
 
-                    new Thread(() -> {
+                    Thread.ofVirtual().start(() -> {
                         try {
                             Thread.sleep(1500);
                             Platform.runLater(() -> proceedToCharacterSelect());
                         } catch (InterruptedException e) {
                             Thread.currentThread().interrupt();
                         }
-                    }).start();
+                    });
                 });
             }
 
             @Override
-            public void onInputReceived(String playerId, long frameNumber, short inputBits) {}
+            public boolean onInputReceived(String playerId, long frameNumber, short inputBits) {
+                return false;
+            }
 
             @Override
             public void onPlayerDisconnected(String playerId) {}
@@ -237,7 +270,9 @@ public class NetworkLobbyController {
             }
 
             @Override
-            public void onInputReceived(String playerId, long frameNumber, short inputBits) {}
+            public boolean onInputReceived(String playerId, long frameNumber, short inputBits) {
+                return false;
+            }
 
             @Override
             public void onPlayerDisconnected(String playerId) {
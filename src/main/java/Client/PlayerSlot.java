@@ -0,0 +1,8 @@
+package Client;
+
+/** The two sides of a match, in network slot order (slot 0 is the host). */
+public enum PlayerSlot {
+    P1, P2;
+
+    public static final int COUNT = values().length;
+}
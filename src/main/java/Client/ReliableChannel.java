@@ -0,0 +1,165 @@
+package Client;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Sequenced, acknowledged delivery for the control messages a match cannot
+ * lose (game config, pause, resume, rematch, next round), carried over the
+ * same UDP socket as the gameplay traffic.
+ *
+ * Each message gets the next 16-bit sequence number and is kept until the
+ * peer acknowledges it; unacked messages are resent on a timeout that doubles
+ * with every retry. The receiver buffers messages that arrive past a gap and
+ * hands everything on strictly in order and once each. Acks are cumulative
+ * plus a bitfield of the {@link #WINDOW} seqs after it, so messages buffered
+ * behind a gap are not resent.
+ *
+ * INPUT does not go through here: it already repeats its unacked window and
+ * must never wait behind a lost control message.
+ */
+public class ReliableChannel {
+    public static final int SEQ_MASK = 0xFFFF;
+    public static final int WINDOW = 32; // one bit each in the ack field
+    private static final long MIN_TIMEOUT_NANOS = 100_000_000L;
+    private static final long MAX_TIMEOUT_NANOS = 2_000_000_000L;
+    private static final long DEFAULT_TIMEOUT_NANOS = 250_000_000L;
+
+    /** Puts one message on the wire along with the current ack and ack bits. */
+    public interface Transmitter {
+        void transmit(int seq, int ack, int ackBits, byte[] message);
+    }
+
+    private static class Pending {
+        final int seq;
+        final byte[] message;
+        long timeoutNanos;
+        long deadline;
+
+        Pending(int seq, byte[] message) {
+            this.seq = seq;
+            this.message = message;
+        }
+    }
+
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private final byte[][] received = new byte[WINDOW][]; // by seq, from nextExpectedSeq on
+    private int nextSendSeq = 0;
+    private int nextExpectedSeq = 0;
+    private long baseTimeoutNanos = DEFAULT_TIMEOUT_NANOS;
+    private long retransmits = 0;
+
+    /** Queues and sends a message; {@code message} must not be changed afterwards. */
+    public synchronized void send(byte[] message, long now, Transmitter out) {
+        Pending p = new Pending(nextSendSeq, message);
+        nextSendSeq = (nextSendSeq + 1) & SEQ_MASK;
+        p.timeoutNanos = baseTimeoutNanos;
+        p.deadline = now + p.timeoutNanos;
+        pending.addLast(p);
+        out.transmit(p.seq, getAck(), getAckBits(), message);
+    }
+
+    /** Resends every message whose timeout ran out, doubling its timeout. */
+    public synchronized void retransmit(long now, Transmitter out) {
+        for (Pending p : pending) {
+            if (now - p.deadline < 0) continue;
+            p.timeoutNanos = Math.min(MAX_TIMEOUT_NANOS, p.timeoutNanos * 2);
+            p.deadline = now + p.timeoutNanos;
+            retransmits++;
+            out.transmit(p.seq, getAck(), getAckBits(), p.message);
+        }
+    }
+
+    /**
+     * Drops every pending message the peer has: all up to and including
+     * {@code ack}, and ack + 1 + i for each bit i set in {@code ackBits}.
+     */
+    public synchronized void acknowledge(int ack, int ackBits, long now) {
+        boolean progress = false;
+        for (Iterator<Pending> it = pending.iterator(); it.hasNext(); ) {
+            int d = (it.next().seq - ack) & SEQ_MASK;
+            boolean acked = d == 0 || d > SEQ_MASK / 2 || (d <= WINDOW && (ackBits & (1 << (d - 1))) != 0);
+            if (acked) {
+                it.remove();
+                progress = true;
+            }
+        }
+        // The peer is getting through again, so the rest need not wait out a long backoff
+        if (!progress) return;
+        for (Pending p : pending) {
+            if (p.timeoutNanos > baseTimeoutNanos) {
+                p.timeoutNanos = baseTimeoutNanos;
+                p.deadline = Math.min(p.deadline, now + baseTimeoutNanos);
+            }
+        }
+    }
+
+    /**
+     * Stores an incoming message. Returns false for a duplicate or one too far
+     * ahead to buffer; either way the caller answers with the current ack.
+     */
+    public synchronized boolean receive(int seq, byte[] message) {
+        int d = (seq - nextExpectedSeq) & SEQ_MASK;
+        if (d >= WINDOW) return false;
+        int idx = seq & (WINDOW - 1);
+        if (received[idx] != null) return false;
+        received[idx] = message;
+        return true;
+    }
+
+    /** Next message in order, or null while the next seq has not arrived. */
+    public synchronized byte[] poll() {
+        int idx = nextExpectedSeq & (WINDOW - 1);
+        byte[] message = received[idx];
+        if (message == null) return null;
+        received[idx] = null;
+        nextExpectedSeq = (nextExpectedSeq + 1) & SEQ_MASK;
+        return message;
+    }
+
+    /** Newest seq received in order; SEQ_MASK (i.e. -1) before the first. */
+    public synchronized int getAck() {
+        return (nextExpectedSeq - 1) & SEQ_MASK;
+    }
+
+    /** Bit i set if seq getAck() + 1 + i is already buffered. */
+    public synchronized int getAckBits() {
+        int bits = 0;
+        for (int i = 0; i < WINDOW; i++) {
+            if (received[(nextExpectedSeq + i) & (WINDOW - 1)] != null) bits |= 1 << i;
+        }
+        return bits;
+    }
+
+    /** Retransmit timeout before backoff, RFC 6298 style: RTT plus four times its deviation. */
+    public synchronized void setRtt(long rttNanos, long jitterNanos) {
+        baseTimeoutNanos = Math.max(MIN_TIMEOUT_NANOS, Math.min(MAX_TIMEOUT_NANOS, rttNanos + 4 * jitterNanos));
+    }
+
+    /** Nanoseconds from {@code now} until the next retransmit is due, 0 if overdue, -1 with nothing pending. */
+    public synchronized long nanosUntilRetransmit(long now) {
+        long best = -1;
+        for (Pending p : pending) {
+            long wait = Math.max(0, p.deadline - now);
+            if (best < 0 || wait < best) best = wait;
+        }
+        return best;
+    }
+
+    public synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized long getRetransmitCount() {
+        return retransmits;
+    }
+
+    /** Forgets everything, e.g. once the peer is gone. */
+    public synchronized void clear() {
+        pending.clear();
+    }
+}
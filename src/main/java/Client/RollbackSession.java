@@ -0,0 +1,183 @@
+package Client;
+
+import java.util.Arrays;
+
+/**
+ * GGPO-style rollback driver for a two player networked match.
+ *
+ * Local input is applied on the frame it is sampled. The remote player's input
+ * is predicted by repeating the last value confirmed over the network; when
+ * the real input for an already simulated frame turns out different, the match
+ * is restored to the state saved before that frame and re-simulated up to the
+ * present with the corrected inputs.
+ *
+ * Remote inputs arrive on the network thread, everything else runs on the
+ * game loop; both go through this object's monitor.
+ */
+public class RollbackSession implements NetplaySession {
+    public static final int MAX_ROLLBACK_FRAMES = 8;
+    public static final int HISTORY = 64; // power of two, larger than the rollback window
+    private static final int MASK = HISTORY - 1;
+
+    private final Simulation simulation;
+    private final InputSender sender;
+    private final boolean localIsP1;
+
+    private final short[] localInputs = new short[HISTORY];
+    private final short[] remoteInputs = new short[HISTORY];
+    private final long[] remoteFrames = new long[HISTORY];   // frame each remoteInputs entry belongs to
+    private final short[] predictedRemote = new short[HISTORY];
+
+    private long currentFrame;           // next frame to simulate
+    private long confirmedRemoteFrame;   // last frame with every remote input up to it received
+    private long firstMispredicted;      // earliest simulated frame whose prediction was wrong, or -1
+    private short lastConfirmedRemote;
+
+    private int rollbackCount = 0;
+    private int stallCount = 0;
+
+    public RollbackSession(Simulation simulation, InputSender sender, boolean localIsP1) {
+        this.simulation = simulation;
+        this.sender = sender;
+        this.localIsP1 = localIsP1;
+        reset();
+    }
+
+    @Override
+    public synchronized void reset() {
+        currentFrame = 0;
+        confirmedRemoteFrame = -1;
+        firstMispredicted = -1;
+        lastConfirmedRemote = 0;
+        Arrays.fill(remoteFrames, -1);
+        Arrays.fill(localInputs, (short) 0);
+        Arrays.fill(remoteInputs, (short) 0);
+        Arrays.fill(predictedRemote, (short) 0);
+    }
+
+    @Override
+    public synchronized boolean addRemoteInput(long frame, short inputBits) {
+        // Everything up to the confirmed frame is in already
+        if (frame <= confirmedRemoteFrame) return true;
+        // Its slot still belongs to an unconfirmed frame
+        if (frame >= confirmedRemoteFrame + HISTORY) return false;
+
+        int idx = (int) (frame & MASK);
+        if (remoteFrames[idx] == frame) return true;
+
+        remoteFrames[idx] = frame;
+        remoteInputs[idx] = inputBits;
+
+        if (frame < currentFrame && predictedRemote[idx] != inputBits) {
+            if (firstMispredicted < 0 || frame < firstMispredicted) {
+                firstMispredicted = frame;
+            }
+        }
+
+        while (remoteFrames[(int) ((confirmedRemoteFrame + 1) & MASK)] == confirmedRemoteFrame + 1) {
+            confirmedRemoteFrame++;
+            lastConfirmedRemote = remoteInputs[(int) (confirmedRemoteFrame & MASK)];
+        }
+        return true;
+    }
+
+    // Stalls when the local side is too far ahead of confirmed remote input to keep predicting
+    @Override
+    public synchronized boolean advance(short localInput) {
+        if (firstMispredicted >= 0) {
+            rollback();
+        }
+
+        if (currentFrame - confirmedRemoteFrame > MAX_ROLLBACK_FRAMES) {
+            stallCount++;
+            return false;
+        }
+
+        int idx = (int) (currentFrame & MASK);
+        localInputs[idx] = localInput;
+        sender.sendInput(currentFrame, localInput);
+
+        simulation.saveState(idx);
+        simulateFrame(currentFrame, false);
+        currentFrame++;
+        return true;
+    }
+
+    @Override
+    public synchronized void applyCorrections() {
+        if (firstMispredicted >= 0) {
+            rollback();
+        }
+    }
+
+    private void rollback() {
+        long target = currentFrame;
+        long frame = firstMispredicted;
+        firstMispredicted = -1;
+        rollbackCount++;
+
+        simulation.loadState((int) (frame & MASK));
+        for (; frame < target; frame++) {
+            simulation.saveState((int) (frame & MASK));
+            simulateFrame(frame, true);
+        }
+    }
+
+    private void simulateFrame(long frame, boolean resimulating) {
+        int idx = (int) (frame & MASK);
+        short remote = remoteFrames[idx] == frame ? remoteInputs[idx] : predictRemote(frame);
+        predictedRemote[idx] = remote;
+
+        short local = localInputs[idx];
+        if (localIsP1) {
+            simulation.advanceFrame(local, remote, resimulating);
+        } else {
+            simulation.advanceFrame(remote, local, resimulating);
+        }
+    }
+
+    /** True while the state saved before {@code frame} is still in the history. */
+    public synchronized boolean hasSavedState(long frame) {
+        return frame < currentFrame && frame > currentFrame - HISTORY;
+    }
+
+    /**
+     * The state saved before {@code frame} was replaced from outside, e.g. by
+     * an authoritative server; re-simulate from it on the next advance.
+     */
+    public synchronized void invalidateFrom(long frame) {
+        if (!hasSavedState(frame)) return;
+        if (firstMispredicted < 0 || frame < firstMispredicted) {
+            firstMispredicted = frame;
+        }
+    }
+
+    private short predictRemote(long frame) {
+        // Repeat the most recent remote input known at or before this frame
+        for (long f = frame - 1; f > confirmedRemoteFrame && f > frame - HISTORY; f--) {
+            int idx = (int) (f & MASK);
+            if (remoteFrames[idx] == f) return remoteInputs[idx];
+        }
+        return lastConfirmedRemote;
+    }
+
+    // Every remote input up to the last simulated frame is in and no correction is pending
+    @Override
+    public synchronized boolean isConfirmed() {
+        return confirmedRemoteFrame >= currentFrame - 1 && firstMispredicted < 0;
+    }
+
+    @Override
+    public synchronized long getCurrentFrame() {
+        return currentFrame;
+    }
+
+    public synchronized int getRollbackCount() {
+        return rollbackCount;
+    }
+
+    @Override
+    public synchronized int getStallCount() {
+        return stallCount;
+    }
+}
@@ -0,0 +1,69 @@
+package Client;
+
+/**
+ * Smoothed round-trip time and jitter from ping/pong samples,
+ * using the same gains as TCP's retransmission timer (RFC 6298): the RTT
+ * moves 1/8 of the way towards each sample and the jitter, the mean
+ * deviation, 1/4 of the way.
+ */
+public class RttEstimator {
+    private long smoothedRtt = -1;
+    private long rttVariance = 0;
+    private long minRtt = Long.MAX_VALUE;
+    private long samples = 0;
+
+    /**
+     * @param sentNanos     local time the ping left
+     * @param receivedNanos local time the pong arrived
+     */
+    public synchronized void addSample(long sentNanos, long receivedNanos) {
+        long rtt = receivedNanos - sentNanos;
+        if (rtt < 0) return;
+
+        if (smoothedRtt < 0) {
+            smoothedRtt = rtt;
+            rttVariance = rtt / 2;
+        } else {
+            rttVariance += (Math.abs(smoothedRtt - rtt) - rttVariance) / 4;
+            smoothedRtt += (rtt - smoothedRtt) / 8;
+        }
+        if (rtt < minRtt) minRtt = rtt;
+        samples++;
+    }
+
+    public synchronized void reset() {
+        smoothedRtt = -1;
+        rttVariance = 0;
+        minRtt = Long.MAX_VALUE;
+        samples = 0;
+    }
+
+    public synchronized boolean hasSamples() {
+        return samples > 0;
+    }
+
+    public synchronized long getSampleCount() {
+        return samples;
+    }
+
+    /** Smoothed round-trip time in nanoseconds, 0 before the first sample. */
+    public synchronized long getRttNanos() {
+        return Math.max(0, smoothedRtt);
+    }
+
+    public synchronized long getJitterNanos() {
+        return rttVariance;
+    }
+
+    public synchronized long getMinRttNanos() {
+        return samples > 0 ? minRtt : 0;
+    }
+
+    public double getRttMillis() {
+        return getRttNanos() / 1e6;
+    }
+
+    public double getJitterMillis() {
+        return getJitterNanos() / 1e6;
+    }
+}
@@ -0,0 +1,57 @@
+package Client;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+/**
+ * Cost of fetching the sprite to draw for a fighter, the way
+ * {@link FighterRenderer} does it from its per-character Image[][] table,
+ * against the old path of resolving the animation name and looking it up in
+ * {@link AssetManager#getAnimation} on every frame.
+ *
+ * Loads the real sprite sheets, so it needs the JavaFX runtime the game
+ * itself runs on.
+ *
+ * Usage: {@code SpriteLookupBenchmark [lookups per round] [rounds]}
+ */
+public class SpriteLookupBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final String CHARACTER = "RYU";
+
+    private static Object sink;
+
+    public static void main(String[] args) {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Platform.startup(() -> { });
+        AssetManager assets = AssetManager.getInstance();
+        assets.initialize();
+        Image[][] table = assets.getAnimationFrames(CHARACTER);
+        AnimationStateMachine.AnimationType[] types = AnimationStateMachine.AnimationType.values();
+
+        for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                AnimationStateMachine.AnimationType type = types[i % types.length];
+                Image[] animation = assets.getAnimation(CHARACTER, AnimationStateMachine.getAnimationName(type));
+                if (animation != null) sink = animation[(i >> 3) % animation.length];
+            }
+            long byName = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                Image[] animation = table[types[i % types.length].ordinal()];
+                if (animation != null) sink = animation[(i >> 3) % animation.length];
+            }
+            long byIndex = System.nanoTime() - start;
+
+            if (round >= 0) {
+                System.out.println(String.format("round %d: by name %.2f ns/op, Image[][] %.2f ns/op",
+                        round + 1, (double) byName / lookups, (double) byIndex / lookups));
+            }
+        }
+        if (sink == null) System.out.println("No sprites loaded; the timings only cover missing animations");
+        Platform.exit();
+    }
+}
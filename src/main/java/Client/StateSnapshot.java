@@ -0,0 +1,151 @@
+package Client;
+
+/**
+ * One fighter's state as sent in STATE_UPDATE: position, health and the
+ * animation frame being shown.
+ *
+ * On the wire positions are quantized to a quarter pixel and every field is
+ * delta-encoded against a baseline the receiver already has, normally the
+ * last update it acknowledged: an unchanged field costs one bit and a small
+ * move a handful. With no baseline every field is written in full.
+ */
+public class StateSnapshot {
+    public static final int WINDOW = 32; // sent updates kept as possible baselines; power of two
+    public static final int SEQ_BITS = 16;
+    public static final int SEQ_MASK = (1 << SEQ_BITS) - 1;
+    private static final int BASE_DISTANCE_BITS = 5; // 0 = no baseline, else seq - baseline seq
+
+    private static final float POSITION_SCALE = 4f;
+    private static final int POSITION_BITS = 12;   // up to 1023.75 px
+    private static final int POSITION_DELTA_BITS = 7;  // +-16 px in quarter pixels
+    private static final int HEALTH_BITS = 11;
+    private static final int ANIMATION_BITS =
+            32 - Integer.numberOfLeadingZeros(AnimationStateMachine.AnimationType.values().length - 1);
+    private static final int FRAME_BITS = 6;
+
+    public int seq = -1;
+    public int x, y;    // quarter pixels
+    public int health;
+    public int animation;
+    public int frameIndex;
+
+    public void set(float x, float y, int health, AnimationStateMachine.AnimationType animation, int frameIndex) {
+        this.x = quantize(x);
+        this.y = quantize(y);
+        this.health = clamp(health, HEALTH_BITS);
+        this.animation = animation.ordinal();
+        this.frameIndex = clamp(frameIndex, FRAME_BITS);
+    }
+
+    public void copyFrom(StateSnapshot other) {
+        seq = other.seq;
+        x = other.x;
+        y = other.y;
+        health = other.health;
+        animation = other.animation;
+        frameIndex = other.frameIndex;
+    }
+
+    public float getX() {
+        return x / POSITION_SCALE;
+    }
+
+    public float getY() {
+        return y / POSITION_SCALE;
+    }
+
+    public AnimationStateMachine.AnimationType getAnimation() {
+        return AnimationStateMachine.AnimationType.values()[animation];
+    }
+
+    private static int quantize(float position) {
+        return clamp(Math.round(position * POSITION_SCALE), POSITION_BITS);
+    }
+
+    private static int clamp(int value, int bits) {
+        return Math.max(0, Math.min((1 << bits) - 1, value));
+    }
+
+    /** Writes seq, the baseline's distance and the fields; {@code base} may be null. */
+    public void write(BitWriter out, StateSnapshot base) {
+        out.write(seq, SEQ_BITS);
+        int distance = base == null ? 0 : (seq - base.seq) & SEQ_MASK;
+        if (distance >= WINDOW) {
+            base = null;
+            distance = 0;
+        }
+        out.write(distance, BASE_DISTANCE_BITS);
+
+        if (base == null) {
+            out.write(x, POSITION_BITS);
+            out.write(y, POSITION_BITS);
+            out.write(health, HEALTH_BITS);
+            out.write(animation, ANIMATION_BITS);
+            out.write(frameIndex, FRAME_BITS);
+            return;
+        }
+
+        writePosition(out, x, base.x);
+        writePosition(out, y, base.y);
+        writeField(out, health, base.health, HEALTH_BITS);
+        writeField(out, animation, base.animation, ANIMATION_BITS);
+        writeField(out, frameIndex, base.frameIndex, FRAME_BITS);
+    }
+
+    private static void writeField(BitWriter out, int value, int base, int bits) {
+        out.writeBoolean(value != base);
+        if (value != base) out.write(value, bits);
+    }
+
+    private static void writePosition(BitWriter out, int value, int base) {
+        int delta = value - base;
+        out.writeBoolean(delta != 0);
+        if (delta == 0) return;
+
+        boolean small = BitWriter.fitsSigned(delta, POSITION_DELTA_BITS);
+        out.writeBoolean(small);
+        if (small) {
+            out.write(delta, POSITION_DELTA_BITS);
+        } else {
+            out.write(value, POSITION_BITS);
+        }
+    }
+
+    /** Reads the seq and baseline distance; the caller looks the baseline up before {@link #readFields}. */
+    public static int readSeq(BitReader in) {
+        return in.read(SEQ_BITS);
+    }
+
+    public static int readBaseDistance(BitReader in) {
+        return in.read(BASE_DISTANCE_BITS);
+    }
+
+    /** Reads the fields written by {@link #write}; {@code base} must be the snapshot the distance named. */
+    public void readFields(BitReader in, StateSnapshot base) {
+        if (base == null) {
+            x = in.read(POSITION_BITS);
+            y = in.read(POSITION_BITS);
+            health = in.read(HEALTH_BITS);
+            animation = in.read(ANIMATION_BITS);
+            frameIndex = in.read(FRAME_BITS);
+            return;
+        }
+
+        x = readPosition(in, base.x);
+        y = readPosition(in, base.y);
+        health = in.readBoolean() ? in.read(HEALTH_BITS) : base.health;
+        animation = in.readBoolean() ? in.read(ANIMATION_BITS) : base.animation;
+        frameIndex = in.readBoolean() ? in.read(FRAME_BITS) : base.frameIndex;
+    }
+
+    private static int readPosition(BitReader in, int base) {
+        if (!in.readBoolean()) return base;
+        return in.readBoolean() ? base + in.readSigned(POSITION_DELTA_BITS) : in.read(POSITION_BITS);
+    }
+
+    /** True if {@code seq} is newer than {@code other}, allowing for wrap-around. */
+    public static boolean isNewer(int seq, int other) {
+        int d = (seq - other) & SEQ_MASK;
+        return d != 0 && d < (1 << (SEQ_BITS - 1));
+    }
+}
@@ -0,0 +1,203 @@
+package Server;
+
+import Client.NetworkClient.PacketType;
+import Client.ReliableChannel;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Heap allocated by {@link NetworkGameServer} per relayed INPUT.
+ *
+ * Runs the server in this JVM and plays one match against it from two
+ * blocking channels: the host sends an INPUT, the opponent waits for its
+ * INPUT_BROADCAST, and so on. Around the measured stretch it reads
+ * {@code ThreadMXBean.getThreadAllocatedBytes} for every thread but its own,
+ * so the figure covers the receiver, the room's carrier thread and the
+ * timer thread: everything the server does for a packet from receive() to
+ * send(). The relay itself allocates nothing; what is left is time-driven
+ * (the timer thread's ticks) or the JDK's new sender address when the
+ * receiver's sender changes, a fraction of a byte per relay. Above
+ * {@code --max-bytes} (default 1) the run fails with exit code 1, so CI
+ * catches an allocation creeping back into the packet path.
+ *
+ * Usage: {@code AllocationBenchmark [warmup packets] [measured packets] [--max-bytes x]}
+ */
+public class AllocationBenchmark {
+    private static final int ROOM = 1;
+    // A lost datagram fails the run instead of hanging it
+    private static final long RECEIVE_TIMEOUT_NANOS = 2_000_000_000L;
+    // The opponent only receives; a HEARTBEAT this often keeps the liveness timer off it
+    private static final int HEARTBEAT_EVERY = 1000;
+    private static final double DEFAULT_MAX_BYTES = 1.0;
+
+    private final DatagramChannel host;
+    private final DatagramChannel opponent;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(256);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(1024);
+    private byte hostSlot;
+    private long frame = 0;
+
+    private AllocationBenchmark(InetSocketAddress server) throws IOException {
+        host = open(server);
+        opponent = open(server);
+    }
+
+    private static DatagramChannel open(InetSocketAddress server) throws IOException {
+        DatagramChannel ch = DatagramChannel.open();
+        ch.connect(server);
+        ch.configureBlocking(false);
+        return ch;
+    }
+
+    // CONNECT both, then ack GAME_START so nothing is left to retransmit
+    private void seat() throws IOException {
+        hostSlot = connect(host, "P1", true);
+        connect(opponent, "P2", false);
+        ackGameStart(host);
+        ackGameStart(opponent);
+    }
+
+    private byte connect(DatagramChannel ch, String id, boolean isHost) throws IOException {
+        out.clear();
+        out.put(PacketType.CONNECT);
+        out.putShort((short) ROOM);
+        writeString(out, id);
+        writeString(out, "bench-" + id);
+        out.put((byte) (isHost ? 1 : 0));
+        out.flip();
+        ch.write(out);
+
+        ByteBuffer bb = receive(ch, PacketType.CONNECT_ACCEPTED);
+        return bb.get();
+    }
+
+    private void ackGameStart(DatagramChannel ch) throws IOException {
+        ByteBuffer bb = receive(ch, PacketType.RELIABLE);
+        int seq = bb.getShort() & ReliableChannel.SEQ_MASK;
+        byte slot = ch == host ? hostSlot : (byte) (1 - hostSlot);
+        out.clear();
+        out.put(PacketType.RELIABLE_ACK);
+        out.putShort((short) ROOM);
+        out.put(slot);
+        out.putShort((short) seq);
+        out.putInt(0);
+        out.flip();
+        ch.write(out);
+    }
+
+    // One INPUT from the host and its relay to the opponent
+    private void relayOne() throws IOException {
+        out.clear();
+        out.put(PacketType.INPUT);
+        out.putShort((short) ROOM);
+        out.put(hostSlot);
+        out.putLong(++frame);
+        out.putLong(-1);
+        out.put((byte) 1);
+        out.putShort((short) (frame & 0x1FF));
+        out.flip();
+        host.write(out);
+        receive(opponent, PacketType.INPUT_BROADCAST);
+
+        if (frame % HEARTBEAT_EVERY == 0) {
+            out.clear();
+            out.put(PacketType.HEARTBEAT);
+            out.putShort((short) ROOM);
+            out.put((byte) (1 - hostSlot));
+            out.flip();
+            opponent.write(out);
+        }
+    }
+
+    // Next message of the given type, looking inside batches; anything else is skipped
+    private ByteBuffer receive(DatagramChannel ch, byte type) throws IOException {
+        long deadline = System.nanoTime() + RECEIVE_TIMEOUT_NANOS;
+        while (true) {
+            in.clear();
+            if (ch.read(in) == 0) {
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IOException("No packet of type " + type + " after frame " + frame);
+                }
+                Thread.onSpinWait();
+                continue;
+            }
+            in.flip();
+            if (!in.hasRemaining()) continue;
+            byte first = in.get();
+            if (first == type) return in;
+            if (first != PacketType.BATCH) continue;
+            while (in.remaining() >= 3) {
+                int length = in.getShort() & 0xFFFF;
+                int next = in.position() + length;
+                if (in.get() == type) return in.limit(next);
+                in.position(next);
+            }
+        }
+    }
+
+    private static void writeString(ByteBuffer bb, String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        bb.putShort((short) bytes.length);
+        bb.put(bytes);
+    }
+
+    // Bytes allocated so far by every live thread except the caller
+    private static long allocatedByOthers(com.sun.management.ThreadMXBean threads) {
+        long self = Thread.currentThread().threadId();
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        long total = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != self && bytes[i] > 0) total += bytes[i];
+        }
+        return total;
+    }
+
+    private static int freePort() throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int warmup = args.length > 0 && !args[0].startsWith("--") ? Integer.parseInt(args[0]) : 50_000;
+        int packets = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1]) : 200_000;
+        double maxBytes = DEFAULT_MAX_BYTES;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--max-bytes")) maxBytes = Double.parseDouble(args[++i]);
+        }
+
+        int port = freePort();
+        NetworkGameServer server = new NetworkGameServer(port);
+        server.start();
+        boolean ok;
+        try {
+            AllocationBenchmark bench = new AllocationBenchmark(new InetSocketAddress("127.0.0.1", port));
+            bench.seat();
+            for (int i = 0; i < warmup; i++) bench.relayOne();
+
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long before = allocatedByOthers(threads);
+            long start = System.nanoTime();
+            for (int i = 0; i < packets; i++) bench.relayOne();
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedByOthers(threads) - before;
+
+            double perRelay = (double) allocated / packets;
+            System.out.println(String.format("%d relayed INPUTs, %.1f us round trip, %.1f B allocated per relay (%d B total)",
+                    packets, elapsed / 1e3 / packets, perRelay, allocated));
+            ok = perRelay <= maxBytes;
+            if (!ok) System.out.println(String.format("FAIL %.1f B per relay above %.1f B", perRelay, maxBytes));
+        } finally {
+            server.stop();
+        }
+        System.exit(ok ? 0 : 1);
+    }
+}
@@ -0,0 +1,178 @@
+package Server;
+
+import Client.AudioSink;
+import Client.Fighter;
+import Client.InputHistory;
+import Client.MatchSimulation;
+import Sim.ScriptedInput;
+import java.nio.ByteBuffer;
+
+/**
+ * Server-side copy of one room's fight, stepped from the inputs the players
+ * send and used as the authority on health, rounds and the match winner.
+ *
+ * A round's clock starts with the first input of that round. Each tick
+ * simulates every frame for which both inputs are in; a frame whose input is
+ * still missing {@link #MAX_INPUT_WAIT} frames after it was due is simulated
+ * anyway with that player's previous input, so one stalled client cannot hold
+ * the match.
+ *
+ * Not thread-safe; the owning {@link MatchRoom}'s lock guards it.
+ */
+public class AuthoritativeMatch {
+    public static final int MAX_INPUT_WAIT = 8;
+    public static final int SNAPSHOT_INTERVAL = 6;
+    // Bounds the catch-up work of a single tick
+    private static final int MAX_STEPS_PER_TICK = 16;
+    // Inputs numbered higher than this cannot open a round; they are stragglers from the last one
+    private static final int ROUND_START_WINDOW = 60;
+
+    private final String p1Character;
+    private final String p2Character;
+    private final ScriptedInput input = new ScriptedInput();
+    private final InputHistory[] inputs = {new InputHistory(), new InputHistory()};
+    private final short[] lastInputs = new short[MatchRoom.MAX_PLAYERS];
+    private final Fighter.State scratch = new Fighter.State();
+
+    private Fighter player1;
+    private Fighter player2;
+    private long frame;          // frames simulated this round
+    private long ticks;          // ticks since the round's first input, -1 before it
+    private int round = 0;
+    private int p1Wins = 0;
+    private int p2Wins = 0;
+    private int roundWinner = -1; // -1 while fighting, else 0 for a draw or 1/2
+    private long stepsTotal = 0;
+
+    public AuthoritativeMatch(String p1Character, String p2Character) {
+        this.p1Character = p1Character;
+        this.p2Character = p2Character;
+        startRound();
+    }
+
+    public void startRound() {
+        player1 = new Fighter(p1Character, 150, 270, "P1", true, input, AudioSink.SILENT);
+        player2 = new Fighter(p2Character, 550, 270, "P2", false, input, AudioSink.SILENT);
+        for (InputHistory history : inputs) {
+            history.reset();
+        }
+        lastInputs[0] = 0;
+        lastInputs[1] = 0;
+        frame = 0;
+        ticks = -1;
+        round++;
+        roundWinner = -1;
+    }
+
+    public void resetMatch() {
+        round = 0;
+        p1Wins = 0;
+        p2Wins = 0;
+        startRound();
+    }
+
+    public void receiveInput(int slot, long inputFrame, short bits) {
+        if (roundWinner >= 0 || inputFrame < frame) return;
+        if (ticks < 0) {
+            if (inputFrame > ROUND_START_WINDOW) return;
+            ticks = inputFrame;
+        }
+        inputs[slot].receive(inputFrame, bits);
+    }
+
+    /**
+     * Advances the fight by one server tick.
+     * Returns true when a snapshot is due, i.e. a multiple of
+     * {@link #SNAPSHOT_INTERVAL} frames was passed or the round just ended.
+     */
+    public boolean tick() {
+        if (ticks < 0 || roundWinner >= 0) return false;
+        ticks++;
+
+        long before = frame;
+        int steps = 0;
+        while (roundWinner < 0 && steps < MAX_STEPS_PER_TICK &&
+                (bothInputsIn(frame) || frame <= ticks - MAX_INPUT_WAIT)) {
+            step();
+            steps++;
+        }
+        return roundWinner >= 0 || frame / SNAPSHOT_INTERVAL != before / SNAPSHOT_INTERVAL;
+    }
+
+    private boolean bothInputsIn(long f) {
+        return inputs[0].contains(f) && inputs[1].contains(f);
+    }
+
+    private void step() {
+        for (int slot = 0; slot < MatchRoom.MAX_PLAYERS; slot++) {
+            if (inputs[slot].contains(frame)) lastInputs[slot] = inputs[slot].get(frame);
+        }
+        input.set(lastInputs[0], lastInputs[1]);
+        MatchSimulation.step(player1, player2);
+        frame++;
+        stepsTotal++;
+
+        // Same rules as the client: KO ends the round at once, otherwise more health wins on time
+        if (player2.isDead()) {
+            endRound(1);
+        } else if (player1.isDead()) {
+            endRound(2);
+        } else if (frame >= MatchSimulation.ROUND_FRAMES) {
+            int h1 = player1.getHealth();
+            int h2 = player2.getHealth();
+            endRound(h1 > h2 ? 1 : h2 > h1 ? 2 : 0);
+        }
+    }
+
+    private void endRound(int winner) {
+        roundWinner = winner;
+        if (winner == 1) p1Wins++;
+        if (winner == 2) p2Wins++;
+    }
+
+    /** [frame long][round u8][p1 state][p2 state], the state being the one before {@code frame} is simulated. */
+    public void writeSnapshot(ByteBuffer bb) {
+        bb.putLong(frame);
+        bb.put((byte) round);
+        player1.saveState(scratch);
+        scratch.write(bb);
+        player2.saveState(scratch);
+        scratch.write(bb);
+    }
+
+    /** [round u8][winner u8][p1Wins u8][p2Wins u8] */
+    public void writeRoundEnd(ByteBuffer bb) {
+        bb.put((byte) round);
+        bb.put((byte) roundWinner);
+        bb.put((byte) p1Wins);
+        bb.put((byte) p2Wins);
+    }
+
+    public boolean isRoundOver() {
+        return roundWinner >= 0;
+    }
+
+    public boolean isMatchOver() {
+        return p1Wins >= MatchSimulation.ROUNDS_TO_WIN || p2Wins >= MatchSimulation.ROUNDS_TO_WIN;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public int getP1Wins() {
+        return p1Wins;
+    }
+
+    public int getP2Wins() {
+        return p2Wins;
+    }
+
+    public long getFrame() {
+        return frame;
+    }
+
+    public long getStepsTotal() {
+        return stepsTotal;
+    }
+}
@@ -0,0 +1,120 @@
+package Server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed pool of reusable direct buffers for the server's datagram path.
+ * Direct buffers go straight to the socket without the JDK copying them into
+ * a temporary native buffer first, and reusing them keeps the steady-state
+ * send/receive path free of garbage.
+ *
+ * The receiver and every room shard acquire and release buffers for every
+ * packet, so the free list is a bounded lock-free ring rather than
+ * a monitor: each slot carries the sequence it is next valid for, and a
+ * thread claims a slot by moving the put or take position on by CAS.
+ * A thread that meets a slot another thread is half way through filling or
+ * emptying spins until it is done rather than report the pool empty or full.
+ * Nothing blocks, and nothing allocates.
+ */
+public class BufferPool {
+    private final AtomicReferenceArray<ByteBuffer> slots;
+    // slot i is free to fill when its sequence equals the put position, full when it is one past the take position
+    private final AtomicLongArray sequences;
+    private final AtomicLong putPos = new AtomicLong();
+    private final AtomicLong takePos = new AtomicLong();
+    private final int mask;
+    private final int bufferSize;
+    private final LongAdder misses = new LongAdder();
+
+    /** @param capacity buffers made up front; the ring holds at least that many, rounded up to a power of two */
+    public BufferPool(int capacity, int bufferSize) {
+        int n = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(n);
+        this.sequences = new AtomicLongArray(n);
+        this.mask = n - 1;
+        this.bufferSize = bufferSize;
+        for (int i = 0; i < n; i++) sequences.set(i, i);
+        for (int i = 0; i < capacity; i++) {
+            offer(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = poll();
+        if (buffer == null) {
+            // Pool exhausted: hand out a fresh buffer; release() keeps it if there is room
+            misses.increment();
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) return;
+        offer(buffer);
+    }
+
+    public int available() {
+        return (int) Math.max(0, putPos.get() - takePos.get());
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    private boolean offer(ByteBuffer buffer) {
+        long pos = putPos.get();
+        while (true) {
+            int i = (int) pos & mask;
+            long diff = sequences.get(i) - pos;
+            if (diff == 0) {
+                if (putPos.compareAndSet(pos, pos + 1)) {
+                    slots.set(i, buffer);
+                    sequences.set(i, pos + 1);
+                    return true;
+                }
+                pos = putPos.get();
+            } else if (diff < 0) {
+                // Full, unless a taker has claimed this slot and not yet handed it back
+                if (takePos.get() <= pos - mask - 1) return false;   // the extra buffer is left to the GC
+                Thread.onSpinWait();
+                pos = putPos.get();
+            } else {
+                pos = putPos.get();
+            }
+        }
+    }
+
+    private ByteBuffer poll() {
+        long pos = takePos.get();
+        while (true) {
+            int i = (int) pos & mask;
+            long diff = sequences.get(i) - (pos + 1);
+            if (diff == 0) {
+                if (takePos.compareAndSet(pos, pos + 1)) {
+                    ByteBuffer buffer = slots.get(i);
+                    slots.set(i, null);
+                    sequences.set(i, pos + mask + 1);
+                    return buffer;
+                }
+                pos = takePos.get();
+            } else if (diff < 0) {
+                // Empty, unless a putter has claimed this slot and not yet filled it
+                if (putPos.get() <= pos) return null;
+                Thread.onSpinWait();
+                pos = takePos.get();
+            } else {
+                pos = takePos.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package Server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear histogram of non-negative longs (latencies in nanoseconds), in
+ * the spirit of HdrHistogram: values below 64 get a bucket each, and above
+ * that every power of two is split into 32 buckets, so any value is reported
+ * to within about 3% with a fixed 1888 buckets.
+ *
+ * Recording never locks, so any number of threads may record at once; reads
+ * taken while others record are not an exact snapshot, which is fine for
+ * reporting.
+ */
+public class Histogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int LINEAR = 2 * SUB_COUNT;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) max.accumulateAndGet(value, Math::max);
+    }
+
+    /** Adds everything recorded in {@code other}. */
+    public void add(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) counts.addAndGet(i, c);
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /** Smallest bucket bound at or below which {@code percentile}% of the values lie; 0 when empty. */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += counts.get(i);
+        if (total == 0) return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(highestValue(i), max.get());
+        }
+        return max.get();
+    }
+
+    /** Copy of the current counts, e.g. to diff a later state against with {@link #since}. */
+    public Histogram copy() {
+        Histogram h = new Histogram();
+        h.add(this);
+        return h;
+    }
+
+    /** What was recorded after {@code earlier}, a {@link #copy} of this histogram. */
+    public Histogram since(Histogram earlier) {
+        Histogram h = new Histogram();
+        int top = -1;
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.get(i) - earlier.counts.get(i);
+            if (c > 0) {
+                h.counts.set(i, c);
+                top = i;
+            }
+        }
+        h.count.add(count.sum() - earlier.count.sum());
+        h.sum.add(sum.sum() - earlier.sum.sum());
+        // The exact maximum of the interval is gone; its bucket bounds it
+        if (top >= 0) h.max.set(Math.min(highestValue(top), max.get()));
+        return h;
+    }
+
+    static int index(long value) {
+        if (value < LINEAR) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+    }
+
+    // Largest value that lands in bucket idx; wraps to Long.MAX_VALUE for the top bucket
+    static long highestValue(int idx) {
+        if (idx < LINEAR) return idx;
+        int shift = idx / SUB_COUNT - 1;
+        long sub = idx % SUB_COUNT + SUB_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,145 @@
+package Server;
+
+import java.net.*;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.*;
+
+/**
+ * Local UDP proxy that sits between game clients and {@link NetworkGameServer}
+ * and degrades the link: every datagram in either direction is delayed by a
+ * random one-way latency and dropped with a fixed probability.
+ *
+ * Clients connect to the proxy port instead of the server port, e.g.
+ * {@code ImpairmentProxy 6666 localhost 5555 25 75 0.05} gives 50-150 ms RTT
+ * with 5% loss each way.
+ */
+public class ImpairmentProxy {
+    private static final int BUFFER_SIZE = 1024;
+
+    private final DatagramSocket listenSocket;
+    private final InetSocketAddress serverAddress;
+    private final int minDelayMs;
+    private final int maxDelayMs;
+    private final double lossRate;
+    private final Random random;
+
+    private final Map<SocketAddress, DatagramSocket> upstreams = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService delayQueue = Executors.newSingleThreadScheduledExecutor();
+    private volatile boolean running = false;
+
+    public ImpairmentProxy(int listenPort, InetSocketAddress serverAddress,
+                           int minDelayMs, int maxDelayMs, double lossRate, long seed) throws SocketException {
+        this.listenSocket = new DatagramSocket(listenPort);
+        this.serverAddress = serverAddress;
+        this.minDelayMs = minDelayMs;
+        this.maxDelayMs = Math.max(minDelayMs, maxDelayMs);
+        this.lossRate = lossRate;
+        this.random = new Random(seed);
+    }
+
+    public void start() {
+        running = true;
+        Thread t = new Thread(this::clientLoop, "Proxy-Downstream");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void clientLoop() {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+        while (running) {
+            try {
+                packet.setLength(buffer.length);
+                listenSocket.receive(packet);
+                SocketAddress client = packet.getSocketAddress();
+                DatagramSocket upstream = upstreams.computeIfAbsent(client, this::openUpstream);
+                forward(upstream, packet, serverAddress);
+            } catch (Exception e) {
+                if (running) System.err.println("Proxy receive error: " + e.getMessage());
+            }
+        }
+    }
+
+    // One upstream socket per client so server replies can be routed back to it
+    private DatagramSocket openUpstream(SocketAddress client) {
+        try {
+            DatagramSocket upstream = new DatagramSocket();
+            Thread t = new Thread(() -> serverLoop(upstream, client), "Proxy-Upstream-" + client);
+            t.setDaemon(true);
+            t.start();
+            return upstream;
+        } catch (SocketException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void serverLoop(DatagramSocket upstream, SocketAddress client) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+        while (running && !upstream.isClosed()) {
+            try {
+                packet.setLength(buffer.length);
+                upstream.receive(packet);
+                forward(listenSocket, packet, client);
+            } catch (Exception e) {
+                if (running) System.err.println("Proxy upstream error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void forward(DatagramSocket out, DatagramPacket packet, SocketAddress to) {
+        long delay;
+        synchronized (random) {
+            if (random.nextDouble() < lossRate) return;
+            delay = minDelayMs + random.nextInt(maxDelayMs - minDelayMs + 1);
+        }
+
+        byte[] data = new byte[packet.getLength()];
+        System.arraycopy(packet.getData(), packet.getOffset(), data, 0, data.length);
+
+        delayQueue.schedule(() -> {
+            try {
+                out.send(new DatagramPacket(data, data.length, to));
+            } catch (Exception e) {
+                if (running) System.err.println("Proxy send error: " + e.getMessage());
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        running = false;
+        delayQueue.shutdownNow();
+        listenSocket.close();
+        for (DatagramSocket upstream : upstreams.values()) {
+            upstream.close();
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 6) {
+            System.out.println("Usage: ImpairmentProxy <listenPort> <serverHost> <serverPort> <minDelayMs> <maxDelayMs> <lossRate> [seed]");
+            return;
+        }
+
+        try {
+            ImpairmentProxy proxy = new ImpairmentProxy(
+                    Integer.parseInt(args[0]),
+                    new InetSocketAddress(args[1], Integer.parseInt(args[2])),
+                    Integer.parseInt(args[3]),
+                    Integer.parseInt(args[4]),
+                    Double.parseDouble(args[5]),
+                    args.length > 6 ? Long.parseLong(args[6]) : 1L);
+            proxy.start();
+            System.out.println("Proxy on " + args[0] + " -> " + args[1] + ":" + args[2]
+                    + " (" + args[3] + "-" + args[4] + " ms one-way, loss " + args[5] + ")");
+            new Scanner(System.in).nextLine();
+            proxy.stop();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,773 @@
+package Server;
+
+import Client.AnimationStateMachine.AnimationType;
+import Client.BitWriter;
+import Client.DatagramBatch;
+import Client.InputHistory;
+import Client.MatchSimulation;
+import Client.NetworkClient.PacketType;
+import Client.ReliableChannel;
+import Client.RttEstimator;
+import Client.StateSnapshot;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless load test for {@link NetworkGameServer}: thousands of bot clients
+ * over loopback, speaking the same wire protocol as {@link Client.NetworkClient}.
+ *
+ * Bots are paired into rooms; the host connects first, then its opponent,
+ * and once GAME_START arrives both send INPUT every frame at 60 Hz (repeating
+ * unacked frames the way the real client does), a delta-encoded STATE_UPDATE
+ * every fifth frame and a PING, which is also the heartbeat, every 250 ms.
+ * As in the real client a frame's INPUT, STATE_UPDATE and PING share one datagram.
+ * The report counts datagrams each way, which is the number of socket calls
+ * the server makes, per match-second.
+ * Bots are split across a few shard threads, each owning whole rooms and a
+ * selector, so the generator needs no locks and both ends of a relay share a
+ * clock: relay latency is the time from a bot sending a frame to its
+ * opponent receiving the server's INPUT_BROADCAST of it.
+ *
+ * By default the server is started as a child JVM on a free port, so its CPU
+ * can be measured apart from the generator's. Everything is seeded and runs
+ * for a fixed time; {@code --max-p99-ms} and {@code --max-loss-pct} turn the
+ * run into a pass/fail check with exit code 1 for CI.
+ *
+ * With {@code --ramp n} it runs step after step against the same server,
+ * starting at the given clients and adding n each step, until a step breaks
+ * the limits (20 ms p99 and 1% loss unless given). The last step that held
+ * is reported as rooms per server core: its rooms over the cores' worth of
+ * CPU the server used, so the figure carries over to bigger machines.
+ *
+ * Usage: {@code LoadGenerator [clients] [seconds] [--threads n] [--warmup s]
+ * [--connect host:port [--pid n]] [--seed n] [--max-p99-ms x] [--max-loss-pct x]
+ * [--ramp clients]}
+ */
+public class LoadGenerator {
+    private static final int TICK_HZ = MatchSimulation.SIM_HZ;
+    private static final long TICK_NANOS = 1_000_000_000L / TICK_HZ;
+    // Real clients are not in step; sending every bot at the tick edge would overflow the server's socket buffer
+    private static final int SLICES = 16;
+    private static final long SLICE_NANOS = TICK_NANOS / SLICES;
+    private static final int STATE_EVERY_TICKS = 5;          // as GameSceneController
+    private static final int PING_EVERY_TICKS = TICK_HZ / 4; // as NetworkClient's 250 ms
+    private static final int MAX_INPUTS_PER_PACKET = 32;
+    private static final int MAX_CATCH_UP_TICKS = 4;
+    private static final long CONNECT_RETRY_NANOS = 500_000_000L;
+    private static final long CONNECT_TIMEOUT_NANOS = 20_000_000_000L;
+    private static final long DRAIN_MS = 500;
+    private static final int RING_MASK = InputHistory.CAPACITY - 1;
+    private static final double RAMP_MAX_P99_MS = 20;
+    private static final double RAMP_MAX_LOSS_PCT = 1;
+
+    private static final int CONNECTING = 0;
+    private static final int SEATED = 1;
+    private static final int PLAYING = 2;
+
+    private final InetSocketAddress server;
+    private final long seed;
+    // Ramp steps share a server, so each takes room ids the ones before did not use
+    private final int firstRoomId;
+    private final Histogram relayLatency = new Histogram();
+    private final AtomicInteger playing = new AtomicInteger();
+    private volatile boolean running = true;
+    private volatile boolean measuring = false;
+    private volatile boolean sending = true;
+
+    private static final class Bot {
+        final int roomId;
+        final boolean isHost;
+        final DatagramChannel channel;
+        final Random random;
+        Bot opponent;
+
+        int state = CONNECTING;
+        byte slot = -1;
+        long lastConnectNanos;
+        int phase; // spreads pings and state updates over the ticks
+
+        final InputHistory local = new InputHistory();
+        final InputHistory remote = new InputHistory();
+        long frame = -1;
+        short bits;
+        int holdTicks;
+
+        // Per sent frame, by frame & RING_MASK: when it went out and whether the measurement counts it
+        final long[] sentFrame = new long[InputHistory.CAPACITY];
+        final long[] sentNanos = new long[InputHistory.CAPACITY];
+        final boolean[] sentMeasured = new boolean[InputHistory.CAPACITY];
+
+        final StateSnapshot[] sentStates = new StateSnapshot[StateSnapshot.WINDOW];
+        int stateSeq = 0;
+        int ackedStateSeq = -1;
+        // Reported back in each ping, like NetworkClient, so the server has per-player RTT to export
+        final RttEstimator rtt = new RttEstimator();
+
+        final ReliableChannel reliable = new ReliableChannel();
+        final DatagramBatch batch;
+
+        Bot(int roomId, boolean isHost, DatagramChannel channel, long seed) {
+            this.roomId = roomId;
+            this.isHost = isHost;
+            this.channel = channel;
+            this.batch = new DatagramBatch(channel, roomId);
+            this.random = new Random(seed);
+            for (int i = 0; i < sentStates.length; i++) sentStates[i] = new StateSnapshot();
+            Arrays.fill(sentFrame, -1);
+        }
+
+        // Hold a random button combination for a few frames, like a player mashing
+        short nextBits() {
+            if (--holdTicks <= 0) {
+                bits = (short) (random.nextInt(1 << 9) & random.nextInt(1 << 9));
+                holdTicks = 3 + random.nextInt(20);
+            }
+            return bits;
+        }
+    }
+
+    /** Counters of one shard, merged once its thread has finished. */
+    private static final class Stats {
+        final long[] sent = new long[256];
+        final long[] received = new long[256];
+        long datagramsSent, datagramsReceived;
+        long sentBytes, receivedBytes;
+        long inputsMeasured, inputsRelayed;
+        long pings, pongs;
+        long lateTicks, rejected, sendErrors;
+
+        void add(Stats other) {
+            for (int i = 0; i < 256; i++) {
+                sent[i] += other.sent[i];
+                received[i] += other.received[i];
+            }
+            datagramsSent += other.datagramsSent;
+            datagramsReceived += other.datagramsReceived;
+            sentBytes += other.sentBytes;
+            receivedBytes += other.receivedBytes;
+            inputsMeasured += other.inputsMeasured;
+            inputsRelayed += other.inputsRelayed;
+            pings += other.pings;
+            pongs += other.pongs;
+            lateTicks += other.lateTicks;
+            rejected += other.rejected;
+            sendErrors += other.sendErrors;
+        }
+    }
+
+    private final class Shard implements Runnable {
+        final List<Bot> bots = new ArrayList<>();
+        final Selector selector;
+        final Stats stats = new Stats();
+        final ByteBuffer in = ByteBuffer.allocateDirect(1024);
+        final ByteBuffer out = ByteBuffer.allocateDirect(1024);
+        final BitWriter bitWriter = new BitWriter();
+        long ticks = 0;
+
+        Shard() throws IOException {
+            selector = Selector.open();
+        }
+
+        void add(Bot bot) throws IOException {
+            bot.phase = bots.size();
+            bot.channel.register(selector, SelectionKey.OP_READ, bot);
+            bots.add(bot);
+        }
+
+        @Override
+        public void run() {
+            long nextSlice = System.nanoTime();
+            int slice = 0;
+            try {
+                while (running) {
+                    long wait = nextSlice - System.nanoTime();
+                    if (wait > 0) {
+                        selector.select(Math.max(1, wait / 1_000_000));
+                    } else {
+                        selector.selectNow();
+                    }
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        receiveAll((Bot) key.attachment());
+                    }
+                    selector.selectedKeys().clear();
+
+                    long now = System.nanoTime();
+                    if (now - nextSlice < 0) continue;
+                    tick(now, slice);
+                    if (++slice == SLICES) {
+                        slice = 0;
+                        ticks++;
+                    }
+                    nextSlice += SLICE_NANOS;
+                    // Generator itself too slow: skip ahead rather than burst, and say so in the report
+                    if (now - nextSlice > MAX_CATCH_UP_TICKS * TICK_NANOS) {
+                        stats.lateTicks += (now - nextSlice) / TICK_NANOS;
+                        nextSlice = now + SLICE_NANOS;
+                    }
+                }
+                for (Bot bot : bots) {
+                    if (bot.slot >= 0) send(bot, header(bot, PacketType.DISCONNECT));
+                    bot.channel.close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Load shard failed: " + e.getMessage());
+            }
+        }
+
+        // Runs every SLICES-th bot, so a tick's packets leave spread across it
+        private void tick(long now, int slice) {
+            for (int i = slice; i < bots.size(); i += SLICES) {
+                Bot bot = bots.get(i);
+                switch (bot.state) {
+                    case CONNECTING:
+                        // The server turns a client away until its host is seated
+                        if ((bot.isHost || bot.opponent.state != CONNECTING)
+                                && now - bot.lastConnectNanos >= CONNECT_RETRY_NANOS) {
+                            bot.lastConnectNanos = now;
+                            sendConnect(bot);
+                        }
+                        break;
+                    case SEATED:
+                        if ((ticks + bot.phase) % PING_EVERY_TICKS == 0) sendPing(bot, now);
+                        break;
+                    case PLAYING:
+                        if (!sending) break;
+                        try {
+                            sendInput(bot, now);
+                            if ((ticks + bot.phase) % STATE_EVERY_TICKS == 0) sendState(bot);
+                            if ((ticks + bot.phase) % PING_EVERY_TICKS == 0) queuePing(bot, now);
+                        } catch (IOException e) {
+                            stats.sendErrors++;
+                        }
+                        flush(bot);
+                        break;
+                }
+            }
+        }
+
+        private void receiveAll(Bot bot) {
+            try {
+                while (true) {
+                    in.clear();
+                    if (bot.channel.receive(in) == null) return;
+                    in.flip();
+                    if (measuring) {
+                        stats.datagramsReceived++;
+                        stats.receivedBytes += in.remaining();
+                    }
+                    handle(bot, in);
+                }
+            } catch (PortUnreachableException e) {
+                // Server not bound yet; the CONNECT is retried
+            } catch (Exception e) {
+                if (running) System.err.println("Load receive error: " + e.getMessage());
+            }
+        }
+
+        private void handle(Bot bot, ByteBuffer bb) {
+            byte type = bb.get();
+            if (measuring && type != PacketType.BATCH) stats.received[type & 0xFF]++;
+            switch (type) {
+                case PacketType.BATCH:
+                    handleBatch(bot, bb);
+                    break;
+                case PacketType.CONNECT_ACCEPTED:
+                    if (bot.state == CONNECTING) {
+                        bot.slot = bb.get();
+                        bot.batch.setSlot(bot.slot);
+                        bot.state = SEATED;
+                    }
+                    break;
+                case PacketType.CONNECT_REJECTED:
+                    stats.rejected++;
+                    break;
+                case PacketType.RELIABLE:
+                    handleReliable(bot, bb);
+                    break;
+                case PacketType.INPUT_BROADCAST:
+                    handleInputBroadcast(bot, bb);
+                    break;
+                case PacketType.PONG:
+                    bot.rtt.addSample(bb.getLong(), System.nanoTime());
+                    bb.getInt();
+                    int stateAck = bb.getInt();
+                    if (stateAck >= 0 && (bot.ackedStateSeq < 0 || StateSnapshot.isNewer(stateAck, bot.ackedStateSeq))) {
+                        bot.ackedStateSeq = stateAck;
+                    }
+                    if (measuring) stats.pongs++;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // [len u16][type][body] per message
+        private void handleBatch(Bot bot, ByteBuffer bb) {
+            int end = bb.limit();
+            while (bb.remaining() >= 3) {
+                int length = bb.getShort() & 0xFFFF;
+                int next = bb.position() + length;
+                if (length == 0 || next > end) return;
+                bb.limit(next);
+                handle(bot, bb);
+                bb.limit(end);
+                bb.position(next);
+            }
+        }
+
+        // Control messages are acked like NetworkClient does; only GAME_START matters to a bot
+        private void handleReliable(Bot bot, ByteBuffer bb) {
+            int seq = bb.getShort() & ReliableChannel.SEQ_MASK;
+            bb.getShort();
+            bb.getInt();
+            byte[] message = new byte[bb.remaining()];
+            bb.get(message);
+            bot.reliable.receive(seq, message);
+
+            ByteBuffer ack = header(bot, PacketType.RELIABLE_ACK);
+            ack.putShort((short) bot.reliable.getAck());
+            ack.putInt(bot.reliable.getAckBits());
+            send(bot, ack);
+
+            byte[] next;
+            while ((next = bot.reliable.poll()) != null) {
+                if (next.length > 0 && next[0] == PacketType.GAME_START && bot.state == SEATED) {
+                    bot.state = PLAYING;
+                    playing.incrementAndGet();
+                }
+            }
+        }
+
+        private void handleInputBroadcast(Bot bot, ByteBuffer bb) {
+            int fromSlot = bb.get();
+            if (fromSlot == bot.slot) return;
+            long newest = bb.getLong();
+            long ackFrame = bb.getLong();
+            int count = bb.get();
+            bot.local.acknowledge(ackFrame);
+            int base = bb.position();
+            for (int i = count - 1; i >= 0; i--) {
+                bot.remote.receive(newest - i, bb.getShort(base + i * 2));
+            }
+
+            // Each INPUT's newest frame was sent exactly once; its first relay is the sample
+            Bot sender = bot.opponent;
+            int idx = (int) (newest & RING_MASK);
+            if (newest >= 0 && sender.sentFrame[idx] == newest) {
+                sender.sentFrame[idx] = -1;
+                if (sender.sentMeasured[idx]) {
+                    stats.inputsRelayed++;
+                    relayLatency.record(System.nanoTime() - sender.sentNanos[idx]);
+                }
+            }
+        }
+
+        private void sendConnect(Bot bot) {
+            ByteBuffer bb = out;
+            bb.clear();
+            bb.put(PacketType.CONNECT);
+            bb.putShort((short) bot.roomId);
+            String id = bot.isHost ? "P1" : "P2";
+            writeString(bb, id);
+            writeString(bb, "bot-" + bot.roomId + "-" + id);
+            bb.put((byte) (bot.isHost ? 1 : 0));
+            send(bot, bb);
+        }
+
+        private void sendInput(Bot bot, long now) throws IOException {
+            long frame = ++bot.frame;
+            bot.local.record(frame, bot.nextBits());
+            int idx = (int) (frame & RING_MASK);
+            bot.sentFrame[idx] = frame;
+            bot.sentNanos[idx] = now;
+            bot.sentMeasured[idx] = measuring;
+            if (measuring) stats.inputsMeasured++;
+
+            long newest = frame;
+            long first = bot.local.firstUnacked();
+            int count = 0;
+            if (first >= 0) {
+                newest = Math.min(newest, first + MAX_INPUTS_PER_PACKET - 1);
+                count = (int) (newest - first + 1);
+            }
+
+            ByteBuffer bb = bot.batch.begin(PacketType.INPUT);
+            bb.putLong(newest);
+            bb.putLong(bot.remote.getContiguousFrame());
+            bb.put((byte) count);
+            for (int i = 0; i < count; i++) {
+                bb.putShort(bot.local.get(newest - i));
+            }
+            end(bot, PacketType.INPUT);
+        }
+
+        private void sendState(Bot bot) throws IOException {
+            int seq = bot.stateSeq;
+            bot.stateSeq = (seq + 1) & StateSnapshot.SEQ_MASK;
+            StateSnapshot snapshot = bot.sentStates[seq & (StateSnapshot.WINDOW - 1)];
+            // Walks back and forth across the stage and takes a little damage now and then
+            float x = 200 + (float) (150 * Math.sin(bot.frame / 90.0));
+            int health = 100 - (int) ((bot.frame / 600) % 100);
+            snapshot.set(x, 300, health, AnimationType.IDLE, (int) (bot.frame / 6 % 4));
+            snapshot.seq = seq;
+
+            StateSnapshot base = null;
+            if (bot.ackedStateSeq >= 0) {
+                StateSnapshot candidate = bot.sentStates[bot.ackedStateSeq & (StateSnapshot.WINDOW - 1)];
+                if (candidate.seq == bot.ackedStateSeq && candidate != snapshot) base = candidate;
+            }
+
+            ByteBuffer bb = bot.batch.begin(PacketType.STATE_UPDATE);
+            snapshot.write(bitWriter.wrap(bb), base);
+            bitWriter.flush();
+            end(bot, PacketType.STATE_UPDATE);
+        }
+
+        private void sendPing(Bot bot, long now) {
+            ByteBuffer bb = header(bot, PacketType.PING);
+            bb.putLong(now);
+            putRtt(bot, bb);
+            send(bot, bb);
+            if (measuring) stats.pings++;
+        }
+
+        // In a match the ping rides in the frame's datagram, as with NetworkClient
+        private void queuePing(Bot bot, long now) throws IOException {
+            ByteBuffer bb = bot.batch.begin(PacketType.PING);
+            bb.putLong(now);
+            putRtt(bot, bb);
+            end(bot, PacketType.PING);
+            if (measuring) stats.pings++;
+        }
+
+        private static void putRtt(Bot bot, ByteBuffer bb) {
+            boolean known = bot.rtt.hasSamples();
+            bb.putInt(known ? (int) (bot.rtt.getRttNanos() / 1000) : -1);
+            bb.putInt(known ? (int) (bot.rtt.getJitterNanos() / 1000) : -1);
+        }
+
+        private ByteBuffer header(Bot bot, byte type) {
+            out.clear();
+            out.put(type);
+            out.putShort((short) bot.roomId);
+            out.put(bot.slot);
+            return out;
+        }
+
+        private void send(Bot bot, ByteBuffer bb) {
+            bb.flip();
+            byte type = bb.get(0);
+            int length = bb.remaining();
+            try {
+                bot.channel.write(bb);
+                if (measuring) {
+                    stats.sent[type & 0xFF]++;
+                    stats.datagramsSent++;
+                    stats.sentBytes += length;
+                }
+            } catch (IOException e) {
+                stats.sendErrors++;
+            }
+        }
+
+        // Adds the message begun on the bot's batch; it leaves with the tick's flush
+        private void end(Bot bot, byte type) {
+            bot.batch.end();
+            if (measuring) stats.sent[type & 0xFF]++;
+        }
+
+        private void flush(Bot bot) {
+            try {
+                int length = bot.batch.flush();
+                if (measuring && length > 0) {
+                    stats.datagramsSent++;
+                    stats.sentBytes += length;
+                }
+            } catch (IOException e) {
+                stats.sendErrors++;
+            }
+        }
+    }
+
+    public LoadGenerator(InetSocketAddress server, long seed) {
+        this(server, seed, 1);
+    }
+
+    public LoadGenerator(InetSocketAddress server, long seed, int firstRoomId) {
+        this.server = server;
+        this.seed = seed;
+        this.firstRoomId = firstRoomId;
+    }
+
+    /** What one run measured; ok is false if a threshold was missed or not every bot got into a match. */
+    public record Result(boolean ok, int rooms, double p99Ms, double lossPct, double serverCpuPct) {
+    }
+
+    private static void writeString(ByteBuffer bb, String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        bb.putShort((short) bytes.length);
+        bb.put(bytes);
+    }
+
+    /** Runs the load and prints the report. */
+    public Result run(int clients, int threads, double warmupSeconds, double seconds,
+                       ProcessHandle serverProcess, double maxP99Ms, double maxLossPct) throws Exception {
+        int rooms = Math.max(1, clients / 2);
+        Shard[] shards = new Shard[Math.max(1, Math.min(threads, rooms))];
+        for (int i = 0; i < shards.length; i++) shards[i] = new Shard();
+
+        for (int r = 0; r < rooms; r++) {
+            int roomId = firstRoomId + r;
+            Bot host = new Bot(roomId, true, openChannel(), seed * 1_000_003L + 2L * roomId);
+            Bot client = new Bot(roomId, false, openChannel(), seed * 1_000_003L + 2L * roomId + 1);
+            host.opponent = client;
+            client.opponent = host;
+            shards[r % shards.length].add(host);
+            shards[r % shards.length].add(client);
+        }
+
+        Thread[] workers = new Thread[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            workers[i] = new Thread(shards[i], "Load-Shard-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        long deadline = System.nanoTime() + CONNECT_TIMEOUT_NANOS;
+        while (playing.get() < rooms * 2 && System.nanoTime() - deadline < 0) {
+            Thread.sleep(50);
+        }
+        System.out.println(String.format("%d/%d bots in %d rooms playing, %d shard threads",
+                playing.get(), rooms * 2, rooms, shards.length));
+
+        Thread.sleep((long) (warmupSeconds * 1000));
+
+        Duration serverCpu0 = cpu(serverProcess);
+        Duration selfCpu0 = cpu(ProcessHandle.current());
+        long start = System.nanoTime();
+        measuring = true;
+        Thread.sleep((long) (seconds * 1000));
+        sending = false;
+        long end = System.nanoTime();
+        Duration serverCpu1 = cpu(serverProcess);
+        Duration selfCpu1 = cpu(ProcessHandle.current());
+
+        // Let the last relays land before the counts are read
+        Thread.sleep(DRAIN_MS);
+        measuring = false;
+        running = false;
+        for (Thread worker : workers) worker.join();
+
+        Stats total = new Stats();
+        for (Shard shard : shards) total.add(shard.stats);
+
+        double wall = (end - start) / 1e9;
+        double serverCpuPct = serverCpu0 == null || serverCpu1 == null
+                ? -1 : 100.0 * serverCpu1.minus(serverCpu0).toNanos() / (end - start);
+        double selfCpuPct = selfCpu0 == null || selfCpu1 == null
+                ? -1 : 100.0 * selfCpu1.minus(selfCpu0).toNanos() / (end - start);
+        long lost = total.inputsMeasured - total.inputsRelayed;
+        double lossPct = total.inputsMeasured == 0 ? 100 : 100.0 * lost / total.inputsMeasured;
+        double p50 = relayLatency.getValueAtPercentile(50) / 1e6;
+        double p99 = relayLatency.getValueAtPercentile(99) / 1e6;
+        double p999 = relayLatency.getValueAtPercentile(99.9) / 1e6;
+        double max = relayLatency.getMax() / 1e6;
+        double sentDatagrams = total.datagramsSent / wall;
+        double receivedDatagrams = total.datagramsReceived / wall;
+        // The server makes one receive per datagram it gets and one send per datagram it sends
+        double syscallsPerMatch = (sentDatagrams + receivedDatagrams) / rooms;
+
+        System.out.println("=== Load report ===");
+        System.out.println(String.format("%d clients, %d rooms, %.1f s measured", rooms * 2, rooms, wall));
+        System.out.println(String.format("To server:   %.0f datagrams/s, %.0f KB/s (input %.0f/s, state %.0f/s, ping %.0f/s)",
+                sentDatagrams, total.sentBytes / wall / 1024,
+                total.sent[PacketType.INPUT & 0xFF] / wall,
+                total.sent[PacketType.STATE_UPDATE & 0xFF] / wall,
+                total.sent[PacketType.PING & 0xFF] / wall));
+        System.out.println(String.format("From server: %.0f datagrams/s, %.0f KB/s (input broadcast %.0f/s, pong %.0f/s)",
+                receivedDatagrams, total.receivedBytes / wall / 1024,
+                total.received[PacketType.INPUT_BROADCAST & 0xFF] / wall,
+                total.received[PacketType.PONG & 0xFF] / wall));
+        System.out.println(String.format("Server socket calls: %.0f per match-second (%.0f receives, %.0f sends)",
+                syscallsPerMatch, sentDatagrams / rooms, receivedDatagrams / rooms));
+        System.out.println(String.format("Relay latency: p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms over %d samples",
+                p50, p99, p999, max, relayLatency.getCount()));
+        System.out.println(String.format("Inputs relayed: %d/%d (%.2f%% lost), pongs %d/%d",
+                total.inputsRelayed, total.inputsMeasured, lossPct, total.pongs, total.pings));
+        System.out.println(String.format("Server CPU: %s, generator CPU: %s, generator late ticks: %d, rejected: %d, send errors: %d",
+                serverCpuPct < 0 ? "n/a" : String.format("%.1f%%", serverCpuPct),
+                selfCpuPct < 0 ? "n/a" : String.format("%.1f%%", selfCpuPct),
+                total.lateTicks, total.rejected, total.sendErrors));
+        // One greppable line for CI to diff between runs
+        System.out.println(String.format("RESULT clients=%d playing=%d pps_in=%.0f pps_out=%.0f syscalls_per_match_s=%.1f p50_ms=%.3f p99_ms=%.3f p999_ms=%.3f loss_pct=%.3f server_cpu_pct=%.1f",
+                rooms * 2, playing.get(), sentDatagrams, receivedDatagrams, syscallsPerMatch, p50, p99, p999, lossPct, serverCpuPct));
+
+        boolean ok = true;
+        if (playing.get() < rooms * 2) {
+            System.out.println("FAIL only " + playing.get() + " of " + rooms * 2 + " bots got into a match");
+            ok = false;
+        }
+        if (maxP99Ms > 0 && p99 > maxP99Ms) {
+            System.out.println(String.format("FAIL p99 %.2f ms above %.2f ms", p99, maxP99Ms));
+            ok = false;
+        }
+        if (maxLossPct >= 0 && lossPct > maxLossPct) {
+            System.out.println(String.format("FAIL loss %.2f%% above %.2f%%", lossPct, maxLossPct));
+            ok = false;
+        }
+        return new Result(ok, rooms, p99, lossPct, serverCpuPct);
+    }
+
+    /**
+     * Steps the load up by {@code stepClients} until a step misses a limit,
+     * then prints the last step that held in rooms per server core. Returns
+     * false if not even the first step held.
+     */
+    private static boolean ramp(InetSocketAddress server, long seed, int clients, int stepClients, int threads,
+                                double warmupSeconds, double seconds, ProcessHandle serverProcess,
+                                double maxP99Ms, double maxLossPct) throws Exception {
+        Result held = null;
+        int firstRoomId = 1;
+        for (int step = 1; ; step++) {
+            int rooms = Math.max(1, clients / 2);
+            if (firstRoomId + rooms > NetworkGameServer.MAX_ROOMS) {
+                System.out.println("RAMP out of room ids");
+                break;
+            }
+            System.out.println(String.format("=== Ramp step %d: %d clients ===", step, rooms * 2));
+            Result result = new LoadGenerator(server, seed + step, firstRoomId).run(rooms * 2, threads,
+                    warmupSeconds, seconds, serverProcess, maxP99Ms, maxLossPct);
+            System.out.println(String.format("RAMP step=%d rooms=%d p99_ms=%.3f loss_pct=%.3f server_cpu_pct=%.1f %s",
+                    step, rooms, result.p99Ms(), result.lossPct(), result.serverCpuPct(), result.ok() ? "held" : "broke"));
+            if (!result.ok()) break;
+            held = result;
+            firstRoomId += rooms;
+            clients += stepClients;
+        }
+
+        if (held == null) {
+            System.out.println("RAMP no step held");
+            return false;
+        }
+        if (held.serverCpuPct() <= 0) {
+            System.out.println(String.format("RAMP sustained %d rooms (%d clients); server CPU not measured, add --pid",
+                    held.rooms(), held.rooms() * 2));
+        } else {
+            System.out.println(String.format("RAMP sustained %d rooms (%d clients) at %.1f%% server CPU: %.0f rooms per server core",
+                    held.rooms(), held.rooms() * 2, held.serverCpuPct(), held.rooms() / (held.serverCpuPct() / 100)));
+        }
+        return true;
+    }
+
+    private DatagramChannel openChannel() throws IOException {
+        DatagramChannel ch = DatagramChannel.open();
+        ch.configureBlocking(false);
+        ch.connect(server);
+        return ch;
+    }
+
+    private static Duration cpu(ProcessHandle process) {
+        return process == null ? null : process.info().totalCpuDuration().orElse(null);
+    }
+
+    // Same JVM and classpath as this one, so a CI run needs nothing but the build output
+    private static Process startServer(int port) throws IOException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                NetworkGameServer.class.getName(), String.valueOf(port));
+        pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return pb.start();
+    }
+
+    // The server stops on a line from stdin
+    private static void stopServer(Process child) {
+        try {
+            child.getOutputStream().write('\n');
+            child.getOutputStream().flush();
+            if (!child.waitFor(5, TimeUnit.SECONDS)) child.destroy();
+        } catch (Exception e) {
+            child.destroy();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    public static void main(String[] args) {
+        int clients = args.length > 0 && !args[0].startsWith("--") ? Integer.parseInt(args[0]) : 1000;
+        double seconds = args.length > 1 && !args[1].startsWith("--") ? Double.parseDouble(args[1]) : 10;
+        int threads = Runtime.getRuntime().availableProcessors();
+        double warmup = 2;
+        String connect = null;
+        long pid = -1;
+        long seed = 1;
+        double maxP99Ms = -1;
+        double maxLossPct = -1;
+        int rampClients = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 >= args.length) break;
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmup = Double.parseDouble(args[++i]); break;
+                case "--connect": connect = args[++i]; break;
+                case "--pid": pid = Long.parseLong(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--max-p99-ms": maxP99Ms = Double.parseDouble(args[++i]); break;
+                case "--max-loss-pct": maxLossPct = Double.parseDouble(args[++i]); break;
+                case "--ramp": rampClients = Integer.parseInt(args[++i]); break;
+                default: break;
+            }
+        }
+
+        Process child = null;
+        boolean ok = false;
+        try {
+            InetSocketAddress server;
+            ProcessHandle serverProcess = null;
+            if (connect != null) {
+                int colon = connect.lastIndexOf(':');
+                server = new InetSocketAddress(connect.substring(0, colon), Integer.parseInt(connect.substring(colon + 1)));
+                if (pid > 0) serverProcess = ProcessHandle.of(pid).orElse(null);
+            } else {
+                int port = freePort();
+                child = startServer(port);
+                serverProcess = child.toHandle();
+                server = new InetSocketAddress("127.0.0.1", port);
+                System.out.println("Started server pid " + child.pid() + " on port " + port);
+            }
+
+            if (rampClients > 0) {
+                ok = ramp(server, seed, clients, rampClients, threads, warmup, seconds, serverProcess,
+                        maxP99Ms > 0 ? maxP99Ms : RAMP_MAX_P99_MS, maxLossPct >= 0 ? maxLossPct : RAMP_MAX_LOSS_PCT);
+            } else {
+                ok = new LoadGenerator(server, seed).run(clients, threads, warmup, seconds,
+                        serverProcess, maxP99Ms, maxLossPct).ok();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (child != null) stopServer(child);
+        }
+        System.exit(ok ? 0 : 1);
+    }
+}
@@ -0,0 +1,150 @@
+package Server;
+
+import Client.BitReader;
+import Client.ReliableChannel;
+import Client.StateSnapshot;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One isolated match hosted by {@link NetworkGameServer}. A room owns its two
+ * player slots, pause flag and round state; everything the old single-match
+ * server kept in globals now lives here so one process can host many matches.
+ *
+ * All mutation happens while holding the room's {@link #lock}. It is a
+ * ReentrantLock rather than the object's monitor so the timer thread can
+ * tryLock it and come back a tick later instead of waiting on a busy room.
+ */
+public class MatchRoom {
+    public static final int MAX_PLAYERS = 2;
+    public static final int HOST_SLOT = 0;
+
+    final int roomId;
+    final ReentrantLock lock = new ReentrantLock();
+    final PlayerConnection[] slots = new PlayerConnection[MAX_PLAYERS];
+    final GameState[] states = new GameState[MAX_PLAYERS];
+
+    int playerCount = 0;
+    boolean gamePaused = false;
+    String hostPlayerId = null;
+
+    // Server-side fight in authoritative mode, created once the host configures the game
+    AuthoritativeMatch match = null;
+
+    // Runs this room's packets and ticks on one of the server's room shards
+    RoomWorker worker;
+    final BitReader bitReader = new BitReader();
+    final ServerMetrics.RoomMetrics metrics = new ServerMetrics.RoomMetrics();
+
+    // Round state as last announced by the host
+    int currentRound = 1;
+    int p1Wins = 0;
+    int p2Wins = 0;
+
+    static class PlayerConnection {
+        final InetSocketAddress address;
+        final String playerId;
+        final boolean isHost;
+        final int slot;
+        // System.nanoTime() of the last packet; written by the receiver, read by the liveness timer
+        volatile long lastHeartbeat;
+        boolean ready;
+        // Client's own smoothed RTT and jitter, reported with each ping; -1 until the first one. Scraped unlocked
+        volatile int rttMicros = -1;
+        volatile int jitterMicros = -1;
+        // Recent STATE_UPDATEs by seq, the baselines later deltas refer to; newest acked back in PONG
+        final StateSnapshot[] receivedStates = new StateSnapshot[StateSnapshot.WINDOW];
+        int lastStateSeq = -1;
+        // Control messages to and from this player
+        final ReliableChannel reliable = new ReliableChannel();
+        // Everything sent to this player during one pass of the room, flushed as one datagram
+        final OutboundQueue outbound = new OutboundQueue();
+        // Set by the server once seated
+        TimingWheel.Timer livenessTimer;
+        TimingWheel.Timer retransmitTimer;
+
+        PlayerConnection(InetSocketAddress address, String playerId, boolean isHost, int slot) {
+            this.address = address;
+            this.playerId = playerId;
+            this.isHost = isHost;
+            this.slot = slot;
+            this.lastHeartbeat = System.nanoTime();
+            this.ready = false;
+        }
+
+        boolean matches(SocketAddress other) {
+            return address.equals(other);
+        }
+
+        boolean isAlive(long timeoutNanos) {
+            return System.nanoTime() - lastHeartbeat < timeoutNanos;
+        }
+    }
+
+    static class GameState {
+        float x, y;
+        int health;
+        int animation;
+        int frameIndex;
+        long timestamp;
+    }
+
+    MatchRoom(int roomId) {
+        this.roomId = roomId;
+    }
+
+    PlayerConnection find(SocketAddress address) {
+        for (PlayerConnection pc : slots) {
+            if (pc != null && pc.matches(address)) return pc;
+        }
+        return null;
+    }
+
+    PlayerConnection findById(String playerId) {
+        for (PlayerConnection pc : slots) {
+            if (pc != null && pc.playerId.equals(playerId)) return pc;
+        }
+        return null;
+    }
+
+    /** Host always takes slot 0, the joining player the first free slot after it. */
+    PlayerConnection add(InetSocketAddress address, String playerId, boolean isHost) {
+        int slot = -1;
+        if (isHost) {
+            if (slots[HOST_SLOT] == null) slot = HOST_SLOT;
+        } else {
+            for (int i = HOST_SLOT + 1; i < MAX_PLAYERS; i++) {
+                if (slots[i] == null) {
+                    slot = i;
+                    break;
+                }
+            }
+        }
+        if (slot < 0) return null;
+
+        PlayerConnection pc = new PlayerConnection(address, playerId, isHost, slot);
+        slots[slot] = pc;
+        playerCount++;
+        if (isHost) hostPlayerId = playerId;
+        return pc;
+    }
+
+    void remove(PlayerConnection pc) {
+        if (slots[pc.slot] != pc) return;
+        slots[pc.slot] = null;
+        states[pc.slot] = null;
+        playerCount--;
+        if (pc.isHost) hostPlayerId = null;
+    }
+
+    boolean isEmpty() {
+        return playerCount == 0;
+    }
+
+    void resetRounds() {
+        currentRound = 1;
+        p1Wins = 0;
+        p2Wins = 0;
+    }
+}
@@ -1,229 +1,528 @@
 package Server;
 
+import Client.AsyncLog;
+import Client.BitReader;
+import Client.MatchSimulation;
+import Client.ReliableChannel;
+import Client.StateSnapshot;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class NetworkGameServer {
     private static final int PORT = 5555;
     private static final int BUFFER_SIZE = 1024;
+    // Packets wait in room mailboxes in their receive buffer, so the pool covers many rooms' backlog
+    private static final int POOL_SIZE = 1024;
+    // Room ids travel as an unsigned short right after the packet type
+    public static final int MAX_ROOMS = 1 << 16;
 
-    private final DatagramSocket socket;
+    private final DatagramChannel channel;
+    private final BufferPool bufferPool = new BufferPool(POOL_SIZE, BUFFER_SIZE);
     private volatile boolean running = false;
-    private final Map<String, PlayerConnection> players = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<MatchRoom> rooms = new AtomicReferenceArray<>(MAX_ROOMS);
+    private final AtomicInteger activeRooms = new AtomicInteger();
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private final Map<String, GameState> playerStates = new ConcurrentHashMap<>();
 
-    private volatile boolean gamePaused = false;
-    private String hostPlayerId = null;
+    // Authoritative mode: the server runs every configured room's fight itself
+    private final boolean authoritative;
 
-    private static class PlayerConnection {
-        InetAddress address;
-        int port;
-        String playerId;
-        long lastHeartbeat;
-        boolean ready;
-        boolean isHost;
+    // Rooms run on a shard thread per core, picked by room id; the receiver only sorts packets into their mailboxes
+    private static final long ROOM_TICK_NANOS = 1_000_000_000L / MatchSimulation.SIM_HZ;
+    private final RoomShard[] shards = new RoomShard[Runtime.getRuntime().availableProcessors()];
+    private final RoomWorker.Handler roomHandler = new RoomWorker.Handler() {
+        @Override
+        public void handlePacket(MatchRoom room, SocketAddress from, ByteBuffer packet, long receivedNanos) {
+            handleRoomPacket(room, from, packet, receivedNanos);
+        }
 
-        PlayerConnection(InetAddress address, int port, String playerId, boolean isHost) {
-            this.address = address;
-            this.port = port;
-            this.playerId = playerId;
-            this.lastHeartbeat = System.currentTimeMillis();
-            this.ready = false;
-            this.isHost = isHost;
+        @Override
+        public void tick(MatchRoom room, long tick) {
+            tickRoom(room, tick);
         }
 
-        boolean isAlive() {
-            return (System.currentTimeMillis() - lastHeartbeat) < 5000;
+        @Override
+        public void flush(MatchRoom room) {
+            room.lock.lock();
+            try {
+                flushRoom(room);
+            } finally {
+                room.lock.unlock();
+            }
         }
+
+        @Override
+        public void release(ByteBuffer packet) {
+            bufferPool.release(packet);
+        }
+    };
+
+    // Per-connection liveness and retransmit timers, advanced by the scheduler every tick
+    private static final long TIMER_TICK_NANOS = 10_000_000L;
+    private static final int TIMER_WHEEL_SIZE = 1024;
+    public static final long DEFAULT_CONNECTION_TIMEOUT_MS = 5000;
+    private final TimingWheel timers = new TimingWheel(TIMER_TICK_NANOS, TIMER_WHEEL_SIZE);
+    private volatile long connectionTimeoutNanos = DEFAULT_CONNECTION_TIMEOUT_MS * 1_000_000L;
+    // How long a room holds its output for more to batch with; 0 sends it at the end of every pass
+    private volatile long flushWindowNanos = 0;
+
+    private final ServerMetrics metrics = new ServerMetrics();
+    private HttpServer metricsHttp;
+
+    public NetworkGameServer() throws IOException {
+        this(PORT);
     }
 
-    private static class GameState {
-        float x, y;
-        int health;
-        String animationType;
-        int frameIndex;
-        long timestamp;
+    public NetworkGameServer(int port) throws IOException {
+        this(port, false);
     }
 
-    public NetworkGameServer() throws SocketException {
-        socket = new DatagramSocket(null);
-        socket.setReuseAddress(true);
-        socket.bind(new InetSocketAddress(PORT));
-        socket.setSoTimeout(0);
+    public NetworkGameServer(int port, boolean authoritative) throws IOException {
+        this.authoritative = authoritative;
+        channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(true);
+
+        for (int i = 0; i < shards.length; i++) shards[i] = new RoomShard("Room-Shard-" + i);
+
+        metrics.gauge("active_rooms", activeRooms::get);
+        metrics.gauge("players", this::countPlayers);
+        metrics.gauge("buffer_pool_free", bufferPool::available);
+        metrics.gauge("buffer_pool_misses", bufferPool::getMisses);
+        metrics.gauge("timers", timers::size);
     }
 
     public void start() {
         running = true;
+        for (RoomShard shard : shards) shard.start();
 
         Thread receiverThread = new Thread(this::receiveLoop, "UDP-Receiver");
         receiverThread.setDaemon(true);
         receiverThread.start();
 
-        scheduler.scheduleAtFixedRate(this::checkHeartbeats, 1, 1, TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(() -> timers.advance(System.nanoTime()),
+                TIMER_TICK_NANOS, TIMER_TICK_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    // Called on the room's shard at SIM_HZ while it has a server-side fight
+    private void tickRoom(MatchRoom room, long tick) {
+        room.lock.lock();
+        try {
+            AuthoritativeMatch match = room.match;
+            if (match == null || room.gamePaused) return;
+
+            long start = System.nanoTime();
+            if (match.tick()) {
+                broadcastSnapshot(room, match);
+            }
+            // Repeated until the host starts the next round, so a lost datagram only delays it
+            if (match.isRoundOver() && tick % AuthoritativeMatch.SNAPSHOT_INTERVAL == 0) {
+                broadcastRoundEnd(room, match);
+            }
+            metrics.tickDuration.record(System.nanoTime() - start);
+        } finally {
+            room.lock.unlock();
+        }
+    }
+
+    private void broadcastSnapshot(MatchRoom room, AuthoritativeMatch match) {
+        ByteBuffer bb = bufferPool.acquire();
+        bb.put(PacketType.SNAPSHOT);
+        match.writeSnapshot(bb);
+        bb.flip();
+        broadcast(room, bb, null, "snapshot", false);
+        bufferPool.release(bb);
+    }
+
+    private void broadcastRoundEnd(MatchRoom room, AuthoritativeMatch match) {
+        ByteBuffer bb = bufferPool.acquire();
+        bb.put(PacketType.ROUND_END);
+        match.writeRoundEnd(bb);
+        bb.flip();
+        broadcast(room, bb, null, "round end", false);
+        bufferPool.release(bb);
     }
 
     private void receiveLoop() {
-        byte[] buffer = new byte[BUFFER_SIZE];
-        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        ByteBuffer bb = bufferPool.acquire();
 
         while (running) {
             try {
-                socket.receive(packet);
-                handlePacket(packet);
+                bb.clear();
+                SocketAddress from = channel.receive(bb);
+                if (from == null) continue;
+                long receivedNanos = System.nanoTime();
+                bb.flip();
+                // A posted buffer now belongs to the room, which releases it
+                if (route(from, bb, receivedNanos)) {
+                    bb = bufferPool.acquire();
+                }
+            } catch (ClosedChannelException e) {
+                break;
             } catch (Exception e) {
-                if (running && !(e instanceof SocketTimeoutException)) {
-                    System.err.println("Error receiving packet: " + e.getMessage());
+                if (running) {
+                    AsyncLog.error("Error receiving packet: {}", e.getMessage());
                 }
             }
         }
+        bufferPool.release(bb);
+    }
+
+    // Everything goes to the room's mailbox; a host's CONNECT opens the room first. The receiver never takes a room lock
+    private boolean route(SocketAddress from, ByteBuffer bb, long receivedNanos) {
+        if (bb.remaining() < 3) {
+            metrics.decodeErrors.increment();
+            return false;
+        }
+        byte packetType = bb.get(0);
+        int roomId = bb.getShort(1) & 0xFFFF;
+        metrics.datagramsIn.increment();
+        // A batch's messages are counted as the room unpacks them
+        if (packetType != PacketType.BATCH) metrics.packetIn(packetType, bb.remaining());
+
+        MatchRoom room = rooms.get(roomId);
+        if (room == null && packetType == PacketType.CONNECT) {
+            room = openRoom(from, bb, roomId);
+        }
+        if (room == null) {
+            metrics.strayPackets.increment();
+            return false;
+        }
+        if (!room.worker.post(from, bb, receivedNanos)) {
+            metrics.mailboxDrops.increment();
+            return false;
+        }
+        return true;
     }
 
-    private void handlePacket(DatagramPacket packet) {
+    private void handleRoomPacket(MatchRoom room, SocketAddress from, ByteBuffer bb, long receivedNanos) {
+        room.metrics.in(bb.remaining());
         try {
-            ByteBuffer bb = ByteBuffer.wrap(packet.getData(), 0, packet.getLength());
             byte packetType = bb.get();
+            bb.getShort();
+            if (packetType == PacketType.CONNECT) {
+                handleConnect(room, from, bb);
+                return;
+            }
+            int slot = bb.get();
+            if (slot < 0 || slot >= MatchRoom.MAX_PLAYERS) {
+                metrics.decodeErrors.increment();
+                return;
+            }
 
-            switch (packetType) {
-                case PacketType.CONNECT:
-                    handleConnect(packet, bb);
-                    break;
-                case PacketType.INPUT:
-                    if (!gamePaused) handleInput(packet, bb);
-                    break;
-                case PacketType.STATE_UPDATE:
-                    if (!gamePaused) handleStateUpdate(packet, bb);
-                    break;
-                case PacketType.HEARTBEAT:
-                    handleHeartbeat(packet, bb);
-                    break;
-                case PacketType.DISCONNECT:
-                    handleDisconnect(packet, bb);
-                    break;
-                case PacketType.GAME_CONFIG:
-                    handleGameConfig(packet, bb);
-                    break;
-                case PacketType.PAUSE_GAME:
-                    handlePauseGame(packet, bb);
-                    break;
-                case PacketType.RESUME_GAME:
-                    handleResumeGame(packet, bb);
-                    break;
-                case PacketType.REMATCH:
-                    handleRematch(packet, bb);
-                    break;
-                case PacketType.NEXT_ROUND:
-                    handleNextRound(packet, bb);
-                    break;
-                case PacketType.WAITING_FOR_HOST:
-                    handleWaitingForHost(packet, bb);
-                    break;
-                default:
-                    System.err.println("Unknown packet type: " + packetType);
+            room.lock.lock();
+            try {
+                // The slot assigned at CONNECT identifies the sender; the address check stops spoofing
+                MatchRoom.PlayerConnection sender = room.slots[slot];
+                if (sender == null || !sender.matches(from)) {
+                    metrics.strayPackets.increment();
+                    return;
+                }
+                sender.lastHeartbeat = System.nanoTime();
+
+                if (packetType == PacketType.BATCH) {
+                    handleBatch(room, sender, bb, receivedNanos);
+                } else {
+                    handleMessage(room, sender, packetType, bb, receivedNanos);
+                }
+            } finally {
+                room.lock.unlock();
             }
         } catch (Exception e) {
-            System.err.println("Error handling packet: " + e.getMessage());
+            metrics.decodeErrors.increment();
+            AsyncLog.error("Error handling packet: {}", e.getMessage());
         }
     }
 
-    private void handleConnect(DatagramPacket packet, ByteBuffer bb) {
-        String playerId = readString(bb);
-        String playerName = readString(bb);
-        boolean isHost = bb.get() == 1;
-        String clientKey = packet.getAddress() + ":" + packet.getPort();
-
-        if (players.isEmpty() && !isHost) {
-            sendResponse(packet, PacketType.CONNECT_REJECTED, "Host connects first");
-            return;
+    // [len u16][type][body] per message, each handled as if it had come in its own datagram
+    private void handleBatch(MatchRoom room, MatchRoom.PlayerConnection sender, ByteBuffer bb, long receivedNanos) {
+        int end = bb.limit();
+        while (bb.remaining() >= 3 && room.slots[sender.slot] == sender) {
+            int length = bb.getShort() & 0xFFFF;
+            int next = bb.position() + length;
+            if (length == 0 || next > end) {
+                metrics.decodeErrors.increment();
+                return;
+            }
+            bb.limit(next);
+            byte packetType = bb.get();
+            metrics.packetIn(packetType, length);
+            handleMessage(room, sender, packetType, bb, receivedNanos);
+            bb.limit(end);
+            bb.position(next);
         }
+    }
 
-        if (players.size() >= 2) {
-            sendResponse(packet, PacketType.CONNECT_REJECTED, "Server full");
-            return;
+    private void handleMessage(MatchRoom room, MatchRoom.PlayerConnection sender, byte packetType, ByteBuffer bb,
+                               long receivedNanos) {
+        if (packetType == PacketType.RELIABLE) {
+            handleReliable(room, sender, bb, receivedNanos);
+        } else {
+            dispatch(room, sender, packetType, bb, receivedNanos);
         }
+    }
 
-        if (isHost && hostPlayerId != null) {
-            sendResponse(packet, PacketType.CONNECT_REJECTED, "Host already connected");
-            return;
+    // [seq u16][ack u16][ack bits int][type][body]; acked whether or not it is new, so a lost ack only costs a retransmit
+    private void handleReliable(MatchRoom room, MatchRoom.PlayerConnection sender, ByteBuffer bb, long receivedNanos) {
+        int seq = bb.getShort() & ReliableChannel.SEQ_MASK;
+        sender.reliable.acknowledge(bb.getShort() & ReliableChannel.SEQ_MASK, bb.getInt(), System.nanoTime());
+        byte[] message = new byte[bb.remaining()];
+        bb.get(message);
+        sender.reliable.receive(seq, message);
+        sendReliableAck(room, sender);
+        armRetransmit(sender, System.nanoTime());
+
+        byte[] next;
+        while ((next = sender.reliable.poll()) != null) {
+            ByteBuffer in = ByteBuffer.wrap(next);
+            dispatch(room, sender, in.get(), in, receivedNanos);
         }
+    }
 
-        PlayerConnection pc = new PlayerConnection(packet.getAddress(), packet.getPort(), playerId, isHost);
-        players.put(clientKey, pc);
-
-        if (isHost) {
-            hostPlayerId = playerId;
-            System.out.println("HOST connected: " + playerId + " (" + playerName + ")");
-            System.out.println("Waiting for client to join...");
-        } else {
-            System.out.println("CLIENT connected: " + playerId + " (" + playerName + ")");
+    private void dispatch(MatchRoom room, MatchRoom.PlayerConnection sender, byte packetType, ByteBuffer bb,
+                          long receivedNanos) {
+        switch (packetType) {
+            case PacketType.RELIABLE_ACK:
+                long now = System.nanoTime();
+                sender.reliable.acknowledge(bb.getShort() & ReliableChannel.SEQ_MASK, bb.getInt(), now);
+                armRetransmit(sender, now);
+                break;
+            case PacketType.INPUT:
+                if (!room.gamePaused) handleInput(room, sender, bb, receivedNanos);
+                break;
+            case PacketType.STATE_UPDATE:
+                if (!room.gamePaused) handleStateUpdate(room, sender, bb);
+                break;
+            case PacketType.HEARTBEAT:
+                break;
+            case PacketType.PING:
+                handlePing(room, sender, bb);
+                break;
+            case PacketType.DISCONNECT:
+                handleDisconnect(room, sender);
+                break;
+            case PacketType.GAME_CONFIG:
+                handleGameConfig(room, sender, bb);
+                break;
+            case PacketType.PAUSE_GAME:
+                handlePauseGame(room, sender);
+                break;
+            case PacketType.RESUME_GAME:
+                handleResumeGame(room, sender);
+                break;
+            case PacketType.REMATCH:
+                handleRematch(room, sender);
+                break;
+            case PacketType.NEXT_ROUND:
+                handleNextRound(room, sender, bb);
+                break;
+            case PacketType.WAITING_FOR_HOST:
+                handleWaitingForHost(room, sender);
+                break;
+            default:
+                metrics.decodeErrors.increment();
+                AsyncLog.warn("Unknown packet type: {}", packetType);
         }
+    }
 
-        sendResponse(packet, PacketType.CONNECT_ACCEPTED, playerId);
-
-        if (players.size() == 2) {
-            System.out.println("Both players connected! Ready to fight!");
-            broadcastGameStart();
+    // [CONNECT][room u16][playerId][name][isHost]: a host's CONNECT for a free room id opens it; null if none is open after
+    private MatchRoom openRoom(SocketAddress from, ByteBuffer bb, int roomId) {
+        boolean isHost;
+        try {
+            int pos = 3;
+            pos += 2 + (bb.getShort(pos) & 0xFFFF);
+            pos += 2 + (bb.getShort(pos) & 0xFFFF);
+            isHost = bb.get(pos) == 1;
+        } catch (IndexOutOfBoundsException e) {
+            metrics.decodeErrors.increment();
+            return null;
+        }
+        if (!isHost) {
+            sendResponse(from, PacketType.CONNECT_REJECTED, "Host connects first");
+            return null;
         }
+        MatchRoom created = new MatchRoom(roomId);
+        created.worker = new RoomWorker(created, roomHandler, shards[roomId % shards.length], ROOM_TICK_NANOS, flushWindowNanos);
+        if (rooms.compareAndSet(roomId, null, created)) {
+            activeRooms.incrementAndGet();
+            created.worker.start();
+        }
+        return rooms.get(roomId);
     }
 
-    private void handleInput(DatagramPacket packet, ByteBuffer bb) {
+    // On the room's worker, like every other packet
+    private void handleConnect(MatchRoom room, SocketAddress from, ByteBuffer bb) {
         String playerId = readString(bb);
-        long frameNumber = bb.getLong();
-        short inputBits = bb.getShort();
+        String playerName = readString(bb);
+        boolean isHost = bb.get() == 1;
+        int roomId = room.roomId;
 
-        String clientKey = packet.getAddress() + ":" + packet.getPort();
-        PlayerConnection pc = players.get(clientKey);
-        if (pc != null) pc.lastHeartbeat = System.currentTimeMillis();
+        room.lock.lock();
+        try {
+            if (rooms.get(roomId) != room) {
+                sendResponse(from, PacketType.CONNECT_REJECTED, "Room closed");
+                return;
+            }
 
-        broadcastInput(playerId, frameNumber, inputBits);
-    }
+            MatchRoom.PlayerConnection existing = room.find(from);
+            if (existing != null) {
+                // Retransmitted CONNECT from an already seated player
+                sendAccepted(room, existing);
+                return;
+            }
 
-    private void handleStateUpdate(DatagramPacket packet, ByteBuffer bb) {
-        String playerId = readString(bb);
-        GameState state = new GameState();
-        state.x = bb.getFloat();
-        state.y = bb.getFloat();
-        state.health = bb.getInt();
-        state.animationType = readString(bb);
-        state.frameIndex = bb.getInt();
-        state.timestamp = System.currentTimeMillis();
+            if (room.isEmpty() && !isHost) {
+                sendResponse(from, PacketType.CONNECT_REJECTED, "Host connects first");
+                return;
+            }
 
-        playerStates.put(playerId, state);
+            if (room.playerCount >= MatchRoom.MAX_PLAYERS) {
+                sendResponse(from, PacketType.CONNECT_REJECTED, "Room full");
+                return;
+            }
 
-        String clientKey = packet.getAddress() + ":" + packet.getPort();
-        PlayerConnection pc = players.get(clientKey);
-        if (pc != null) pc.lastHeartbeat = System.currentTimeMillis();
+            if (isHost && room.hostPlayerId != null) {
+                sendResponse(from, PacketType.CONNECT_REJECTED, "Host already connected");
+                return;
+            }
+
+            if (room.findById(playerId) != null) {
+                sendResponse(from, PacketType.CONNECT_REJECTED, "Player id in use");
+                return;
+            }
 
-        validateGameState(playerId, state);
+            MatchRoom.PlayerConnection pc = room.add((InetSocketAddress) from, playerId, isHost);
+            if (pc == null) {
+                sendResponse(from, PacketType.CONNECT_REJECTED, "Room full");
+                return;
+            }
+
+            if (isHost) {
+                AsyncLog.info("[Room {}] HOST connected: {} ({})", roomId, playerId, playerName);
+                AsyncLog.info("[Room {}] Waiting for client to join...", roomId);
+            } else {
+                AsyncLog.info("[Room {}] CLIENT connected: {} ({})", roomId, playerId, playerName);
+            }
+
+            MatchRoom seated = room;
+            pc.livenessTimer = timers.newTimer(() -> checkLiveness(seated, pc));
+            pc.retransmitTimer = timers.newTimer(() -> retransmitControl(seated, pc));
+            timers.schedule(pc.livenessTimer, System.nanoTime(), connectionTimeoutNanos);
+
+            metrics.connects.increment();
+            sendAccepted(room, pc);
+
+            if (room.playerCount == MatchRoom.MAX_PLAYERS) {
+                AsyncLog.info("[Room {}] Both players connected! Ready to fight!", roomId);
+                broadcastGameStart(room);
+            }
+        } finally {
+            flushRoom(room);
+            room.lock.unlock();
+        }
     }
 
-    private void handleHeartbeat(DatagramPacket packet, ByteBuffer bb) {
-        String playerId = readString(bb);
-        String clientKey = packet.getAddress() + ":" + packet.getPort();
-        PlayerConnection pc = players.get(clientKey);
-        if (pc != null) pc.lastHeartbeat = System.currentTimeMillis();
+    private void handleInput(MatchRoom room, MatchRoom.PlayerConnection sender, ByteBuffer bb, long receivedNanos) {
+        if (room.match != null) {
+            // [frame][ack][count][bits newest first], read in place so the relay below still sends it whole
+            int base = bb.position();
+            long frame = bb.getLong(base);
+            int count = bb.get(base + 16);
+            for (int i = count - 1; i >= 0; i--) {
+                if (frame - i >= 0) room.match.receiveInput(sender.slot, frame - i, bb.getShort(base + 17 + i * 2));
+            }
+        }
+
+        // INPUT_BROADCAST is the sender's slot followed by the INPUT body, relayed to the opponent without decoding it
+        ByteBuffer out = bufferPool.acquire();
+        out.put(PacketType.INPUT_BROADCAST);
+        out.put((byte) sender.slot);
+        out.put(bb);
+        out.flip();
+        broadcast(room, out, sender, "input", false);
+        bufferPool.release(out);
+        metrics.relayLatency.record(System.nanoTime() - receivedNanos);
     }
 
-    private void handleDisconnect(DatagramPacket packet, ByteBuffer bb) {
-        String playerId = readString(bb);
-        String clientKey = packet.getAddress() + ":" + packet.getPort();
+    private void handlePing(MatchRoom room, MatchRoom.PlayerConnection sender, ByteBuffer in) {
+        long clientNanos = in.getLong();
+        sender.rttMicros = in.getInt();
+        sender.jitterMicros = in.getInt();
+        if (sender.rttMicros >= 0) sender.reliable.setRtt(sender.rttMicros * 1000L, sender.jitterMicros * 1000L);
 
-        PlayerConnection pc = players.remove(clientKey);
-        playerStates.remove(playerId);
+        MatchRoom.PlayerConnection opponent = room.slots[MatchRoom.MAX_PLAYERS - 1 - sender.slot];
+        ByteBuffer bb = bufferPool.acquire();
+        try {
+            bb.put(PacketType.PONG);
+            bb.putLong(clientNanos);
+            bb.putInt(opponent != null ? opponent.rttMicros : -1);
+            bb.putInt(sender.lastStateSeq);
+            bb.flip();
+            queue(room, sender, bb);
+        } catch (Exception e) {
+            metrics.sendErrors.increment();
+            AsyncLog.error("Send pong error: {}", e.getMessage());
+        } finally {
+            bufferPool.release(bb);
+        }
+    }
+
+    private void handleStateUpdate(MatchRoom room, MatchRoom.PlayerConnection sender, ByteBuffer bb) {
+        BitReader in = room.bitReader.wrap(bb);
+        int seq = StateSnapshot.readSeq(in);
+        int distance = StateSnapshot.readBaseDistance(in);
+
+        StateSnapshot[] received = sender.receivedStates;
+        StateSnapshot base = null;
+        if (distance > 0) {
+            int baseSeq = (seq - distance) & StateSnapshot.SEQ_MASK;
+            base = received[baseSeq & (StateSnapshot.WINDOW - 1)];
+            // Baseline already overwritten: skip this one, the next update is encoded against a newer ack
+            if (base == null || base.seq != baseSeq) return;
+        }
 
-        if (pc != null && pc.isHost) hostPlayerId = null;
+        int idx = seq & (StateSnapshot.WINDOW - 1);
+        if (received[idx] == null) received[idx] = new StateSnapshot();
+        StateSnapshot snapshot = received[idx];
+        snapshot.seq = -1;
+        snapshot.readFields(in, base);
+        snapshot.seq = seq;
+
+        if (sender.lastStateSeq >= 0 && !StateSnapshot.isNewer(seq, sender.lastStateSeq)) return;
+        sender.lastStateSeq = seq;
+
+        MatchRoom.GameState state = room.states[sender.slot];
+        if (state == null) state = new MatchRoom.GameState();
+        state.x = snapshot.getX();
+        state.y = snapshot.getY();
+        state.health = snapshot.health;
+        state.animation = snapshot.animation;
+        state.frameIndex = snapshot.frameIndex;
+        state.timestamp = System.currentTimeMillis();
 
-        System.out.println("Player disconnected: " + playerId + (pc != null && pc.isHost ? " (HOST)" : ""));
-        broadcastPlayerDisconnected(playerId);
+        validateGameState(state);
+        room.states[sender.slot] = state;
     }
 
-    private void handleGameConfig(DatagramPacket packet, ByteBuffer bb) {
-        String playerId = readString(bb);
+    private void handleDisconnect(MatchRoom room, MatchRoom.PlayerConnection pc) {
+        metrics.disconnects.increment();
+        removePlayer(room, pc);
+        AsyncLog.info("[Room {}] Player disconnected: {}{}", room.roomId, pc.playerId, pc.isHost ? " (HOST)" : "");
+        broadcastPlayerDisconnected(room, pc);
+    }
 
-        if (!playerId.equals(hostPlayerId)) {
-            System.out.println("Non-host player tried to configure game: " + playerId);
+    private void handleGameConfig(MatchRoom room, MatchRoom.PlayerConnection sender, ByteBuffer bb) {
+        if (!sender.isHost) {
+            AsyncLog.warn("[Room {}] Non-host player tried to configure game: {}", room.roomId, sender.playerId);
             return;
         }
 
@@ -231,116 +530,84 @@ public class NetworkGameServer {
         String p2Char = readString(bb);
         String mapFile = readString(bb);
 
-        System.out.println("Host configured game: " + p1Char + " vs " + p2Char + " on " + mapFile);
+        AsyncLog.info("[Room {}] Host configured game: {} vs {} on {}", room.roomId, p1Char, p2Char, mapFile);
 
-        ByteBuffer outBb = ByteBuffer.allocate(256);
+        if (authoritative) {
+            room.match = new AuthoritativeMatch(p1Char.toUpperCase(), p2Char.toUpperCase());
+        }
+
+        ByteBuffer outBb = bufferPool.acquire();
         outBb.put(PacketType.GAME_CONFIG);
         writeString(outBb, p1Char);
         writeString(outBb, p2Char);
         writeString(outBb, mapFile);
 
-        byte[] data = new byte[outBb.position()];
         outBb.flip();
-        outBb.get(data);
-
-        for (PlayerConnection pc : players.values()) {
-            try {
-                DatagramPacket sendPacket = new DatagramPacket(data, data.length, pc.address, pc.port);
-                socket.send(sendPacket);
-                System.out.println("Sent game config to " + pc.playerId);
-            } catch (Exception e) {
-                System.err.println("Error broadcasting game config: " + e.getMessage());
-            }
-        }
+        broadcastReliable(room, outBb, null, "game config", true);
+        bufferPool.release(outBb);
     }
 
-    private void handlePauseGame(DatagramPacket packet, ByteBuffer bb) {
-        String playerId = readString(bb);
-        if (gamePaused) return;
+    private void handlePauseGame(MatchRoom room, MatchRoom.PlayerConnection sender) {
+        String playerId = sender.playerId;
+        if (room.gamePaused) return;
 
-        gamePaused = true;
-        System.out.println("⏸Game PAUSED by: " + playerId);
+        room.gamePaused = true;
+        AsyncLog.info("[Room {}] ⏸Game PAUSED by: {}", room.roomId, playerId);
 
-        ByteBuffer outBb = ByteBuffer.allocate(128);
+        ByteBuffer outBb = bufferPool.acquire();
         outBb.put(PacketType.PAUSE_GAME);
         writeString(outBb, playerId);
 
-        byte[] data = new byte[outBb.position()];
         outBb.flip();
-        outBb.get(data);
-
-        for (PlayerConnection pc : players.values()) {
-            try {
-                DatagramPacket sendPacket = new DatagramPacket(data, data.length, pc.address, pc.port);
-                socket.send(sendPacket);
-            } catch (Exception e) {
-                System.err.println("Error broadcasting pause: " + e.getMessage());
-            }
-        }
+        broadcastReliable(room, outBb, null, "pause", false);
+        bufferPool.release(outBb);
     }
 
-    private void handleResumeGame(DatagramPacket packet, ByteBuffer bb) {
-        String playerId = readString(bb);
-        if (!gamePaused) return;
+    private void handleResumeGame(MatchRoom room, MatchRoom.PlayerConnection sender) {
+        String playerId = sender.playerId;
+        if (!room.gamePaused) return;
 
-        gamePaused = false;
-        System.out.println("Game RESUMED by: " + playerId);
+        room.gamePaused = false;
+        AsyncLog.info("[Room {}] Game RESUMED by: {}", room.roomId, playerId);
 
-        ByteBuffer outBb = ByteBuffer.allocate(128);
+        ByteBuffer outBb = bufferPool.acquire();
         outBb.put(PacketType.RESUME_GAME);
         writeString(outBb, playerId);
 
-        byte[] data = new byte[outBb.position()];
         outBb.flip();
-        outBb.get(data);
-
-        for (PlayerConnection pc : players.values()) {
-            try {
-                DatagramPacket sendPacket = new DatagramPacket(data, data.length, pc.address, pc.port);
-                socket.send(sendPacket);
-            } catch (Exception e) {
-                System.err.println("Error broadcasting resume: " + e.getMessage());
-            }
-        }
+        broadcastReliable(room, outBb, null, "resume", false);
+        bufferPool.release(outBb);
     }
 
-    private void handleRematch(DatagramPacket packet, ByteBuffer bb) {
-        String playerId = readString(bb);
+    private void handleRematch(MatchRoom room, MatchRoom.PlayerConnection sender) {
+        String playerId = sender.playerId;
 
-        if (!playerId.equals(hostPlayerId)) {
-            System.out.println("Non-host player tried to start rematch: " + playerId);
+        if (!sender.isHost) {
+            AsyncLog.warn("[Room {}] Non-host player tried to start rematch: {}", room.roomId, playerId);
             return;
         }
 
-        System.out.println("Host started REMATCH - Resetting to Round 1");
+        AsyncLog.info("[Room {}] Host started REMATCH - Resetting to Round 1", room.roomId);
 
-        gamePaused = false;
-        playerStates.clear();
+        room.gamePaused = false;
+        room.resetRounds();
+        Arrays.fill(room.states, null);
+        if (room.match != null) room.match.resetMatch();
 
-        ByteBuffer outBb = ByteBuffer.allocate(128);
+        ByteBuffer outBb = bufferPool.acquire();
         outBb.put(PacketType.REMATCH);
         writeString(outBb, playerId);
 
-        byte[] data = new byte[outBb.position()];
         outBb.flip();
-        outBb.get(data);
-
-        for (PlayerConnection pc : players.values()) {
-            try {
-                DatagramPacket sendPacket = new DatagramPacket(data, data.length, pc.address, pc.port);
-                socket.send(sendPacket);
-                System.out.println("Sent rematch to " + pc.playerId);
-            } catch (Exception e) {
-                System.err.println("Error broadcasting rematch: " + e.getMessage());
-            }
-        }
+        broadcastReliable(room, outBb, null, "rematch", true);
+        bufferPool.release(outBb);
     }
 
-    private void handleNextRound(DatagramPacket packet, ByteBuffer bb) {
-        String playerId = readString(bb);
+    private void handleNextRound(MatchRoom room, MatchRoom.PlayerConnection sender, ByteBuffer bb) {
+        String playerId = sender.playerId;
 
-        if (!playerId.equals(hostPlayerId)) {
-            System.out.println("Non-host player tried to start next round: " + playerId);
+        if (!sender.isHost) {
+            AsyncLog.warn("[Room {}] Non-host player tried to start next round: {}", room.roomId, playerId);
             return;
         }
 
@@ -348,144 +615,338 @@ public class NetworkGameServer {
         int p1Wins = bb.getInt();
         int p2Wins = bb.getInt();
 
-        System.out.println("Host started next round: Round " + round + " (P1: " + p1Wins + " wins, P2: " + p2Wins + " wins)");
+        if (room.match != null) {
+            // The score is the server's own, whatever the host believes
+            room.match.startRound();
+            round = room.match.getRound();
+            p1Wins = room.match.getP1Wins();
+            p2Wins = room.match.getP2Wins();
+        }
+
+        AsyncLog.info("[Room {}] Host started next round: Round {} (P1: {} wins, P2: {} wins)", room.roomId, round, p1Wins, p2Wins);
 
-        gamePaused = false;
-        playerStates.clear();
+        room.gamePaused = false;
+        room.currentRound = round;
+        room.p1Wins = p1Wins;
+        room.p2Wins = p2Wins;
+        Arrays.fill(room.states, null);
 
-        ByteBuffer outBb = ByteBuffer.allocate(128);
+        ByteBuffer outBb = bufferPool.acquire();
         outBb.put(PacketType.NEXT_ROUND);
         outBb.putInt(round);
         outBb.putInt(p1Wins);
         outBb.putInt(p2Wins);
 
-        byte[] data = new byte[outBb.position()];
         outBb.flip();
-        outBb.get(data);
+        broadcastReliable(room, outBb, null, "next round", true);
+        bufferPool.release(outBb);
+    }
 
-        for (PlayerConnection pc : players.values()) {
-            try {
-                DatagramPacket sendPacket = new DatagramPacket(data, data.length, pc.address, pc.port);
-                socket.send(sendPacket);
-                System.out.println("Sent next round to " + pc.playerId);
-            } catch (Exception e) {
-                System.err.println("Error broadcasting next round: " + e.getMessage());
-            }
-        }
+    private void handleWaitingForHost(MatchRoom room, MatchRoom.PlayerConnection sender) {
+        AsyncLog.info("[Room {}] {} is waiting for host to start rematch", room.roomId, sender.playerId);
     }
 
-    private void handleWaitingForHost(DatagramPacket packet, ByteBuffer bb) {
-        String playerId = readString(bb);
-        System.out.println(playerId + " is waiting for host to start rematch");
+    private void broadcastGameStart(MatchRoom room) {
+        ByteBuffer bb = bufferPool.acquire();
+        bb.put(PacketType.GAME_START);
+        bb.putInt(room.playerCount);
+
+        for (MatchRoom.PlayerConnection pc : room.slots) {
+            if (pc != null) writeString(bb, pc.playerId);
+        }
+
+        bb.flip();
+        broadcastReliable(room, bb, null, "game start", false);
+        bufferPool.release(bb);
     }
 
-    private void broadcastInput(String playerId, long frameNumber, short inputBits) {
-        ByteBuffer bb = ByteBuffer.allocate(256);
-        bb.put(PacketType.INPUT_BROADCAST);
-        writeString(bb, playerId);
-        bb.putLong(frameNumber);
-        bb.putShort(inputBits);
+    private void broadcastPlayerDisconnected(MatchRoom room, MatchRoom.PlayerConnection gone) {
+        ByteBuffer bb = bufferPool.acquire();
+        bb.put(PacketType.PLAYER_DISCONNECTED);
+        writeString(bb, gone.playerId);
 
-        byte[] data = new byte[bb.position()];
         bb.flip();
-        bb.get(data);
+        broadcastReliable(room, bb, gone, "disconnect", false);
+        bufferPool.release(bb);
+    }
 
-        for (PlayerConnection pc : players.values()) {
-            try {
-                DatagramPacket packet = new DatagramPacket(data, data.length, pc.address, pc.port);
-                socket.send(packet);
-            } catch (Exception e) {
-                System.err.println("Error broadcasting input: " + e.getMessage());
+    private void validateGameState(MatchRoom.GameState state) {
+        state.health = Math.min(1000, Math.max(0, state.health));
+        state.x = Math.min(740, Math.max(0, state.x));
+        state.y = Math.min(400, Math.max(0, state.y));
+    }
+
+    private void removePlayer(MatchRoom room, MatchRoom.PlayerConnection pc) {
+        room.remove(pc);
+        pc.reliable.clear();
+        if (pc.livenessTimer != null) timers.cancel(pc.livenessTimer);
+        if (pc.retransmitTimer != null) timers.cancel(pc.retransmitTimer);
+        if (room.isEmpty() && rooms.compareAndSet(room.roomId, room, null)) {
+            room.worker.stop();
+            activeRooms.decrementAndGet();
+            AsyncLog.info("[Room {}] Closed", room.roomId);
+        }
+    }
+
+    // Fires once the connection could have timed out; a packet since then just pushes the check back.
+    // Runs on the timer thread, so a busy room gets checked again a tick later rather than waited on
+    private void checkLiveness(MatchRoom room, MatchRoom.PlayerConnection pc) {
+        if (!room.lock.tryLock()) {
+            timers.schedule(pc.livenessTimer, System.nanoTime(), TIMER_TICK_NANOS);
+            return;
+        }
+        try {
+            if (room.slots[pc.slot] != pc) return;
+
+            long now = System.nanoTime();
+            long timeout = connectionTimeoutNanos;
+            long idle = now - pc.lastHeartbeat;
+            if (idle < timeout) {
+                timers.schedule(pc.livenessTimer, now, timeout - idle);
+                return;
             }
+
+            metrics.timeouts.increment();
+            AsyncLog.info("[Room {}] Player timeout: {}", room.roomId, pc.playerId);
+            removePlayer(room, pc);
+            broadcastPlayerDisconnected(room, pc);
+        } finally {
+            flushRoom(room);
+            room.lock.unlock();
         }
     }
 
-    private void broadcastGameStart() {
-        ByteBuffer bb = ByteBuffer.allocate(256);
-        bb.put(PacketType.GAME_START);
-        bb.putInt(players.size());
+    /** Silence after which a player is dropped; applies from each connection's next check on. */
+    public void setConnectionTimeoutMillis(long millis) {
+        connectionTimeoutNanos = millis * 1_000_000L;
+    }
 
-        for (PlayerConnection pc : players.values()) {
-            writeString(bb, pc.playerId);
+    public long getConnectionTimeoutMillis() {
+        return connectionTimeoutNanos / 1_000_000L;
+    }
+
+    /**
+     * Lets each room hold what it sends for up to {@code micros} so more of it
+     * shares a datagram, adding as much to relay latency; rooms opened from now on.
+     */
+    public void setFlushWindowMicros(long micros) {
+        flushWindowNanos = micros * 1000L;
+    }
+
+    public int getActiveRoomCount() {
+        return activeRooms.get();
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    private long countPlayers() {
+        long players = 0;
+        for (int roomId = 0; roomId < MAX_ROOMS; roomId++) {
+            MatchRoom room = rooms.get(roomId);
+            if (room != null) players += room.playerCount;
         }
+        return players;
+    }
 
-        byte[] data = new byte[bb.position()];
-        bb.flip();
-        bb.get(data);
+    /** Global metrics followed by the per-room and per-player ones, in the Prometheus text format. */
+    public String renderMetrics() {
+        StringBuilder out = new StringBuilder(4096);
+        metrics.render(out);
+        List<MatchRoom> open = new ArrayList<>();
+        for (int roomId = 0; roomId < MAX_ROOMS; roomId++) {
+            MatchRoom room = rooms.get(roomId);
+            if (room != null) open.add(room);
+        }
+        ServerMetrics.renderRooms(out, open);
+        return out.toString();
+    }
 
-        for (PlayerConnection pc : players.values()) {
+    /**
+     * Serves {@link #renderMetrics} at http://127.0.0.1:{@code httpPort}/metrics
+     * and prints a summary line every {@code dumpIntervalMs}; 0 turns either off.
+     */
+    public void startMetrics(int httpPort, long dumpIntervalMs) throws IOException {
+        if (httpPort > 0) {
+            metricsHttp = ServerMetrics.serve(httpPort, this::renderMetrics);
+            AsyncLog.info("Metrics on http://127.0.0.1:{}/metrics", metricsHttp.getAddress().getPort());
+        }
+        if (dumpIntervalMs > 0) {
+            scheduler.scheduleAtFixedRate(() -> AsyncLog.info(metrics.summary()),
+                    dumpIntervalMs, dumpIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // The sender is skipped by identity: player ids come from the clients and prove nothing
+    private void broadcast(MatchRoom room, ByteBuffer out, MatchRoom.PlayerConnection except, String what, boolean logEach) {
+        for (MatchRoom.PlayerConnection pc : room.slots) {
+            if (pc == null || pc == except) continue;
             try {
-                DatagramPacket packet = new DatagramPacket(data, data.length, pc.address, pc.port);
-                socket.send(packet);
+                out.rewind();
+                queue(room, pc, out);
+                if (logEach) AsyncLog.debug("Sent {} to {}", what, pc.playerId);
             } catch (Exception e) {
-                System.err.println("Error broadcasting game start: " + e.getMessage());
+                metrics.sendErrors.increment();
+                AsyncLog.error("Error broadcasting {}: {}", what, e.getMessage());
             }
         }
     }
 
-    private void broadcastPlayerDisconnected(String playerId) {
-        ByteBuffer bb = ByteBuffer.allocate(256);
-        bb.put(PacketType.PLAYER_DISCONNECTED);
-        writeString(bb, playerId);
+    // Queues [type][body] on each recipient's reliable channel; the scheduler resends until acked
+    private void broadcastReliable(MatchRoom room, ByteBuffer out, MatchRoom.PlayerConnection except, String what, boolean logEach) {
+        byte[] message = new byte[out.remaining()];
+        out.get(message);
+        long now = System.nanoTime();
+        for (MatchRoom.PlayerConnection pc : room.slots) {
+            if (pc == null || pc == except) continue;
+            pc.reliable.send(message, now, (seq, ack, ackBits, m) -> transmitReliable(room, pc, seq, ack, ackBits, m));
+            armRetransmit(pc, now);
+            if (logEach) AsyncLog.debug("Sent {} to {}", what, pc.playerId);
+        }
+    }
 
-        byte[] data = new byte[bb.position()];
-        bb.flip();
-        bb.get(data);
+    // On the timer thread too: a busy room is retried a tick later, like checkLiveness
+    private void retransmitControl(MatchRoom room, MatchRoom.PlayerConnection pc) {
+        if (!room.lock.tryLock()) {
+            timers.schedule(pc.retransmitTimer, System.nanoTime(), TIMER_TICK_NANOS);
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            pc.reliable.retransmit(now, (seq, ack, ackBits, m) -> transmitReliable(room, pc, seq, ack, ackBits, m));
+            armRetransmit(pc, now);
+            flushRoom(room);
+        } finally {
+            room.lock.unlock();
+        }
+    }
 
-        for (PlayerConnection pc : players.values()) {
-            if (!pc.playerId.equals(playerId)) {
-                try {
-                    DatagramPacket packet = new DatagramPacket(data, data.length, pc.address, pc.port);
-                    socket.send(packet);
-                } catch (Exception e) {
-                    System.err.println("Error broadcasting disconnect: " + e.getMessage());
-                }
-            }
+    // Points the retransmit timer at the channel's earliest deadline, or stops it once everything is acked
+    private void armRetransmit(MatchRoom.PlayerConnection pc, long now) {
+        if (pc.retransmitTimer == null) return;
+        long wait = pc.reliable.nanosUntilRetransmit(now);
+        if (wait < 0) {
+            timers.cancel(pc.retransmitTimer);
+        } else {
+            timers.schedule(pc.retransmitTimer, now, wait);
         }
     }
 
-    private void validateGameState(String playerId, GameState state) {
-        state.health = Math.min(1000, Math.max(0, state.health));
-        state.x = Math.min(740, Math.max(0, state.x));
-        state.y = Math.min(400, Math.max(0, state.y));
+    private void transmitReliable(MatchRoom room, MatchRoom.PlayerConnection pc, int seq, int ack, int ackBits, byte[] message) {
+        ByteBuffer bb = bufferPool.acquire();
+        try {
+            bb.put(PacketType.RELIABLE);
+            bb.putShort((short) seq);
+            bb.putShort((short) ack);
+            bb.putInt(ackBits);
+            bb.put(message);
+            bb.flip();
+            queue(room, pc, bb);
+        } catch (Exception e) {
+            metrics.sendErrors.increment();
+            AsyncLog.error("Error sending control message: {}", e.getMessage());
+        } finally {
+            bufferPool.release(bb);
+        }
     }
 
-    private void checkHeartbeats() {
-        long now = System.currentTimeMillis();
-        Iterator<Map.Entry<String, PlayerConnection>> it = players.entrySet().iterator();
+    private void sendReliableAck(MatchRoom room, MatchRoom.PlayerConnection pc) {
+        ByteBuffer bb = bufferPool.acquire();
+        try {
+            bb.put(PacketType.RELIABLE_ACK);
+            bb.putShort((short) pc.reliable.getAck());
+            bb.putInt(pc.reliable.getAckBits());
+            bb.flip();
+            queue(room, pc, bb);
+        } catch (Exception e) {
+            metrics.sendErrors.increment();
+            AsyncLog.error("Send ack error: {}", e.getMessage());
+        } finally {
+            bufferPool.release(bb);
+        }
+    }
 
-        while (it.hasNext()) {
-            Map.Entry<String, PlayerConnection> entry = it.next();
-            if (now - entry.getValue().lastHeartbeat > 5000) {
-                System.out.println("Player timeout: " + entry.getValue().playerId);
-                it.remove();
-                if (entry.getValue().isHost) {
-                    hostPlayerId = null;
-                }
-                broadcastPlayerDisconnected(entry.getValue().playerId);
-            }
+    private void sendAccepted(MatchRoom room, MatchRoom.PlayerConnection pc) {
+        ByteBuffer bb = bufferPool.acquire();
+        try {
+            bb.put(PacketType.CONNECT_ACCEPTED);
+            bb.put((byte) pc.slot);
+            writeString(bb, pc.playerId);
+            bb.put((byte) (authoritative ? 1 : 0));
+            bb.flip();
+            queue(room, pc, bb);
+        } catch (Exception e) {
+            metrics.sendErrors.increment();
+            AsyncLog.error("Send response error: {}", e.getMessage());
+        } finally {
+            bufferPool.release(bb);
         }
     }
 
-    private void sendResponse(DatagramPacket original, byte packetType, String message) {
+    private void sendResponse(SocketAddress to, byte packetType, String message) {
+        if (packetType == PacketType.CONNECT_REJECTED) metrics.rejects.increment();
+        ByteBuffer bb = bufferPool.acquire();
         try {
-            ByteBuffer bb = ByteBuffer.allocate(256);
             bb.put(packetType);
             writeString(bb, message);
-
-            byte[] data = new byte[bb.position()];
             bb.flip();
-            bb.get(data);
+            send(null, bb, to);
+        } catch (Exception e) {
+            metrics.sendErrors.increment();
+            AsyncLog.error("Send response error: {}", e.getMessage());
+        } finally {
+            bufferPool.release(bb);
+        }
+    }
 
-            DatagramPacket response = new DatagramPacket(data, data.length, original.getAddress(), original.getPort());
-            socket.send(response);
+    // Datagrams of one message leave through here, the rest through flush; room is null before a player is seated
+    private void send(MatchRoom room, ByteBuffer bb, SocketAddress to) throws IOException {
+        byte type = bb.get(bb.position());
+        int bytes = channel.send(bb, to);
+        metrics.packetOut(type, bytes);
+        metrics.datagramsOut.increment();
+        if (room != null) room.metrics.out(bytes);
+    }
+
+    // Adds a message to pc's datagram for this pass of the room; the caller holds the room's lock and flushes
+    private void queue(MatchRoom room, MatchRoom.PlayerConnection pc, ByteBuffer bb) throws IOException {
+        byte type = bb.get(bb.position());
+        int bytes = bb.remaining();
+        if (!pc.outbound.offer(bb)) {
+            flush(room, pc);
+            if (!pc.outbound.offer(bb)) {
+                // Too big for any batch
+                send(room, bb, pc.address);
+                return;
+            }
+        }
+        metrics.packetOut(type, bytes);
+    }
+
+    private void flushRoom(MatchRoom room) {
+        for (MatchRoom.PlayerConnection pc : room.slots) {
+            if (pc != null) flush(room, pc);
+        }
+    }
+
+    private void flush(MatchRoom room, MatchRoom.PlayerConnection pc) {
+        ByteBuffer datagram = pc.outbound.drain();
+        if (datagram == null) return;
+        try {
+            int bytes = channel.send(datagram, pc.address);
+            metrics.datagramsOut.increment();
+            room.metrics.out(bytes);
         } catch (Exception e) {
-            System.err.println("Send response error: " + e.getMessage());
+            metrics.sendErrors.increment();
+            AsyncLog.error("Error sending to {}: {}", pc.playerId, e.getMessage());
+        } finally {
+            pc.outbound.clear();
         }
     }
 
     private void writeString(ByteBuffer bb, String str) {
-        byte[] bytes = str.getBytes();
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
         bb.putShort((short) bytes.length);
         bb.put(bytes);
     }
@@ -494,14 +955,22 @@ public class NetworkGameServer {
         short len = bb.getShort();
         byte[] data = new byte[len];
         bb.get(data);
-        return new String(data);
+        return new String(data, StandardCharsets.UTF_8);
     }
 
     public void stop() {
         running = false;
         scheduler.shutdownNow();
-        if (socket != null && !socket.isClosed()) {
-            socket.close();
+        if (metricsHttp != null) metricsHttp.stop(0);
+        for (int roomId = 0; roomId < MAX_ROOMS; roomId++) {
+            MatchRoom room = rooms.get(roomId);
+            if (room != null) room.worker.stop();
+        }
+        for (RoomShard shard : shards) shard.stop();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            AsyncLog.error("Error closing channel: {}", e.getMessage());
         }
     }
 
@@ -510,11 +979,15 @@ public class NetworkGameServer {
         public static final byte CONNECT_ACCEPTED = 0x02;
         public static final byte CONNECT_REJECTED = 0x03;
         public static final byte DISCONNECT = 0x04;
+        public static final byte RELIABLE = 0x05;
+        public static final byte RELIABLE_ACK = 0x06;
         public static final byte INPUT = 0x10;
         public static final byte INPUT_BROADCAST = 0x11;
         public static final byte STATE_UPDATE = 0x20;
         public static final byte GAME_START = 0x30;
         public static final byte HEARTBEAT = 0x40;
+        public static final byte PING = 0x41;
+        public static final byte PONG = 0x42;
         public static final byte PLAYER_DISCONNECTED = 0x50;
         public static final byte GAME_CONFIG = 0x60;
         public static final byte PAUSE_GAME = 0x70;
@@ -522,12 +995,39 @@ public class NetworkGameServer {
         public static final byte REMATCH = (byte) 0x80;
         public static final byte NEXT_ROUND = (byte) 0x82;
         public static final byte WAITING_FOR_HOST = (byte) 0x81;
+        public static final byte SNAPSHOT = (byte) 0x90;
+        public static final byte ROUND_END = (byte) 0x91;
+        public static final byte BATCH = (byte) 0xA0;
     }
 
     public static void main(String[] args) {
         try {
-            NetworkGameServer server = new NetworkGameServer();
+            int port = args.length > 0 ? Integer.parseInt(args[0]) : PORT;
+            boolean authoritative = false;
+            long timeoutMs = DEFAULT_CONNECTION_TIMEOUT_MS;
+            long flushWindowUs = 0;
+            int metricsPort = 0;
+            long metricsIntervalMs = 0;
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--authoritative")) {
+                    authoritative = true;
+                } else if (args[i].equals("--timeout") && i + 1 < args.length) {
+                    timeoutMs = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--flush-window") && i + 1 < args.length) {
+                    flushWindowUs = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--metrics-port") && i + 1 < args.length) {
+                    metricsPort = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--metrics-interval") && i + 1 < args.length) {
+                    metricsIntervalMs = Long.parseLong(args[++i]) * 1000;
+                } else if (args[i].equals("--log-level") && i + 1 < args.length) {
+                    AsyncLog.setLevel(AsyncLog.parseLevel(args[++i], AsyncLog.getLevel()));
+                }
+            }
+            NetworkGameServer server = new NetworkGameServer(port, authoritative);
+            server.setConnectionTimeoutMillis(timeoutMs);
+            server.setFlushWindowMicros(flushWindowUs);
             server.start();
+            server.startMetrics(metricsPort, metricsIntervalMs);
             new Scanner(System.in).nextLine();
             server.stop();
         } catch (Exception e) {
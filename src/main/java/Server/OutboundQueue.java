@@ -0,0 +1,72 @@
+package Server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * What the server has to send one player during one pass of its room, framed
+ * into a single datagram: [BATCH][len u16][message][len u16][message]...,
+ * each message being the [type][body] packet it would otherwise have been.
+ * A pass that produced just one message sends it plain, without the frame.
+ *
+ * Messages are framed in place in one direct buffer, which is what a
+ * gathering write would hand the kernel: the server's channel is not
+ * connected to any one player, and an unconnected DatagramChannel can only
+ * send a single buffer.
+ *
+ * Guarded by the room's lock, like the rest of the connection.
+ */
+public class OutboundQueue {
+    /** Largest datagram a batch grows to; the receive buffer of NetworkClient and LoadGenerator. */
+    public static final int MAX_DATAGRAM = 1024;
+    // [BATCH][len u16] of the first message, left blank until a second one arrives
+    private static final int HEADER = 3;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+    private int count = 0;
+
+    OutboundQueue() {
+        buffer.position(HEADER);
+    }
+
+    /** Appends the remaining bytes of {@code message}; false, leaving it untouched, if they do not fit. */
+    boolean offer(ByteBuffer message) {
+        int length = message.remaining();
+        int framed = count == 0 ? length : 2 + length;
+        if (buffer.position() + framed > MAX_DATAGRAM) return false;
+
+        if (count == 0) {
+            buffer.putShort(1, (short) length);
+        } else {
+            buffer.putShort((short) length);
+        }
+        buffer.put(message);
+        count++;
+        return true;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /** The datagram to send, or null when nothing is queued; call {@link #clear} once it is sent. */
+    ByteBuffer drain() {
+        if (count == 0) return null;
+        buffer.flip();
+        if (count == 1) {
+            buffer.position(HEADER);
+        } else {
+            buffer.put(0, NetworkGameServer.PacketType.BATCH);
+        }
+        return buffer;
+    }
+
+    void clear() {
+        buffer.clear();
+        buffer.position(HEADER);
+        count = 0;
+    }
+}
@@ -0,0 +1,139 @@
+package Server;
+
+import Client.AsyncLog;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A platform thread that runs the {@link RoomWorker}s of many rooms, one pass
+ * at a time. A room with mail is pushed onto the shard's ready stack by the
+ * receiver; a room that is ticking or holding output stays on the timed list
+ * and gets a pass once its deadline comes round. In between the thread parks
+ * until the earliest deadline or the next ready room.
+ *
+ * Shards are platform threads rather than a virtual thread per room because
+ * every unpark of a virtual thread allocates a scheduler task, which made each
+ * relayed packet cost garbage. Unparking a platform thread does not, and the ready stack links the
+ * workers themselves, so handing a room over allocates nothing either.
+ */
+public class RoomShard implements Runnable {
+    private final String name;
+    // Lock-free stack of rooms with mail, linked through RoomWorker.nextReady
+    private final AtomicReference<RoomWorker> ready = new AtomicReference<>();
+    // Rooms with a deadline; touched by the shard thread only
+    private final ArrayList<RoomWorker> timed = new ArrayList<>();
+    private volatile boolean running = true;
+    private volatile boolean parked = false;
+    private Thread thread;
+
+    public RoomShard(String name) {
+        this.name = name;
+    }
+
+    public void start() {
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    /** Queues a room for a pass. The caller guarantees the room is not queued already. */
+    void schedule(RoomWorker worker) {
+        RoomWorker top;
+        do {
+            top = ready.get();
+            worker.nextReady = top;
+        } while (!ready.compareAndSet(top, worker));
+        if (parked) LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+        long nextDeadline = Long.MAX_VALUE;
+        while (running) {
+            RoomWorker batch = takeReady();
+            while (batch != null) {
+                RoomWorker worker = batch;
+                batch = worker.nextReady;
+                worker.nextReady = null;
+                worker.dequeued();
+                if (pass(worker) && (nextDeadline == Long.MAX_VALUE || worker.deadline - nextDeadline < 0)) {
+                    nextDeadline = worker.deadline;
+                }
+            }
+
+            long now = System.nanoTime();
+            if (nextDeadline != Long.MAX_VALUE && now - nextDeadline >= 0) {
+                nextDeadline = Long.MAX_VALUE;
+                for (int i = 0; i < timed.size(); i++) {
+                    RoomWorker worker = timed.get(i);
+                    if (now - worker.deadline >= 0 && !pass(worker)) {
+                        // pass() dropped it from the list; the last one took its place
+                        i--;
+                        continue;
+                    }
+                    if (nextDeadline == Long.MAX_VALUE || worker.deadline - nextDeadline < 0) {
+                        nextDeadline = worker.deadline;
+                    }
+                }
+            }
+            park(nextDeadline);
+        }
+    }
+
+    // Runs one pass of the room and files it by whether it wants to run again on its own; true if it does
+    private boolean pass(RoomWorker worker) {
+        boolean again;
+        try {
+            again = worker.runPass();
+        } catch (RuntimeException e) {
+            AsyncLog.error("[Room {}] Pass failed: {}", worker.roomId(), e.toString());
+            again = worker.isRunning();
+            worker.deadline = System.nanoTime() + worker.tickNanos;
+        }
+        if (again && worker.timedIndex < 0) {
+            worker.timedIndex = timed.size();
+            timed.add(worker);
+        } else if (!again && worker.timedIndex >= 0) {
+            RoomWorker last = timed.remove(timed.size() - 1);
+            if (last != worker) {
+                timed.set(worker.timedIndex, last);
+                last.timedIndex = worker.timedIndex;
+            }
+            worker.timedIndex = -1;
+        }
+        return again;
+    }
+
+    // The stack pops newest first; reversed so rooms get their passes in the order their mail arrived
+    private RoomWorker takeReady() {
+        RoomWorker node = ready.getAndSet(null);
+        RoomWorker reversed = null;
+        while (node != null) {
+            RoomWorker next = node.nextReady;
+            node.nextReady = reversed;
+            reversed = node;
+            node = next;
+        }
+        return reversed;
+    }
+
+    // A room scheduled after the flag is set unparks us, so checking the stack after setting it loses nothing
+    private void park(long deadline) {
+        parked = true;
+        if (ready.get() == null && running) {
+            if (deadline == Long.MAX_VALUE) {
+                LockSupport.park();
+            } else {
+                LockSupport.parkNanos(deadline - System.nanoTime());
+            }
+        }
+        parked = false;
+    }
+}
@@ -0,0 +1,199 @@
+package Server;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Runs one {@link MatchRoom} on a {@link RoomShard}: the server's receiver
+ * thread only drops packets into the room's mailbox, and the shard's thread
+ * handles them and, while the room has a server-side fight, steps it at a
+ * fixed tick. Whatever a pass of packets and ticks queued for the players is
+ * flushed at its end, so each player gets at most one datagram per pass. With
+ * a flush window the output is held until the window has passed since the
+ * first pass that queued it, so the passes in between share datagrams too, at
+ * the cost of up to the window in added latency.
+ *
+ * The mailbox is a bounded ring with a single producer, the receiver thread:
+ * parallel slot arrays indexed by sequence, so handing a packet over and
+ * draining it allocate nothing. When a room falls behind or is flooded its
+ * excess packets are dropped at the door, so the receiver never blocks and
+ * the other rooms never wait on it.
+ */
+public class RoomWorker {
+    public static final int MAILBOX_CAPACITY = 256;   // a power of two
+    private static final int MASK = MAILBOX_CAPACITY - 1;
+    private static final int MAX_CATCH_UP_TICKS = 4;
+
+    /** What the worker calls back into; implemented by the server. */
+    public interface Handler {
+        void handlePacket(MatchRoom room, SocketAddress from, ByteBuffer packet, long receivedNanos);
+
+        void tick(MatchRoom room, long tick);
+
+        void flush(MatchRoom room);
+
+        void release(ByteBuffer packet);
+    }
+
+    private final MatchRoom room;
+    private final Handler handler;
+    private final RoomShard shard;
+    final long tickNanos;
+    private final long flushWindowNanos;
+    private final SocketAddress[] mailFrom = new SocketAddress[MAILBOX_CAPACITY];
+    private final ByteBuffer[] mailPacket = new ByteBuffer[MAILBOX_CAPACITY];
+    private final long[] mailReceived = new long[MAILBOX_CAPACITY];
+    // Next sequence to post, written by the receiver only; the volatile write publishes the slot
+    private volatile long tail = 0;
+    // Next sequence to handle, written by the worker only; frees the slot for reuse
+    private volatile long head = 0;
+    private volatile boolean running = true;
+    // Set by the receiver when it queues the room on its shard, cleared by the shard as it takes it; true until start()
+    private volatile boolean scheduled = true;
+    private long ticks = 0;
+    private long nextTick;
+    private boolean holding = false;
+    private long heldSince = 0;
+
+    // Owned by the shard: its ready stack link, place on its timed list and when to run next
+    RoomWorker nextReady;
+    int timedIndex = -1;
+    long deadline;
+    private volatile long dropped = 0; // written by the receiver thread only
+
+    /** @param flushWindowNanos how long output may wait for more; 0 flushes after every pass */
+    public RoomWorker(MatchRoom room, Handler handler, RoomShard shard, long tickNanos, long flushWindowNanos) {
+        this.room = room;
+        this.handler = handler;
+        this.shard = shard;
+        this.tickNanos = tickNanos;
+        this.flushWindowNanos = flushWindowNanos;
+    }
+
+    /** Hands the room to its shard; mail posted before this waits for it. Called once, by the receiver. */
+    public void start() {
+        nextTick = System.nanoTime() + tickNanos;
+        shard.schedule(this);
+    }
+
+    /**
+     * Hands a packet to the room; the worker releases it once handled. Only
+     * the receiver thread may call this. Returns false, leaving the packet with
+     * the caller, if the mailbox is full or the room has closed.
+     */
+    public boolean post(SocketAddress from, ByteBuffer packet, long receivedNanos) {
+        long t = tail;
+        if (!running || t - head >= MAILBOX_CAPACITY) {
+            dropped++;
+            return false;
+        }
+        int i = (int) t & MASK;
+        mailFrom[i] = from;
+        mailPacket[i] = packet;
+        mailReceived[i] = receivedNanos;
+        tail = t + 1;
+        if (!scheduled) {
+            scheduled = true;
+            shard.schedule(this);
+        }
+        return true;
+    }
+
+    /** Closes the mailbox; the shard releases anything still in it on the room's next pass. */
+    public void stop() {
+        running = false;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    int roomId() {
+        return room.roomId;
+    }
+
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    // Mail posted after the flag is cleared queues the room again, so the pass that follows loses nothing
+    void dequeued() {
+        scheduled = false;
+    }
+
+    // Takes the slot's contents and frees it before handling, so the receiver can refill it meanwhile
+    private void handleNext() {
+        long h = head;
+        int i = (int) h & MASK;
+        SocketAddress from = mailFrom[i];
+        ByteBuffer packet = mailPacket[i];
+        long receivedNanos = mailReceived[i];
+        mailFrom[i] = null;
+        mailPacket[i] = null;
+        head = h + 1;
+        try {
+            handler.handlePacket(room, from, packet, receivedNanos);
+        } finally {
+            handler.release(packet);
+        }
+    }
+
+    /**
+     * Handles the mail, runs any ticks due and flushes or holds the output.
+     * Returns true with {@link #deadline} set if the room needs a pass at that
+     * time even without mail, false if it only needs one when mail arrives.
+     */
+    boolean runPass() {
+        boolean queued = false;
+        while (running && head != tail) {
+            queued = true;
+            handleNext();
+        }
+        if (!running) {
+            drain();
+            return false;
+        }
+
+        long now = System.nanoTime();
+        boolean idle = room.match == null;
+        if (idle) {
+            // Nothing to step: wait for mail
+            nextTick = now + tickNanos;
+        } else {
+            // Fixed rate; after a stall a few ticks are caught up and the rest skipped
+            for (int n = 0; now - nextTick >= 0 && n < MAX_CATCH_UP_TICKS; n++) {
+                handler.tick(room, ++ticks);
+                nextTick += tickNanos;
+                queued = true;
+            }
+            if (now - nextTick >= 0) nextTick = now + tickNanos;
+            deadline = nextTick;
+        }
+
+        if (queued && !holding) {
+            holding = true;
+            heldSince = now;
+        }
+        if (holding) {
+            long flushAt = heldSince + flushWindowNanos;
+            if (now - flushAt >= 0) {
+                handler.flush(room);
+                holding = false;
+            } else if (idle || flushAt - deadline < 0) {
+                idle = false;
+                deadline = flushAt;
+            }
+        }
+        return !idle;
+    }
+
+    private void drain() {
+        while (head != tail) {
+            int i = (int) head & MASK;
+            handler.release(mailPacket[i]);
+            mailFrom[i] = null;
+            mailPacket[i] = null;
+            head++;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package Server;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.function.Supplier;
+
+/**
+ * Counters and latency histograms for {@link NetworkGameServer}.
+ *
+ * Everything the packet path touches is a {@link LongAdder} or a
+ * {@link StripedHistogram}, so recording never takes a lock and threads
+ * updating the same counter do not contend on one cache line. Readers get a
+ * close but not exact snapshot, which is all a scrape needs.
+ *
+ * {@link #render} writes the Prometheus text format, each metric's lines
+ * together under its {@code # TYPE} line; {@link #serve} puts it on
+ * a loopback-only HTTP endpoint and {@link #summary} is the one-line form for
+ * a periodic dump to the console.
+ */
+public class ServerMetrics {
+    private static final String[] TYPE_NAMES = packetTypeNames();
+
+    /** Traffic of one room; lives as long as the room. */
+    public static class RoomMetrics {
+        final LongAdder packetsIn = new LongAdder();
+        final LongAdder packetsOut = new LongAdder();
+        final LongAdder bytesIn = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+
+        void in(int bytes) {
+            packetsIn.increment();
+            bytesIn.add(bytes);
+        }
+
+        void out(int bytes) {
+            packetsOut.increment();
+            bytesOut.add(bytes);
+        }
+    }
+
+    private final LongAdder[] packetsIn = adders(256);
+    private final LongAdder[] packetsOut = adders(256);
+    private final LongAdder[] bytesIn = adders(256);
+    private final LongAdder[] bytesOut = adders(256);
+
+    // Packets above count messages by type; a BATCH datagram carries several
+    final LongAdder datagramsIn = new LongAdder();
+    final LongAdder datagramsOut = new LongAdder();
+    final LongAdder decodeErrors = new LongAdder();   // truncated, malformed or unknown packets
+    final LongAdder strayPackets = new LongAdder();   // no such room, or not from the seated player
+    final LongAdder mailboxDrops = new LongAdder();   // room too far behind to take more
+    final LongAdder sendErrors = new LongAdder();
+    final LongAdder connects = new LongAdder();
+    final LongAdder rejects = new LongAdder();
+    final LongAdder disconnects = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+
+    final StripedHistogram relayLatency = new StripedHistogram();  // INPUT received to INPUT_BROADCAST sent, mailbox wait included
+    final StripedHistogram tickDuration = new StripedHistogram();  // one authoritative room step, snapshot send included
+
+    private final List<String> gaugeNames = new ArrayList<>();
+    private final List<LongSupplier> gauges = new ArrayList<>();
+    private final long startNanos = System.nanoTime();
+
+    // State at the previous summary(), so each line covers only its own interval
+    private long lastSummaryNanos = startNanos;
+    private long lastIn, lastOut, lastDatagramsIn, lastDatagramsOut;
+    private Histogram lastRelay = new Histogram();
+    private Histogram lastTick = new Histogram();
+
+    void packetIn(byte type, int bytes) {
+        packetsIn[type & 0xFF].increment();
+        bytesIn[type & 0xFF].add(bytes);
+    }
+
+    void packetOut(byte type, int bytes) {
+        packetsOut[type & 0xFF].increment();
+        bytesOut[type & 0xFF].add(bytes);
+    }
+
+    /** Registers a value read at scrape time, e.g. active rooms; call before serving. */
+    public synchronized void gauge(String name, LongSupplier value) {
+        gaugeNames.add(name);
+        gauges.add(value);
+    }
+
+    public long getPacketsIn() {
+        return sum(packetsIn);
+    }
+
+    public long getPacketsOut() {
+        return sum(packetsOut);
+    }
+
+    public Histogram getRelayLatency() {
+        return relayLatency.snapshot();
+    }
+
+    public Histogram getTickDuration() {
+        return tickDuration.snapshot();
+    }
+
+    public synchronized void render(StringBuilder out) {
+        type(out, "server_uptime_seconds", "gauge");
+        out.append("server_uptime_seconds ").append(seconds(System.nanoTime() - startNanos)).append('\n');
+        for (int i = 0; i < gauges.size(); i++) {
+            type(out, "server_" + gaugeNames.get(i), "gauge");
+            out.append("server_").append(gaugeNames.get(i)).append(' ').append(gauges.get(i).getAsLong()).append('\n');
+        }
+
+        byType(out, "server_packets_in_total", packetsIn);
+        byType(out, "server_bytes_in_total", bytesIn);
+        byType(out, "server_packets_out_total", packetsOut);
+        byType(out, "server_bytes_out_total", bytesOut);
+
+        counter(out, "datagrams_in", datagramsIn);
+        counter(out, "datagrams_out", datagramsOut);
+        counter(out, "decode_errors", decodeErrors);
+        counter(out, "stray_packets", strayPackets);
+        counter(out, "mailbox_drops", mailboxDrops);
+        counter(out, "send_errors", sendErrors);
+        counter(out, "connects", connects);
+        counter(out, "rejects", rejects);
+        counter(out, "disconnects", disconnects);
+        counter(out, "timeouts", timeouts);
+
+        summaryOf(out, "relay_latency_seconds", relayLatency.snapshot());
+        summaryOf(out, "tick_duration_seconds", tickDuration.snapshot());
+    }
+
+    /**
+     * Traffic of each open room, then each seated player's own smoothed RTT
+     * and jitter as reported in its pings; a player has none before the first.
+     */
+    static void renderRooms(StringBuilder out, List<MatchRoom> rooms) {
+        byRoom(out, "room_players", "gauge", rooms, room -> room.playerCount);
+        byRoom(out, "room_packets_in_total", "counter", rooms, room -> room.metrics.packetsIn.sum());
+        byRoom(out, "room_bytes_in_total", "counter", rooms, room -> room.metrics.bytesIn.sum());
+        byRoom(out, "room_packets_out_total", "counter", rooms, room -> room.metrics.packetsOut.sum());
+        byRoom(out, "room_bytes_out_total", "counter", rooms, room -> room.metrics.bytesOut.sum());
+        byRoom(out, "room_mailbox_drops_total", "counter", rooms, room -> room.worker.getDroppedCount());
+        byPlayer(out, "player_rtt_seconds", rooms, pc -> pc.rttMicros);
+        byPlayer(out, "player_jitter_seconds", rooms, pc -> pc.jitterMicros);
+    }
+
+    /** One line for the console: rates and latencies since the previous call. */
+    public synchronized String summary() {
+        long now = System.nanoTime();
+        long in = getPacketsIn();
+        long out = getPacketsOut();
+        long datagramsIn = this.datagramsIn.sum();
+        long datagramsOut = this.datagramsOut.sum();
+        Histogram relay = relayLatency.snapshot();
+        Histogram tick = tickDuration.snapshot();
+        Histogram relayInterval = relay.since(lastRelay);
+        Histogram tickInterval = tick.since(lastTick);
+        double elapsed = Math.max(1e-9, (now - lastSummaryNanos) / 1e9);
+        StringBuilder sb = new StringBuilder("[Metrics]");
+        for (int i = 0; i < gauges.size(); i++) {
+            sb.append(' ').append(gaugeNames.get(i)).append('=').append(gauges.get(i).getAsLong());
+        }
+        sb.append(String.format(Locale.ROOT, " in=%.0f/s out=%.0f/s datagrams_in=%.0f/s datagrams_out=%.0f/s relay_p50=%.2fms relay_p99=%.2fms tick_p99=%.2fms",
+                (in - lastIn) / elapsed, (out - lastOut) / elapsed,
+                (datagramsIn - lastDatagramsIn) / elapsed, (datagramsOut - lastDatagramsOut) / elapsed,
+                relayInterval.getValueAtPercentile(50) / 1e6, relayInterval.getValueAtPercentile(99) / 1e6,
+                tickInterval.getValueAtPercentile(99) / 1e6));
+        sb.append(" decode_errors=").append(decodeErrors.sum())
+                .append(" mailbox_drops=").append(mailboxDrops.sum())
+                .append(" timeouts=").append(timeouts.sum());
+        lastSummaryNanos = now;
+        lastIn = in;
+        lastOut = out;
+        lastDatagramsIn = datagramsIn;
+        lastDatagramsOut = datagramsOut;
+        lastRelay = relay;
+        lastTick = tick;
+        return sb.toString();
+    }
+
+    /** Serves {@code page} as text at /metrics on the loopback interface only. */
+    public static HttpServer serve(int port, Supplier<String> page) throws IOException {
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/metrics", exchange -> {
+            byte[] body = page.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        http.start();
+        return http;
+    }
+
+    public static String typeName(int type) {
+        String name = TYPE_NAMES[type & 0xFF];
+        return name != null ? name : String.format("0x%02X", type & 0xFF);
+    }
+
+    private static void type(StringBuilder out, String name, String type) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, LongAdder value) {
+        type(out, "server_" + name + "_total", "counter");
+        out.append("server_").append(name).append("_total ").append(value.sum()).append('\n');
+    }
+
+    // Only the packet types seen so far in either direction
+    private void byType(StringBuilder out, String name, LongAdder[] values) {
+        type(out, name, "counter");
+        for (int type = 0; type < 256; type++) {
+            if (packetsIn[type].sum() == 0 && packetsOut[type].sum() == 0) continue;
+            out.append(name).append("{type=\"").append(typeName(type)).append("\"} ").append(values[type].sum()).append('\n');
+        }
+    }
+
+    private static void byRoom(StringBuilder out, String name, String type, List<MatchRoom> rooms, ToLongFunction<MatchRoom> value) {
+        type(out, name, type);
+        for (MatchRoom room : rooms) {
+            out.append(name).append("{room=\"").append(room.roomId).append("\"} ").append(value.applyAsLong(room)).append('\n');
+        }
+    }
+
+    private static void byPlayer(StringBuilder out, String name, List<MatchRoom> rooms, ToIntFunction<MatchRoom.PlayerConnection> micros) {
+        type(out, name, "gauge");
+        for (MatchRoom room : rooms) {
+            for (MatchRoom.PlayerConnection pc : room.slots) {
+                if (pc == null || pc.rttMicros < 0) continue;
+                out.append(name).append("{room=\"").append(room.roomId).append("\",slot=\"").append(pc.slot).append("\"} ")
+                        .append(seconds(micros.applyAsInt(pc) * 1000L)).append('\n');
+            }
+        }
+    }
+
+    // The max is not part of a summary, so it follows as a gauge of its own
+    private static void summaryOf(StringBuilder out, String name, Histogram h) {
+        type(out, "server_" + name, "summary");
+        for (String q : new String[]{"0.5", "0.9", "0.99", "0.999"}) {
+            out.append("server_").append(name).append("{quantile=\"").append(q).append("\"} ")
+                    .append(seconds(h.getValueAtPercentile(Double.parseDouble(q) * 100))).append('\n');
+        }
+        out.append("server_").append(name).append("_sum ").append(seconds(h.getSum())).append('\n');
+        out.append("server_").append(name).append("_count ").append(h.getCount()).append('\n');
+        type(out, "server_" + name + "_max", "gauge");
+        out.append("server_").append(name).append("_max ").append(seconds(h.getMax())).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static long sum(LongAdder[] adders) {
+        long n = 0;
+        for (LongAdder a : adders) n += a.sum();
+        return n;
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] a = new LongAdder[n];
+        for (int i = 0; i < n; i++) a[i] = new LongAdder();
+        return a;
+    }
+
+    // Names come from the wire constants themselves, so a new packet type shows up without touching this
+    private static String[] packetTypeNames() {
+        String[] names = new String[256];
+        for (Field f : NetworkGameServer.PacketType.class.getFields()) {
+            if (f.getType() != byte.class || !Modifier.isStatic(f.getModifiers())) continue;
+            try {
+                names[f.getByte(null) & 0xFF] = f.getName();
+            } catch (IllegalAccessException e) {
+                // public constants; cannot happen
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,37 @@
+package Server;
+
+/**
+ * {@link Histogram} split into shards picked by the recording thread, for
+ * histograms every room worker records into. One shared histogram puts all
+ * of them on the same count, sum and max words and bucket lines; with shards
+ * they mostly write their own, and a reader merges them with
+ * {@link Histogram#add} at scrape time.
+ */
+public class StripedHistogram {
+    private final Histogram[] shards;
+    private final int mask;
+
+    public StripedHistogram() {
+        this(2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /** @param shards rounded up to a power of two */
+    public StripedHistogram(int shards) {
+        int n = Integer.highestOneBit(Math.max(1, shards - 1)) << 1;
+        this.shards = new Histogram[n];
+        for (int i = 0; i < n; i++) this.shards[i] = new Histogram();
+        this.mask = n - 1;
+    }
+
+    public void record(long value) {
+        // Thread ids are handed out in sequence, so threads started together land on different shards
+        shards[(int) Thread.currentThread().threadId() & mask].record(value);
+    }
+
+    /** Everything recorded so far, merged into one histogram. */
+    public Histogram snapshot() {
+        Histogram h = new Histogram();
+        for (Histogram shard : shards) h.add(shard);
+        return h;
+    }
+}
@@ -0,0 +1,140 @@
+package Server;
+
+import Client.AsyncLog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel for the server's per-connection timers (liveness and
+ * control-message retransmits).
+ *
+ * Time is cut into ticks of {@code tickNanos}; a timer lives in the bucket of
+ * its deadline tick modulo the wheel size, on an intrusive doubly linked
+ * list, so scheduling, moving and cancelling a timer are O(1). Each
+ * {@link #advance} only visits the buckets of the ticks that passed, and a
+ * timer whose deadline is more than one revolution away simply stays in its
+ * bucket until its tick comes round.
+ *
+ * All methods may be called from any thread. Expired tasks run on the thread
+ * calling {@link #advance}, outside the wheel's lock, so a task may take
+ * other locks and schedule timers again.
+ */
+public class TimingWheel {
+    public static final class Timer {
+        private final Runnable task;
+        private long deadlineTick;
+        private Timer prev;
+        private Timer next;
+        private int bucket = -1; // -1 while not scheduled
+
+        private Timer(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    private final long tickNanos;
+    private final Timer[] buckets;
+    private final int mask;
+    private final long startNanos;
+    private long currentTick = 0; // every tick before this one has been processed
+    private int size = 0;
+
+    /** @param wheelSize rounded up to a power of two */
+    public TimingWheel(long tickNanos, int wheelSize) {
+        this(tickNanos, wheelSize, System.nanoTime());
+    }
+
+    // Tick 0 starts at startNanos; lets tests and benchmarks run the wheel on their own clock
+    TimingWheel(long tickNanos, int wheelSize, long startNanos) {
+        int n = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickNanos = tickNanos;
+        this.buckets = new Timer[n];
+        this.mask = n - 1;
+        this.startNanos = startNanos;
+    }
+
+    public Timer newTimer(Runnable task) {
+        return new Timer(task);
+    }
+
+    /** (Re)arms the timer to run {@code delayNanos} from {@code now}, replacing any earlier deadline. */
+    public synchronized void schedule(Timer timer, long now, long delayNanos) {
+        if (timer.bucket >= 0) unlink(timer);
+        // Rounded up, so a timer never fires before its delay is over
+        long tick = Math.max(currentTick, (now - startNanos + delayNanos + tickNanos - 1) / tickNanos);
+        timer.deadlineTick = tick;
+        link(timer, (int) (tick & mask));
+    }
+
+    public synchronized void cancel(Timer timer) {
+        if (timer.bucket >= 0) unlink(timer);
+    }
+
+    public synchronized boolean isScheduled(Timer timer) {
+        return timer.bucket >= 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /** Runs every timer whose deadline is at or before {@code now}. */
+    public void advance(long now) {
+        List<Timer> expired = collectExpired(now);
+        for (int i = 0; i < expired.size(); i++) {
+            try {
+                expired.get(i).task.run();
+            } catch (Exception e) {
+                AsyncLog.error("Timer task failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private synchronized List<Timer> collectExpired(long now) {
+        long lastTick = (now - startNanos) / tickNanos;
+        List<Timer> expired = new ArrayList<>();
+        // More than a revolution behind: one pass over every bucket covers the lot
+        long from = Math.max(currentTick, lastTick - mask);
+        for (long tick = from; tick <= lastTick; tick++) {
+            Timer t = buckets[(int) (tick & mask)];
+            while (t != null) {
+                Timer next = t.next;
+                if (t.deadlineTick <= lastTick) {
+                    unlink(t);
+                    expired.add(t);
+                }
+                t = next;
+            }
+        }
+        currentTick = Math.max(currentTick, lastTick + 1);
+        return expired;
+    }
+
+    private void link(Timer timer, int bucket) {
+        Timer head = buckets[bucket];
+        timer.prev = null;
+        timer.next = head;
+        if (head != null) head.prev = timer;
+        buckets[bucket] = timer;
+        timer.bucket = bucket;
+        size++;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            buckets[timer.bucket] = timer.next;
+        }
+        if (timer.next != null) timer.next.prev = timer.prev;
+        timer.prev = null;
+        timer.next = null;
+        timer.bucket = -1;
+        size--;
+    }
+}
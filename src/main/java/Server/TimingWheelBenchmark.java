@@ -0,0 +1,148 @@
+package Server;
+
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+/**
+ * Liveness checks for many connections: the {@link TimingWheel} the server
+ * uses, against the old once-a-second scan that locked every room and
+ * compared every player's last heartbeat.
+ *
+ * Real {@link MatchRoom}s hold two connections each. The wheel runs on a
+ * simulated clock in 10 ms ticks, as the server's scheduler drives it; each
+ * connection pings every 250 ms and a share of them go silent at a random
+ * point. Reports time per tick, timer firings, the cost of a touch and a
+ * schedule, and how late each silent connection was caught.
+ *
+ * Usage: {@code TimingWheelBenchmark [connections] [seconds] [silent %]}
+ */
+public class TimingWheelBenchmark {
+    private static final long TICK_NANOS = 10_000_000L;         // as NetworkGameServer
+    private static final int WHEEL_SIZE = 1024;
+    private static final long TIMEOUT_NANOS = 5_000_000_000L;
+    private static final int TICKS_PER_PING = 25;               // 250 ms
+
+    public static void main(String[] args) {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        int silentPercent = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        MatchRoom[] rooms = new MatchRoom[(connections + 1) / 2];
+        MatchRoom.PlayerConnection[] conns = new MatchRoom.PlayerConnection[connections];
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 1);
+        for (int i = 0; i < connections; i++) {
+            if (i % 2 == 0) rooms[i / 2] = new MatchRoom(i / 2);
+            conns[i] = rooms[i / 2].add(address, "P" + i, i % 2 == 0);
+        }
+
+        scan(rooms, seconds);
+
+        int ticks = seconds * (int) (1_000_000_000L / TICK_NANOS);
+        long start = System.nanoTime();
+        TimingWheel wheel = new TimingWheel(TICK_NANOS, WHEEL_SIZE, start);
+        long[] now = {start};
+        long[] firings = {0};
+        long[] caughtAt = new long[connections];
+        TimingWheel.Timer[] timers = new TimingWheel.Timer[connections];
+        // Tick of the first ping a connection misses
+        int[] silentFrom = new int[connections];
+        Random rng = new Random(20);
+        int silent = 0;
+        for (int i = 0; i < connections; i++) {
+            MatchRoom.PlayerConnection pc = conns[i];
+            pc.lastHeartbeat = start;
+            silentFrom[i] = Integer.MAX_VALUE;
+            if (rng.nextInt(100) < silentPercent) {
+                silentFrom[i] = rng.nextInt(ticks);
+                silent++;
+            }
+            int c = i;
+            // As NetworkGameServer.checkLiveness, without the lock and the disconnect
+            timers[i] = wheel.newTimer(() -> {
+                firings[0]++;
+                long idle = now[0] - pc.lastHeartbeat;
+                if (idle < TIMEOUT_NANOS) {
+                    wheel.schedule(timers[c], now[0], TIMEOUT_NANOS - idle);
+                } else {
+                    caughtAt[c] = now[0];
+                }
+            });
+            wheel.schedule(timers[i], start, TIMEOUT_NANOS);
+        }
+
+        long touchNanos = 0, advanceNanos = 0, maxAdvanceNanos = 0, touches = 0;
+        for (int tick = 1; tick <= ticks; tick++) {
+            now[0] = start + tick * TICK_NANOS;
+            long t0 = System.nanoTime();
+            // A twenty-fifth of the connections ping on each tick
+            for (int i = tick % TICKS_PER_PING; i < connections; i += TICKS_PER_PING) {
+                if (tick < silentFrom[i]) {
+                    conns[i].lastHeartbeat = now[0];
+                    touches++;
+                }
+            }
+            long t1 = System.nanoTime();
+            wheel.advance(now[0]);
+            long t2 = System.nanoTime();
+            touchNanos += t1 - t0;
+            advanceNanos += t2 - t1;
+            maxAdvanceNanos = Math.max(maxAdvanceNanos, t2 - t1);
+        }
+
+        int caught = 0, due = 0;
+        long sumLate = 0, maxLate = 0;
+        for (int i = 0; i < connections; i++) {
+            if (silentFrom[i] == Integer.MAX_VALUE) continue;
+            long deadline = conns[i].lastHeartbeat + TIMEOUT_NANOS;   // its last ping
+            if (deadline > now[0]) continue;
+            due++;
+            if (caughtAt[i] == 0) continue;
+            caught++;
+            long late = caughtAt[i] - deadline;
+            sumLate += late;
+            maxLate = Math.max(maxLate, late);
+        }
+
+        long s0 = System.nanoTime();
+        int ops = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < connections; i++) {
+                wheel.schedule(timers[i], now[0], (i * 7919L % 9000) * 1_000_000L);
+                ops++;
+            }
+        }
+        long scheduleNanos = System.nanoTime() - s0;
+
+        System.out.println(String.format("wheel: %d connections, %d s in %d ticks, %.1f us per tick (max %.2f ms), %.0f ms in total",
+                connections, seconds, ticks, advanceNanos / 1e3 / ticks, maxAdvanceNanos / 1e6, advanceNanos / 1e6));
+        System.out.println(String.format("wheel: %.0f timer firings/s, touch %.1f ns, schedule %.0f ns",
+                (double) firings[0] / seconds, (double) touchNanos / touches, (double) scheduleNanos / ops));
+        System.out.println(String.format("wheel: %d went silent, %d due by the end, %d caught, late by %.1f ms on average, %.1f ms at most",
+                silent, due, caught, caught == 0 ? 0 : sumLate / 1e6 / caught, maxLate / 1e6));
+    }
+
+    // The old checkHeartbeats: once a second, every room locked and every slot checked
+    private static void scan(MatchRoom[] rooms, int seconds) {
+        long total = 0, max = 0, checks = 0, dead = 0;
+        for (int s = 0; s < seconds; s++) {
+            long t0 = System.nanoTime();
+            for (MatchRoom room : rooms) {
+                room.lock.lock();
+                try {
+                    for (MatchRoom.PlayerConnection pc : room.slots) {
+                        if (pc == null) continue;
+                        checks++;
+                        if (!pc.isAlive(TIMEOUT_NANOS)) dead++;
+                    }
+                } finally {
+                    room.lock.unlock();
+                }
+            }
+            long took = System.nanoTime() - t0;
+            total += took;
+            max = Math.max(max, took);
+        }
+        System.out.println(String.format("scan:  %d scans, %.2f ms per scan (max %.2f ms), %.0f ms in total, %d slot checks, %d dead",
+                seconds, total / 1e6 / seconds, max / 1e6, total / 1e6, checks, dead));
+    }
+}
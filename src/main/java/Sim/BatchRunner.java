@@ -0,0 +1,178 @@
+package Sim;
+
+import Client.AnimationStateMachine.AnimationType;
+import Client.FrameDataTable;
+import Client.MatchSimulation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays many headless matches in parallel and aggregates the results into a
+ * balance report: win rate per character, round lengths, and hits and damage
+ * per attack type.
+ *
+ * Matches are independent, so the batch is split into chunks on a
+ * {@link ForkJoinPool}; each chunk fills its own {@link Report} and the
+ * reports are merged on the way back up, so workers share nothing.
+ *
+ * Usage: {@code BatchRunner [matches] [bot|random] [threads] [seed] [charA] [charB]}
+ */
+public class BatchRunner {
+    private static final int CHUNK = 64;
+
+    public static class Report {
+        private static final AnimationType[] TYPES = AnimationType.values();
+
+        long matches, rounds, frames;
+        long aWins, bWins, undecided;   // by character
+        long p1SideWins, p2SideWins;    // by side, to spot a side bias
+        long shortestRound = Long.MAX_VALUE, longestRound = 0;
+        final long[] hits = new long[TYPES.length];
+        final long[] damage = new long[TYPES.length];
+
+        void add(HeadlessMatch.Result result, boolean aIsP1) {
+            matches++;
+            rounds += result.rounds;
+            frames += result.frames;
+
+            if (result.winner == 0) {
+                undecided++;
+            } else {
+                if (result.winner == 1) p1SideWins++; else p2SideWins++;
+                if ((result.winner == 1) == aIsP1) aWins++; else bWins++;
+            }
+
+            for (int i = 0; i < result.rounds; i++) {
+                shortestRound = Math.min(shortestRound, result.roundFrames[i]);
+                longestRound = Math.max(longestRound, result.roundFrames[i]);
+            }
+        }
+
+        void addHit(AnimationType attack, int dealt) {
+            hits[attack.ordinal()]++;
+            damage[attack.ordinal()] += dealt;
+        }
+
+        Report merge(Report other) {
+            matches += other.matches;
+            rounds += other.rounds;
+            frames += other.frames;
+            aWins += other.aWins;
+            bWins += other.bWins;
+            undecided += other.undecided;
+            p1SideWins += other.p1SideWins;
+            p2SideWins += other.p2SideWins;
+            shortestRound = Math.min(shortestRound, other.shortestRound);
+            longestRound = Math.max(longestRound, other.longestRound);
+            for (int i = 0; i < hits.length; i++) {
+                hits[i] += other.hits[i];
+                damage[i] += other.damage[i];
+            }
+            return this;
+        }
+
+        public void print(String charA, String charB, double seconds, int threads) {
+            System.out.println("=== Batch report ===");
+            System.out.println(String.format("%d matches, %d rounds, %d frames in %.2f s on %d threads",
+                    matches, rounds, frames, seconds, threads));
+            System.out.println(String.format("%.0f matches/s, %.0f frames/s",
+                    matches / seconds, frames / seconds));
+            System.out.println(String.format("%s wins: %d (%.1f%%)  %s wins: %d (%.1f%%)  undecided: %d",
+                    charA, aWins, percent(aWins, matches), charB, bWins, percent(bWins, matches), undecided));
+            System.out.println(String.format("P1 side wins: %d  P2 side wins: %d", p1SideWins, p2SideWins));
+            System.out.println(String.format("Round length: avg %.1f s, shortest %.1f s, longest %.1f s",
+                    rounds == 0 ? 0 : (double) frames / rounds / MatchSimulation.SIM_HZ,
+                    rounds == 0 ? 0 : (double) shortestRound / MatchSimulation.SIM_HZ,
+                    (double) longestRound / MatchSimulation.SIM_HZ));
+
+            System.out.println(String.format("%-14s %10s %10s %12s", "Attack", "Hits", "Avg dmg", "Total dmg"));
+            for (int i = 0; i < TYPES.length; i++) {
+                if (hits[i] == 0) continue;
+                System.out.println(String.format("%-14s %10d %10.1f %12d",
+                        TYPES[i], hits[i], (double) damage[i] / hits[i], damage[i]));
+            }
+        }
+
+        private static double percent(long part, long total) {
+            return total == 0 ? 0 : 100.0 * part / total;
+        }
+    }
+
+    // ForkJoinTask is Serializable, but a MatchTask never leaves the pool it was forked in
+    private static class MatchTask extends RecursiveTask<Report> {
+        private static final long serialVersionUID = 1L;
+        private final int from, to;
+        private final String charA, charB;
+        private final boolean bots;
+        private final long seed;
+        private final transient FrameDataTable frameData;
+
+        MatchTask(int from, int to, String charA, String charB, boolean bots, long seed, FrameDataTable frameData) {
+            this.from = from;
+            this.to = to;
+            this.charA = charA;
+            this.charB = charB;
+            this.bots = bots;
+            this.seed = seed;
+            this.frameData = frameData;
+        }
+
+        @Override
+        protected Report compute() {
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                MatchTask left = new MatchTask(from, mid, charA, charB, bots, seed, frameData);
+                left.fork();
+                Report right = new MatchTask(mid, to, charA, charB, bots, seed, frameData).compute();
+                return right.merge(left.join());
+            }
+
+            Report report = new Report();
+            for (int i = from; i < to; i++) {
+                // Alternate sides so a side advantage doesn't show up as a character advantage
+                boolean aIsP1 = (i & 1) == 0;
+                long s1 = seed * 1_000_003L + 2L * i;
+                InputScript p1 = bots ? InputScript.bot(s1) : InputScript.random(s1);
+                InputScript p2 = bots ? InputScript.bot(s1 + 1) : InputScript.random(s1 + 1);
+
+                HeadlessMatch match = aIsP1
+                        ? new HeadlessMatch(charA, charB, p1, p2)
+                        : new HeadlessMatch(charB, charA, p1, p2);
+                match.setFrameData(frameData);
+                match.setHitListener((attacker, defender, attack, dealt) -> report.addHit(attack, dealt));
+                report.add(match.run(), aIsP1);
+            }
+            return report;
+        }
+    }
+
+    public static Report run(int matches, String charA, String charB, boolean bots, long seed, ForkJoinPool pool) {
+        return run(matches, charA, charB, bots, seed, FrameDataTable.DEFAULT, pool);
+    }
+
+    /** Same batch against modified frame data, e.g. {@code FrameDataTable.DEFAULT.with(...)}. */
+    public static Report run(int matches, String charA, String charB, boolean bots, long seed,
+                             FrameDataTable frameData, ForkJoinPool pool) {
+        return pool.invoke(new MatchTask(0, matches, charA, charB, bots, seed, frameData));
+    }
+
+    public static void main(String[] args) {
+        int matches = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        boolean bots = args.length <= 1 || !args[1].equalsIgnoreCase("random");
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1L;
+        String charA = args.length > 4 ? args[4].toUpperCase() : "RYU";
+        String charB = args.length > 5 ? args[5].toUpperCase() : "KEN";
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            Report report = run(matches, charA, charB, bots, seed, pool);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            report.print(charA, charB, seconds, threads);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package Sim;
+
+import Client.AudioSink;
+import Client.Fighter;
+import Client.FrameDataTable;
+import Client.NetworkClient.InputPacker;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Cost of the per-frame hit check in {@link Client.MatchSimulation}: both
+ * fighters' isAttacking() and canBeHit() pair, with P1 frozen in the active
+ * frames of an UPPER_KICK that reaches P2.
+ *
+ * Prints ns and heap bytes per check for a few rounds after a warmup, so the
+ * numbers settle after JIT compilation.
+ *
+ * Usage: {@code CollisionBenchmark [checks per round] [rounds]}
+ */
+public class CollisionBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+
+    private static int sink = 0;
+
+    // One frame of MatchSimulation.checkCombat without applying the hit
+    private static int check(Fighter p1, Fighter p2) {
+        int hits = 0;
+        if (p1.isAttacking() && p2.canBeHit(p1)) hits++;
+        if (p2.isAttacking() && p1.canBeHit(p2)) hits++;
+        return hits;
+    }
+
+    public static void main(String[] args) {
+        int checks = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        ScriptedInput input = new ScriptedInput();
+        Fighter p1 = new Fighter("RYU", 150, 270, "P1", true, input, AudioSink.SILENT, FrameDataTable.DEFAULT);
+        Fighter p2 = new Fighter("KEN", 190, 270, "P2", false, input, AudioSink.SILENT, FrameDataTable.DEFAULT);
+
+        input.set(InputPacker.HEAVY_KICK, (short) 0);
+        for (int frame = 0; frame < 60 && !p1.isInActiveFrames(); frame++) {
+            p1.tick();
+            p2.tick();
+        }
+        if (check(p1, p2) == 0) {
+            System.err.println("UPPER_KICK does not connect: " + p1.getCurrentAnimation());
+            System.exit(1);
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long self = Thread.currentThread().threadId();
+
+        for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+            long allocated = threads.getThreadAllocatedBytes(self);
+            long start = System.nanoTime();
+            for (int i = 0; i < checks; i++) {
+                sink += check(p1, p2);
+            }
+            long elapsed = System.nanoTime() - start;
+            allocated = threads.getThreadAllocatedBytes(self) - allocated;
+
+            if (round >= 0) {
+                System.out.println(String.format("round %d: %.2f ns/op, %.1f B/op",
+                        round + 1, (double) elapsed / checks, (double) allocated / checks));
+            }
+        }
+        System.out.println("(hits " + sink + ")");
+    }
+}
@@ -0,0 +1,147 @@
+package Sim;
+
+import Client.AudioSink;
+import Client.Fighter;
+import Client.FrameDataTable;
+import Client.MatchSimulation;
+
+/**
+ * Plays a full best-of-three match without JavaFX: no window, no sound and no
+ * wall clock. Each frame both scripts are asked for input and the match is
+ * advanced with {@link MatchSimulation#step}, exactly like the game loop does.
+ */
+public class HeadlessMatch {
+    // Drawn rounds award nobody, so cap the match in case both sides keep timing out
+    public static final int MAX_ROUNDS = 9;
+
+    /** Called after every simulated frame, e.g. to encode the state as it would be sent. */
+    public interface FrameListener {
+        void onFrame(int frame, Fighter player1, Fighter player2);
+    }
+
+    public static class Result {
+        public int winner;   // 1 or 2, 0 if nobody reached the rounds needed
+        public int p1Wins;
+        public int p2Wins;
+        public int rounds;
+        public long frames;
+        public final int[] roundFrames = new int[MAX_ROUNDS];
+
+        @Override
+        public String toString() {
+            return "winner=" + (winner == 0 ? "none" : "P" + winner) +
+                    " score=" + p1Wins + "-" + p2Wins +
+                    " rounds=" + rounds + " frames=" + frames;
+        }
+    }
+
+    private final String p1Character;
+    private final String p2Character;
+    private final InputScript p1Script;
+    private final InputScript p2Script;
+    private final AudioSink audio;
+    private final ScriptedInput input = new ScriptedInput();
+    private MatchSimulation.HitListener hitListener = null;
+    private FrameListener frameListener = null;
+    private FrameDataTable frameData = FrameDataTable.DEFAULT;
+
+    private Fighter player1;
+    private Fighter player2;
+
+    public HeadlessMatch(String p1Character, String p2Character, InputScript p1Script, InputScript p2Script) {
+        this(p1Character, p2Character, p1Script, p2Script, AudioSink.SILENT);
+    }
+
+    public HeadlessMatch(String p1Character, String p2Character, InputScript p1Script, InputScript p2Script,
+                         AudioSink audio) {
+        this.p1Character = p1Character;
+        this.p2Character = p2Character;
+        this.p1Script = p1Script;
+        this.p2Script = p2Script;
+        this.audio = audio;
+    }
+
+    public Result run() {
+        Result result = new Result();
+
+        while (result.p1Wins < MatchSimulation.ROUNDS_TO_WIN &&
+                result.p2Wins < MatchSimulation.ROUNDS_TO_WIN &&
+                result.rounds < MAX_ROUNDS) {
+            result.rounds++;
+            int roundWinner = playRound(result);
+            if (roundWinner == 1) result.p1Wins++;
+            if (roundWinner == 2) result.p2Wins++;
+        }
+
+        if (result.p1Wins >= MatchSimulation.ROUNDS_TO_WIN) result.winner = 1;
+        if (result.p2Wins >= MatchSimulation.ROUNDS_TO_WIN) result.winner = 2;
+        return result;
+    }
+
+    /** Returns 1 or 2 for the round winner, 0 for a draw. */
+    private int playRound(Result result) {
+        player1 = new Fighter(p1Character, 150, 270, "P1", true, input, audio, frameData);
+        player2 = new Fighter(p2Character, 550, 270, "P2", false, input, audio, frameData);
+        p1Script.reset();
+        p2Script.reset();
+
+        for (int frame = 0; frame < MatchSimulation.ROUND_FRAMES; frame++) {
+            input.set(p1Script.next(frame, player1, player2), p2Script.next(frame, player2, player1));
+            MatchSimulation.step(player1, player2, hitListener);
+            if (frameListener != null) frameListener.onFrame(frame, player1, player2);
+            result.frames++;
+            result.roundFrames[result.rounds - 1] = frame + 1;
+
+            if (player2.isDead()) return 1;
+            if (player1.isDead()) return 2;
+        }
+
+        // Time up: more health left wins
+        if (player1.getHealth() > player2.getHealth()) return 1;
+        if (player2.getHealth() > player1.getHealth()) return 2;
+        return 0;
+    }
+
+    public void setHitListener(MatchSimulation.HitListener hitListener) {
+        this.hitListener = hitListener;
+    }
+
+    public void setFrameListener(FrameListener frameListener) {
+        this.frameListener = frameListener;
+    }
+
+    public void setFrameData(FrameDataTable frameData) {
+        this.frameData = frameData;
+    }
+
+    public Fighter getPlayer1() {
+        return player1;
+    }
+
+    public Fighter getPlayer2() {
+        return player2;
+    }
+
+    /** Plays random-input matches and reports simulation throughput. */
+    public static void main(String[] args) {
+        int matches = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+
+        int[] wins = new int[3];
+        long frames = 0;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < matches; i++) {
+            HeadlessMatch match = new HeadlessMatch("RYU", "KEN",
+                    InputScript.random(seed + 2L * i), InputScript.random(seed + 2L * i + 1));
+            Result result = match.run();
+            wins[result.winner]++;
+            frames += result.frames;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(matches + " matches, " + frames + " frames in " + String.format("%.2f", seconds) + " s");
+        System.out.println(String.format("%.0f frames/s", frames / seconds));
+        System.out.println("P1 wins: " + wins[1] + ", P2 wins: " + wins[2] + ", undecided: " + wins[0]);
+    }
+}
@@ -0,0 +1,91 @@
+package Sim;
+
+import Client.Fighter;
+import Client.NetworkClient.InputPacker;
+
+import java.util.SplittableRandom;
+
+/**
+ * Supplies one player's packed input for each frame of a headless match.
+ * Scripts may look at both fighters, so simple bots are scripts too.
+ */
+public interface InputScript {
+    short next(long frame, Fighter self, Fighter opponent);
+
+    /** Called before each round; stateful scripts restart here. */
+    default void reset() { }
+
+    static InputScript idle() {
+        return (frame, self, opponent) -> 0;
+    }
+
+    /** Replays a recorded input sequence, then stands still. */
+    static InputScript replay(short[] inputs) {
+        return (frame, self, opponent) -> frame < inputs.length ? inputs[(int) frame] : 0;
+    }
+
+    /** Mashes random buttons, holding each combination for a few frames like a human would. */
+    static InputScript random(long seed) {
+        return new InputScript() {
+            private final SplittableRandom random = new SplittableRandom(seed);
+            private short current = 0;
+            private int holdFrames = 0;
+
+            @Override
+            public short next(long frame, Fighter self, Fighter opponent) {
+                if (holdFrames-- <= 0) {
+                    current = (short) random.nextInt(1 << 9);
+                    holdFrames = 1 + random.nextInt(20);
+                }
+                return current;
+            }
+
+            @Override
+            public void reset() {
+                current = 0;
+                holdFrames = 0;
+            }
+        };
+    }
+
+    /** Walks in, then mixes attacks and blocks at close range; the seed varies its choices. */
+    static InputScript bot(long seed) {
+        short[] attacks = {
+                InputPacker.LIGHT_PUNCH, InputPacker.HEAVY_PUNCH,
+                InputPacker.LIGHT_KICK, InputPacker.HEAVY_KICK,
+                (short) (InputPacker.DOWN | InputPacker.HEAVY_PUNCH)
+        };
+
+        return new InputScript() {
+            private final SplittableRandom random = new SplittableRandom(seed);
+            private short current = 0;
+            private int holdFrames = 0;
+
+            @Override
+            public short next(long frame, Fighter self, Fighter opponent) {
+                if (holdFrames-- > 0) return current;
+
+                float distance = opponent.getX() - self.getX();
+                short toward = distance > 0 ? InputPacker.RIGHT : InputPacker.LEFT;
+
+                if (Math.abs(distance) > 70) {
+                    current = random.nextInt(50) == 0 ? (short) (toward | InputPacker.UP) : toward;
+                    holdFrames = 4;
+                } else if (random.nextInt(5) == 0) {
+                    current = InputPacker.BLOCK;
+                    holdFrames = 6 + random.nextInt(10);
+                } else {
+                    current = attacks[random.nextInt(attacks.length)];
+                    holdFrames = 2 + random.nextInt(6);
+                }
+                return current;
+            }
+
+            @Override
+            public void reset() {
+                current = 0;
+                holdFrames = 0;
+            }
+        };
+    }
+}
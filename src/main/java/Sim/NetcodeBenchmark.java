@@ -0,0 +1,233 @@
+package Sim;
+
+import Client.AudioSink;
+import Client.DelaySession;
+import Client.Fighter;
+import Client.FrameDataTable;
+import Client.InputHistory;
+import Client.MatchSimulation;
+import Client.NetplaySession;
+import Client.RollbackSession;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * Rollback against delay-based netcode over a simulated link: two peers
+ * play bot input through their real {@link NetplaySession} and
+ * {@link InputHistory}, one tick per frame, exchanging INPUT packets framed
+ * as NetworkClient frames them. The link holds each packet for the one-way
+ * latency plus up to the jitter, in frames, and drops a share of them.
+ *
+ * Reports ticks taken, stalls, rollbacks, frames simulated per frame played
+ * and whether both peers ended with the same state on every frame.
+ *
+ * Usage: {@code NetcodeBenchmark [rollback|delay] [latency] [jitter] [loss %] [frames] [input delay]};
+ * without arguments it runs both modes at 2, 4+-1 and 6+-2 frames of latency.
+ */
+public class NetcodeBenchmark {
+    private static final int MAX_INPUTS_PER_PACKET = 32;
+    // Frames past the measured ones, so every correction of a measured frame has landed
+    private static final int TAIL_FRAMES = 30;
+
+    private final boolean rollback;
+    private final int latency;
+    private final int jitter;
+    private final int lossPercent;
+    private final int frames;
+    private final Random link = new Random(7);
+    private final List<InFlight> inFlight = new ArrayList<>();
+
+    private record InFlight(long arrival, Peer to, ByteBuffer packet) {}
+
+    private NetcodeBenchmark(boolean rollback, int latency, int jitter, int lossPercent, int frames) {
+        this.rollback = rollback;
+        this.latency = latency;
+        this.jitter = jitter;
+        this.lossPercent = lossPercent;
+        this.frames = frames;
+    }
+
+    // One client: its fighters, its session and both input histories
+    private final class Peer implements NetplaySession.Simulation, NetplaySession.InputSender {
+        final ScriptedInput input = new ScriptedInput();
+        final Fighter p1 = new Fighter("RYU", 150, 270, "P1", true, input, AudioSink.SILENT, FrameDataTable.DEFAULT);
+        final Fighter p2 = new Fighter("KEN", 550, 270, "P2", false, input, AudioSink.SILENT, FrameDataTable.DEFAULT);
+        final Fighter.State[] p1Saved = states();
+        final Fighter.State[] p2Saved = states();
+        final long[] savedFrame = new long[RollbackSession.HISTORY];
+        final InputHistory local = new InputHistory();
+        final InputHistory remote = new InputHistory();
+        final NetplaySession session;
+        final InputScript script;
+        final boolean isP1;
+        final long[] stateAfter = new long[frames + 4 * TAIL_FRAMES];
+        final Fighter.State scratch = new Fighter.State();
+        final ByteBuffer bytes = ByteBuffer.allocate(2 * Fighter.State.SIZE);
+        final CRC32 crc = new CRC32();
+        long frame = 0;
+        long simulated = 0;
+
+        Peer(boolean isP1, long seed, int inputDelay) {
+            this.isP1 = isP1;
+            this.script = InputScript.bot(seed);
+            if (rollback) {
+                session = new RollbackSession(this, this, isP1);
+            } else {
+                DelaySession delay = new DelaySession(this, this, isP1);
+                delay.setInputDelay(inputDelay);
+                session = delay;
+            }
+        }
+
+        boolean tick() {
+            short bits = isP1 ? script.next(frame, p1, p2) : script.next(frame, p2, p1);
+            return session.advance(bits);
+        }
+
+        @Override
+        public void sendInput(long frame, short inputBits) {
+            local.record(frame, inputBits);
+        }
+
+        @Override
+        public void saveState(int slot) {
+            p1.saveState(p1Saved[slot]);
+            p2.saveState(p2Saved[slot]);
+            savedFrame[slot] = frame;
+        }
+
+        @Override
+        public void loadState(int slot) {
+            p1.loadState(p1Saved[slot]);
+            p2.loadState(p2Saved[slot]);
+            frame = savedFrame[slot];
+        }
+
+        @Override
+        public void advanceFrame(short p1Input, short p2Input, boolean resimulating) {
+            input.set(p1Input, p2Input);
+            MatchSimulation.step(p1, p2);
+            simulated++;
+            if (frame < stateAfter.length) stateAfter[(int) frame] = hash();
+            frame++;
+        }
+
+        private long hash() {
+            bytes.clear();
+            p1.saveState(scratch);
+            scratch.write(bytes);
+            p2.saveState(scratch);
+            scratch.write(bytes);
+            crc.reset();
+            crc.update(bytes.array(), 0, bytes.position());
+            return crc.getValue();
+        }
+
+        // [newest][ack][count][bits newest first]
+        ByteBuffer packet() {
+            long newest = local.getNewestFrame();
+            long first = local.firstUnacked();
+            int count = 0;
+            if (first >= 0) {
+                newest = Math.min(newest, first + MAX_INPUTS_PER_PACKET - 1);
+                count = (int) (newest - first + 1);
+            }
+            ByteBuffer bb = ByteBuffer.allocate(17 + 2 * count);
+            bb.putLong(newest);
+            bb.putLong(remote.getContiguousFrame());
+            bb.put((byte) count);
+            for (int i = 0; i < count; i++) {
+                bb.putShort(local.get(newest - i));
+            }
+            return bb.flip();
+        }
+
+        void deliver(ByteBuffer bb) {
+            long newest = bb.getLong();
+            local.acknowledge(bb.getLong());
+            int count = bb.get();
+            int base = bb.position();
+            for (int i = count - 1; i >= 0; i--) {
+                long f = newest - i;
+                short bits = bb.getShort(base + i * 2);
+                if (remote.isMissing(f) && session.addRemoteInput(f, bits)) {
+                    remote.receive(f, bits);
+                }
+            }
+        }
+    }
+
+    private static Fighter.State[] states() {
+        Fighter.State[] states = new Fighter.State[RollbackSession.HISTORY];
+        for (int i = 0; i < states.length; i++) states[i] = new Fighter.State();
+        return states;
+    }
+
+    private void send(long tick, Peer from, Peer to) {
+        ByteBuffer packet = from.packet();
+        if (link.nextInt(100) < lossPercent) return;
+        int delay = latency + (jitter > 0 ? link.nextInt(2 * jitter + 1) - jitter : 0);
+        inFlight.add(new InFlight(tick + Math.max(0, delay), to, packet));
+    }
+
+    private String run(int inputDelay) {
+        Peer a = new Peer(true, 1, inputDelay);
+        Peer b = new Peer(false, 2, inputDelay);
+        long end = frames + TAIL_FRAMES;
+        long tick = 0;
+        long stalls = 0;
+
+        for (; a.session.getCurrentFrame() < end || b.session.getCurrentFrame() < end; tick++) {
+            // What arrives by this tick is in before either peer steps
+            for (int i = inFlight.size() - 1; i >= 0; i--) {
+                InFlight packet = inFlight.get(i);
+                if (packet.arrival() <= tick) {
+                    inFlight.remove(i);
+                    packet.to().deliver(packet.packet());
+                }
+            }
+            if (a.session.getCurrentFrame() < end && !a.tick()) stalls++;
+            if (b.session.getCurrentFrame() < end && !b.tick()) stalls++;
+            send(tick, a, b);
+            send(tick, b, a);
+            if (tick > 20L * end) return "no progress after " + tick + " ticks";
+        }
+        a.session.applyCorrections();
+        b.session.applyCorrections();
+
+        int mismatches = 0;
+        for (int f = 0; f < frames; f++) {
+            if (a.stateAfter[f] != b.stateAfter[f]) mismatches++;
+        }
+        int rollbacks = rollback ? ((RollbackSession) a.session).getRollbackCount() + ((RollbackSession) b.session).getRollbackCount() : 0;
+        double simulatedPerFrame = (a.simulated + b.simulated) / (2.0 * end);
+        return String.format("%-8s latency %d+-%d loss %d%%%s: %d frames in %d ticks, stalls %d, rollbacks %d, simulated %.2fx, %s",
+                rollback ? "rollback" : "delay", latency, jitter, lossPercent,
+                rollback ? "" : " delay " + inputDelay,
+                end, tick, stalls, rollbacks, simulatedPerFrame,
+                mismatches == 0 ? "states match" : mismatches + " frames differ");
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            int[][] links = {{2, 0}, {4, 1}, {6, 2}};
+            for (int[] link : links) {
+                System.out.println(new NetcodeBenchmark(true, link[0], link[1], 0, 3600).run(0));
+                System.out.println(new NetcodeBenchmark(false, link[0], link[1], 0, 3600).run(link[0]));
+            }
+            return;
+        }
+
+        boolean rollback = !args[0].equals("delay");
+        int latency = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int jitter = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int loss = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        int frames = args.length > 4 ? Integer.parseInt(args[4]) : 3600;
+        int inputDelay = args.length > 5 ? Integer.parseInt(args[5]) : latency;
+        System.out.println(new NetcodeBenchmark(rollback, latency, jitter, loss, frames).run(inputDelay));
+    }
+}
@@ -0,0 +1,23 @@
+package Sim;
+
+import Client.FighterInput;
+import Client.PlayerSlot;
+
+/**
+ * {@link FighterInput} backed by one packed input word per player, using the
+ * same bit layout as network input packets.
+ */
+public class ScriptedInput implements FighterInput {
+    private short p1Bits = 0;
+    private short p2Bits = 0;
+
+    public void set(short p1Bits, short p2Bits) {
+        this.p1Bits = p1Bits;
+        this.p2Bits = p2Bits;
+    }
+
+    @Override
+    public short getInputBits(PlayerSlot player) {
+        return player == PlayerSlot.P1 ? p1Bits : p2Bits;
+    }
+}
@@ -0,0 +1,142 @@
+package Sim;
+
+import Client.BitReader;
+import Client.BitWriter;
+import Client.Fighter;
+import Client.MatchSimulation;
+import Client.StateSnapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * STATE_UPDATE bandwidth per match: plays bot matches headless and encodes
+ * each fighter's state every fifth frame, as the game loop sends it, both as
+ * a delta-encoded {@link StateSnapshot} and in the old
+ * [x float][y float][health int][animation string][frame int] layout.
+ *
+ * The server's ack arrives with every 250 ms pong and names the newest
+ * update it decoded, which becomes the next baseline. Every update is also
+ * decoded the way the server does it and compared with what was sent.
+ *
+ * Usage: {@code StateBandwidthBenchmark [matches] [seed]}
+ */
+public class StateBandwidthBenchmark {
+    private static final int STATE_EVERY_FRAMES = 5;                        // as GameSceneController
+    private static final int ACK_EVERY_FRAMES = MatchSimulation.SIM_HZ / 4; // PONG every 250 ms
+    private static final int UDP_IP_HEADER = 28;
+    private static final int OLD_HEADER = 4;      // [type][room u16][slot], a datagram per update
+    private static final int BATCHED_HEADER = 3;  // [len u16][type] inside the frame's datagram
+    private static final int MASK = StateSnapshot.WINDOW - 1;
+
+    // One client's updates for its fighter and the server's end of them
+    private static final class Stream {
+        final StateSnapshot[] sent = ring();
+        final StateSnapshot[] received = ring();
+        final BitWriter writer = new BitWriter();
+        final BitReader reader = new BitReader();
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+        int seq = 0;
+        int acked = -1;
+        int newestReceived = -1;
+        long updates, oldBytes, newBytes, mismatches;
+
+        private static StateSnapshot[] ring() {
+            StateSnapshot[] ring = new StateSnapshot[StateSnapshot.WINDOW];
+            for (int i = 0; i < ring.length; i++) ring[i] = new StateSnapshot();
+            return ring;
+        }
+
+        void send(Fighter fighter) {
+            String animation = fighter.getCurrentAnimation().toString();
+            oldBytes += 4 + 4 + 4 + 2 + animation.getBytes(StandardCharsets.UTF_8).length + 4;
+
+            int s = seq;
+            seq = (seq + 1) & StateSnapshot.SEQ_MASK;
+            StateSnapshot snapshot = sent[s & MASK];
+            snapshot.set(fighter.getX(), fighter.getY(), fighter.getHealth(),
+                    fighter.getCurrentAnimation(), fighter.getCurrentFrameIndex());
+            snapshot.seq = s;
+
+            StateSnapshot base = null;
+            if (acked >= 0) {
+                StateSnapshot candidate = sent[acked & MASK];
+                if (candidate.seq == acked && candidate != snapshot) base = candidate;
+            }
+            buffer.clear();
+            snapshot.write(writer.wrap(buffer), base);
+            writer.flush();
+            newBytes += buffer.position();
+            updates++;
+
+            buffer.flip();
+            if (!receive(snapshot)) mismatches++;
+        }
+
+        private boolean receive(StateSnapshot expected) {
+            reader.wrap(buffer);
+            int s = StateSnapshot.readSeq(reader);
+            int distance = StateSnapshot.readBaseDistance(reader);
+            StateSnapshot base = null;
+            if (distance != 0) {
+                base = received[(s - distance) & MASK];
+                if (base.seq != ((s - distance) & StateSnapshot.SEQ_MASK)) return false;
+            }
+            StateSnapshot decoded = received[s & MASK];
+            decoded.readFields(reader, base);
+            decoded.seq = s;
+            newestReceived = s;
+            return decoded.x == expected.x && decoded.y == expected.y && decoded.health == expected.health
+                    && decoded.animation == expected.animation && decoded.frameIndex == expected.frameIndex;
+        }
+
+        void ack() {
+            acked = newestReceived;
+        }
+
+        void add(Stream other) {
+            updates += other.updates;
+            oldBytes += other.oldBytes;
+            newBytes += other.newBytes;
+            mismatches += other.mismatches;
+        }
+    }
+
+    public static void main(String[] args) {
+        int matches = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+
+        Stream total = new Stream();
+        long frames = 0;
+        for (int i = 0; i < matches; i++) {
+            Stream p1 = new Stream();
+            Stream p2 = new Stream();
+            HeadlessMatch match = new HeadlessMatch("RYU", "KEN",
+                    InputScript.bot(seed + 2L * i), InputScript.bot(seed + 2L * i + 1));
+            match.setFrameListener((frame, player1, player2) -> {
+                if (frame % STATE_EVERY_FRAMES == 0) {
+                    p1.send(player1);
+                    p2.send(player2);
+                }
+                if (frame % ACK_EVERY_FRAMES == 0) {
+                    p1.ack();
+                    p2.ack();
+                }
+            });
+            frames += match.run().frames;
+            total.add(p1);
+            total.add(p2);
+        }
+
+        double seconds = (double) frames / MatchSimulation.SIM_HZ;
+        System.out.println(String.format("%d matches, %.0f s of play, %d updates, %d decode mismatches",
+                matches, seconds, total.updates, total.mismatches));
+        System.out.println(String.format("payload per update:     old %.2f B, new %.2f B",
+                (double) total.oldBytes / total.updates, (double) total.newBytes / total.updates));
+        System.out.println(String.format("payload per match:      old %.0f B/s, new %.0f B/s",
+                total.oldBytes / seconds, total.newBytes / seconds));
+        System.out.println(String.format("as sent per match:      old %.0f B/s (own datagram), new %.0f B/s (batched with the frame's INPUT)",
+                (total.oldBytes + total.updates * (double) (OLD_HEADER + UDP_IP_HEADER)) / seconds,
+                (total.newBytes + total.updates * (double) BATCHED_HEADER) / seconds));
+    }
+}
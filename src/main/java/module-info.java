@@ -4,6 +4,8 @@ module com.example.game {
     requires java.sql;
     requires java.desktop;
     requires javafx.media;
+    requires jdk.httpserver;
+    requires jdk.management;
 
 
     opens Client to javafx.graphics,javafx.fxml,javafx.base;
@@ -0,0 +1,111 @@
+package Client;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InputHistoryTest {
+    private static final int FRAMES = 5000;
+    private static final int MAX_INPUTS_PER_PACKET = 32;
+
+    /** Over a channel dropping 10% of packets, every frame arrives exactly once with its bits. */
+    @Test
+    void lossyChannelDeliversEveryFrameOnce() {
+        Random rng = new Random(14);
+        InputHistory senderLocal = new InputHistory();
+        InputHistory senderRemote = new InputHistory();   // never filled: the receiver sends no inputs back
+        InputHistory receiverLocal = new InputHistory();
+        InputHistory receiverRemote = new InputHistory();
+
+        short[] sent = new short[FRAMES];
+        int[] deliveries = new int[FRAMES];
+        short[] received = new short[FRAMES];
+
+        // Keep sending past the last frame until the tail is acknowledged too
+        for (int tick = 0; tick < FRAMES || senderLocal.firstUnacked() >= 0; tick++) {
+            assertTrue(tick < 2 * FRAMES, "inputs stopped getting through");
+            if (tick < FRAMES) {
+                sent[tick] = (short) rng.nextInt(1 << 9);
+                senderLocal.record(tick, sent[tick]);
+            }
+
+            ByteBuffer input = packet(senderLocal, senderRemote);
+            if (rng.nextInt(10) != 0) {
+                long newest = input.getLong();
+                input.getLong();
+                int count = input.get();
+                int base = input.position();
+                for (int i = count - 1; i >= 0; i--) {
+                    long frame = newest - i;
+                    short bits = input.getShort(base + i * 2);
+                    if (receiverRemote.receive(frame, bits)) {
+                        deliveries[(int) frame]++;
+                        received[(int) frame] = bits;
+                    }
+                }
+            }
+
+            ByteBuffer ack = packet(receiverLocal, receiverRemote);
+            if (rng.nextInt(10) != 0) {
+                ack.getLong();
+                senderLocal.acknowledge(ack.getLong());
+            }
+        }
+
+        for (int f = 0; f < FRAMES; f++) {
+            assertEquals(1, deliveries[f], "deliveries of frame " + f);
+            assertEquals(sent[f], received[f], "bits of frame " + f);
+        }
+        assertEquals(FRAMES - 1, receiverRemote.getContiguousFrame());
+    }
+
+    @Test
+    void duplicatesAndOldFramesAreRefused() {
+        InputHistory remote = new InputHistory();
+        assertTrue(remote.receive(1, (short) 3));
+        assertFalse(remote.receive(1, (short) 3));
+        assertEquals(-1, remote.getContiguousFrame());
+        assertTrue(remote.receive(0, (short) 2));
+        assertEquals(1, remote.getContiguousFrame());
+        assertFalse(remote.isMissing(0));
+        assertFalse(remote.receive(-1, (short) 1));
+    }
+
+    @Test
+    void firstUnackedFollowsAcknowledgements() {
+        InputHistory local = new InputHistory();
+        assertEquals(-1, local.firstUnacked());
+        for (int f = 0; f < 10; f++) local.record(f, (short) f);
+        assertEquals(0, local.firstUnacked());
+        local.acknowledge(6);
+        assertEquals(7, local.firstUnacked());
+        // Stale and future acks are ignored
+        local.acknowledge(3);
+        local.acknowledge(50);
+        assertEquals(7, local.firstUnacked());
+        local.acknowledge(9);
+        assertEquals(-1, local.firstUnacked());
+    }
+
+    // [newest][ack][count][bits newest first], as NetworkClient.sendUnackedInputs frames it
+    private static ByteBuffer packet(InputHistory local, InputHistory remote) {
+        long newest = local.getNewestFrame();
+        long first = local.firstUnacked();
+        int count = 0;
+        if (first >= 0) {
+            newest = Math.min(newest, first + MAX_INPUTS_PER_PACKET - 1);
+            count = (int) (newest - first + 1);
+        }
+        ByteBuffer bb = ByteBuffer.allocate(17 + 2 * count);
+        bb.putLong(newest);
+        bb.putLong(remote.getContiguousFrame());
+        bb.put((byte) count);
+        for (int i = 0; i < count; i++) {
+            bb.putShort(local.get(newest - i));
+        }
+        return bb.flip();
+    }
+}
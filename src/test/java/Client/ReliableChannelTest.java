@@ -0,0 +1,176 @@
+package Client;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReliableChannelTest {
+    private static final long MS = 1_000_000L;
+
+    // What the sender put on the wire, in order
+    private record Sent(int seq, int ack, int ackBits, byte[] message) {
+    }
+
+    private static final class Wire implements ReliableChannel.Transmitter {
+        final List<Sent> sent = new ArrayList<>();
+
+        @Override
+        public void transmit(int seq, int ack, int ackBits, byte[] message) {
+            sent.add(new Sent(seq, ack, ackBits, message));
+        }
+
+        List<Integer> seqs() {
+            List<Integer> seqs = new ArrayList<>();
+            for (Sent s : sent) seqs.add(s.seq);
+            return seqs;
+        }
+    }
+
+    private static byte[] message(int n) {
+        return ByteBuffer.allocate(4).putInt(n).array();
+    }
+
+    private static int number(byte[] message) {
+        return ByteBuffer.wrap(message).getInt();
+    }
+
+    /** Past seq 65535 the sender starts again at 0 and the receiver keeps delivering and acking. */
+    @Test
+    void sequenceWrapsAround() {
+        ReliableChannel sender = new ReliableChannel();
+        ReliableChannel receiver = new ReliableChannel();
+        Wire wire = new Wire();
+        int total = ReliableChannel.SEQ_MASK + 1 + 100;
+
+        for (int i = 0; i < total; i++) {
+            sender.send(message(i), 0, wire);
+            Sent s = wire.sent.get(wire.sent.size() - 1);
+            assertEquals(i & ReliableChannel.SEQ_MASK, s.seq);
+            assertTrue(receiver.receive(s.seq, s.message), "seq " + s.seq + " refused");
+            assertEquals(i, number(receiver.poll()));
+            sender.acknowledge(receiver.getAck(), receiver.getAckBits(), 0);
+            assertFalse(sender.hasPending(), "seq " + s.seq + " not acked");
+            wire.sent.clear();
+        }
+        assertEquals((total - 1) & ReliableChannel.SEQ_MASK, receiver.getAck());
+    }
+
+    /** An ack just past the wrap covers the messages just before it. */
+    @Test
+    void ackAfterTheWrapCoversSeqsBeforeIt() {
+        ReliableChannel sender = new ReliableChannel();
+        ReliableChannel receiver = new ReliableChannel();
+        Wire wire = new Wire();
+        // Walk both ends up to seq 65533
+        for (int i = 0; i < ReliableChannel.SEQ_MASK - 2; i++) {
+            sender.send(message(i), 0, wire);
+            receiver.receive(i, message(i));
+            receiver.poll();
+            sender.acknowledge(receiver.getAck(), receiver.getAckBits(), 0);
+        }
+        wire.sent.clear();
+
+        for (int i = 0; i < 4; i++) sender.send(message(i), 0, wire);
+        assertEquals(List.of(65533, 65534, 65535, 0), wire.seqs());
+        sender.acknowledge(0, 0, 0);
+        assertFalse(sender.hasPending());
+    }
+
+    /** The ack bits drop messages the peer buffered past a gap; only the gaps are resent. */
+    @Test
+    void ackBitsMarkMessagesPastAGapDelivered() {
+        ReliableChannel sender = new ReliableChannel();
+        ReliableChannel receiver = new ReliableChannel();
+        Wire wire = new Wire();
+        for (int i = 0; i < 5; i++) sender.send(message(i), 0, wire);
+
+        // 1 and 3 are lost
+        for (int seq : new int[]{0, 2, 4}) receiver.receive(seq, message(seq));
+        assertEquals(0, number(receiver.poll()));
+        assertNull(receiver.poll());
+        assertEquals(0, receiver.getAck());
+        assertEquals(0b1010, receiver.getAckBits());   // seqs 2 and 4
+
+        sender.acknowledge(receiver.getAck(), receiver.getAckBits(), 0);
+        assertEquals(2, sender.getPendingCount());
+        wire.sent.clear();
+        sender.retransmit(250 * MS, wire);
+        assertEquals(List.of(1, 3), wire.seqs());
+
+        // A cumulative ack covers everything up to it, whatever the bits say
+        sender.acknowledge(3, 0, 0);
+        assertFalse(sender.hasPending());
+    }
+
+    @Test
+    void duplicatesAreDeliveredOnce() {
+        ReliableChannel receiver = new ReliableChannel();
+        assertTrue(receiver.receive(0, message(0)));
+        assertFalse(receiver.receive(0, message(0)), "duplicate while buffered");
+        assertTrue(receiver.receive(2, message(2)));
+        assertFalse(receiver.receive(2, message(2)), "duplicate past a gap");
+
+        assertEquals(0, number(receiver.poll()));
+        assertNull(receiver.poll());
+        assertFalse(receiver.receive(0, message(0)), "duplicate after delivery");
+
+        assertTrue(receiver.receive(1, message(1)));
+        assertEquals(1, number(receiver.poll()));
+        assertEquals(2, number(receiver.poll()));
+        assertNull(receiver.poll());
+        assertFalse(receiver.receive(1, message(1)));
+        assertFalse(receiver.receive(2, message(2)));
+        assertEquals(2, receiver.getAck());
+    }
+
+    @Test
+    void reorderedMessagesAreDeliveredInOrder() {
+        ReliableChannel receiver = new ReliableChannel();
+        List<Integer> delivered = new ArrayList<>();
+        for (int seq : new int[]{3, 1, 4, 2, 0, 6, 5}) {
+            assertTrue(receiver.receive(seq, message(seq)));
+            for (byte[] m = receiver.poll(); m != null; m = receiver.poll()) delivered.add(number(m));
+            if (seq != 0 && delivered.isEmpty()) assertEquals(ReliableChannel.SEQ_MASK, receiver.getAck());
+        }
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6), delivered);
+
+        // Too far ahead to buffer: refused, so the sender resends it later
+        assertFalse(receiver.receive(7 + ReliableChannel.WINDOW, message(0)));
+    }
+
+    /** Resent on a doubling timeout for as long as it goes unacked, and not after. */
+    @Test
+    void retransmitsUntilAcked() {
+        ReliableChannel sender = new ReliableChannel();
+        Wire wire = new Wire();
+        sender.send(message(7), 0, wire);
+        assertEquals(1, wire.sent.size());
+
+        sender.retransmit(249 * MS, wire);
+        assertEquals(1, wire.sent.size(), "resent before its timeout");
+
+        // Due at 250 ms, then 500, 1000 and 2000 ms after each resend
+        long[] due = {250, 750, 1750, 3750};
+        for (long at : due) {
+            int before = wire.sent.size();
+            sender.retransmit(at * MS - 1, wire);
+            assertEquals(before, wire.sent.size(), "resent before " + at + " ms");
+            sender.retransmit(at * MS, wire);
+            assertEquals(before + 1, wire.sent.size(), "not resent at " + at + " ms");
+            assertEquals(0, wire.sent.get(before).seq);
+            assertEquals(7, number(wire.sent.get(before).message));
+        }
+        assertEquals(due.length, sender.getRetransmitCount());
+
+        sender.acknowledge(0, 0, 4000 * MS);
+        assertFalse(sender.hasPending());
+        assertEquals(-1, sender.nanosUntilRetransmit(4000 * MS));
+        int sent = wire.sent.size();
+        sender.retransmit(60_000 * MS, wire);
+        assertEquals(sent, wire.sent.size(), "resent after the ack");
+    }
+}
@@ -0,0 +1,147 @@
+package Client;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollbackSessionTest {
+    private static final int FRAMES = 1200;
+    private static final int MAX_INPUTS_PER_PACKET = 32;
+
+    /** Two sessions over a lossy, reordering link end up with the same state for every frame. */
+    @Test
+    void lossyDelayedLinkConverges() {
+        Random rng = new Random(4);
+        Peer p1 = new Peer(true, 11);
+        Peer p2 = new Peer(false, 12);
+        List<InFlight> link = new ArrayList<>();
+
+        for (int tick = 0; p1.session.getCurrentFrame() < FRAMES + 60 || p2.session.getCurrentFrame() < FRAMES + 60; tick++) {
+            // Loss and delay only while the compared frames are played; the tail lets the last corrections land
+            boolean lossy = tick < FRAMES;
+            p1.tick();
+            p2.tick();
+            send(link, rng, lossy, tick, p1, p2);
+            send(link, rng, lossy, tick, p2, p1);
+            for (int i = link.size() - 1; i >= 0; i--) {
+                InFlight packet = link.get(i);
+                if (packet.arrival <= tick) {
+                    link.remove(i);
+                    packet.to.deliver(packet.bytes);
+                }
+            }
+            assertTrue(tick < 20 * FRAMES, "sessions stopped advancing");
+        }
+
+        assertTrue(p1.session.getRollbackCount() > 0, "the link never forced a rollback");
+        for (int f = 0; f < FRAMES; f++) {
+            assertEquals(p1.stateAfter[f], p2.stateAfter[f], "state after frame " + f);
+        }
+    }
+
+    @Test
+    void frameBeyondWindowIsRefusedUntilItFits() {
+        Peer peer = new Peer(true, 1);
+        assertFalse(peer.session.addRemoteInput(RollbackSession.HISTORY, (short) 5));
+        for (int f = 0; f < RollbackSession.HISTORY; f++) {
+            assertTrue(peer.session.addRemoteInput(f, (short) 1));
+        }
+        assertTrue(peer.session.addRemoteInput(RollbackSession.HISTORY, (short) 5));
+        // Already confirmed, so a repeat is taken and ignored
+        assertTrue(peer.session.addRemoteInput(3, (short) 9));
+    }
+
+    private static void send(List<InFlight> link, Random rng, boolean lossy, int tick, Peer from, Peer to) {
+        ByteBuffer bytes = from.packet();
+        if (lossy && rng.nextInt(10) == 0) return;
+        int delay = lossy ? rng.nextInt(4) : 0;
+        link.add(new InFlight(tick + delay, to, bytes));
+    }
+
+    private record InFlight(int arrival, Peer to, ByteBuffer bytes) {}
+
+    // One client: its histories framed the way NetworkClient frames them, and a toy simulation
+    private static class Peer implements NetplaySession.Simulation, NetplaySession.InputSender {
+        final InputHistory local = new InputHistory();
+        final InputHistory remote = new InputHistory();
+        final RollbackSession session;
+        final Random script;
+        final long[] stateAfter = new long[4 * FRAMES];
+        final long[] savedState = new long[RollbackSession.HISTORY];
+        final long[] savedFrame = new long[RollbackSession.HISTORY];
+        long state = 17;
+        long frame = 0;
+        short input = 0;
+
+        Peer(boolean isP1, long seed) {
+            session = new RollbackSession(this, this, isP1);
+            script = new Random(seed);
+        }
+
+        void tick() {
+            if (script.nextInt(8) == 0) input = (short) script.nextInt(512);
+            session.advance(input);
+        }
+
+        @Override
+        public void sendInput(long frame, short inputBits) {
+            local.record(frame, inputBits);
+        }
+
+        // [newest][ack][count][bits newest first]
+        ByteBuffer packet() {
+            long newest = local.getNewestFrame();
+            long first = local.firstUnacked();
+            int count = 0;
+            if (first >= 0) {
+                newest = Math.min(newest, first + MAX_INPUTS_PER_PACKET - 1);
+                count = (int) (newest - first + 1);
+            }
+            ByteBuffer bb = ByteBuffer.allocate(17 + 2 * count);
+            bb.putLong(newest);
+            bb.putLong(remote.getContiguousFrame());
+            bb.put((byte) count);
+            for (int i = 0; i < count; i++) {
+                bb.putShort(local.get(newest - i));
+            }
+            return bb.flip();
+        }
+
+        void deliver(ByteBuffer bb) {
+            long newest = bb.getLong();
+            local.acknowledge(bb.getLong());
+            int count = bb.get();
+            int base = bb.position();
+            for (int i = count - 1; i >= 0; i--) {
+                long f = newest - i;
+                short bits = bb.getShort(base + i * 2);
+                if (remote.isMissing(f) && session.addRemoteInput(f, bits)) {
+                    remote.receive(f, bits);
+                }
+            }
+        }
+
+        @Override
+        public void saveState(int slot) {
+            savedState[slot] = state;
+            savedFrame[slot] = frame;
+        }
+
+        @Override
+        public void loadState(int slot) {
+            state = savedState[slot];
+            frame = savedFrame[slot];
+        }
+
+        @Override
+        public void advanceFrame(short p1Input, short p2Input, boolean resimulating) {
+            state = state * 1_000_003 + ((long) p1Input << 16 | p2Input);
+            stateAfter[(int) frame++] = state;
+        }
+    }
+}
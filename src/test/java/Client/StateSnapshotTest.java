@@ -0,0 +1,163 @@
+package Client;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateSnapshotTest {
+    private final ByteBuffer buffer = ByteBuffer.allocate(64);
+    private final BitWriter writer = new BitWriter();
+    private final BitReader reader = new BitReader();
+
+    @Test
+    void bitsRoundTripAtEveryWidth() {
+        Random rng = new Random(18);
+        int[] values = new int[500];
+        int[] widths = new int[500];
+        ByteBuffer bb = ByteBuffer.allocate(4 * values.length);
+        writer.wrap(bb);
+        for (int i = 0; i < values.length; i++) {
+            widths[i] = 1 + rng.nextInt(32);
+            values[i] = (int) (rng.nextLong() & ((1L << widths[i]) - 1));
+            writer.write(values[i], widths[i]);
+        }
+        writer.flush();
+
+        reader.wrap(bb.flip());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], reader.read(widths[i]), "value " + i + " of " + widths[i] + " bits");
+        }
+    }
+
+    @Test
+    void signedValuesRoundTrip() {
+        writer.wrap(buffer);
+        writer.write(-64, 7);
+        writer.write(63, 7);
+        writer.write(-1, 7);
+        writer.writeBoolean(true);
+        writer.flush();
+
+        reader.wrap(buffer.flip());
+        assertEquals(-64, reader.readSigned(7));
+        assertEquals(63, reader.readSigned(7));
+        assertEquals(-1, reader.readSigned(7));
+        assertTrue(reader.readBoolean());
+        assertTrue(BitWriter.fitsSigned(-64, 7));
+        assertFalse(BitWriter.fitsSigned(64, 7));
+    }
+
+    @Test
+    void fullSnapshotRoundTrips() {
+        StateSnapshot sent = snapshot(5, 123.25f, 270f, 987, AnimationStateMachine.AnimationType.UPPER_KICK, 7);
+        StateSnapshot got = roundTrip(sent, null, null);
+        assertSameState(sent, got);
+    }
+
+    @Test
+    void smallMoveIsDeltaEncoded() {
+        StateSnapshot base = snapshot(10, 200f, 270f, 1000, AnimationStateMachine.AnimationType.IDLE, 0);
+        StateSnapshot sent = snapshot(11, 203.5f, 268.75f, 1000, AnimationStateMachine.AnimationType.IDLE, 1);
+        int full = encodedSize(sent, null);
+        int delta = encodedSize(sent, base);
+        assertTrue(delta < full, "delta " + delta + " B, full " + full + " B");
+        assertSameState(sent, roundTrip(sent, base, base));
+    }
+
+    @Test
+    void unchangedStateCostsOneBitPerField() {
+        StateSnapshot base = snapshot(20, 300f, 270f, 800, AnimationStateMachine.AnimationType.PARRY_F, 2);
+        StateSnapshot sent = snapshot(21, 300f, 270f, 800, AnimationStateMachine.AnimationType.PARRY_F, 2);
+        // seq + distance + one bit for each of the five fields
+        assertEquals((StateSnapshot.SEQ_BITS + 5 + 5 + 7) / 8, encodedSize(sent, base));
+        assertSameState(sent, roundTrip(sent, base, base));
+    }
+
+    @Test
+    void largeJumpFallsBackToFullPosition() {
+        StateSnapshot base = snapshot(30, 100f, 270f, 500, AnimationStateMachine.AnimationType.JUMP, 3);
+        StateSnapshot sent = snapshot(31, 600f, 20f, 320, AnimationStateMachine.AnimationType.KICK_LOW, 4);
+        assertSameState(sent, roundTrip(sent, base, base));
+    }
+
+    @Test
+    void deltaAcrossSeqWrap() {
+        StateSnapshot base = snapshot(StateSnapshot.SEQ_MASK - 1, 150f, 270f, 1000, AnimationStateMachine.AnimationType.IDLE, 0);
+        StateSnapshot sent = snapshot(1, 151f, 270f, 990, AnimationStateMachine.AnimationType.IDLE, 1);
+
+        writer.wrap(buffer.clear());
+        sent.write(writer, base);
+        writer.flush();
+        reader.wrap(buffer.flip());
+        assertEquals(1, StateSnapshot.readSeq(reader));
+        assertEquals(3, StateSnapshot.readBaseDistance(reader));
+        StateSnapshot got = new StateSnapshot();
+        got.readFields(reader, base);
+        got.seq = 1;
+        assertSameState(sent, got);
+
+        assertTrue(StateSnapshot.isNewer(1, StateSnapshot.SEQ_MASK - 1));
+        assertFalse(StateSnapshot.isNewer(StateSnapshot.SEQ_MASK - 1, 1));
+        assertFalse(StateSnapshot.isNewer(7, 7));
+    }
+
+    @Test
+    void baselineOutsideWindowIsWrittenInFull() {
+        StateSnapshot base = snapshot(100, 150f, 270f, 1000, AnimationStateMachine.AnimationType.IDLE, 0);
+        StateSnapshot sent = snapshot(100 + StateSnapshot.WINDOW, 151f, 270f, 1000, AnimationStateMachine.AnimationType.IDLE, 0);
+        assertEquals(encodedSize(sent, null), encodedSize(sent, base));
+        assertSameState(sent, roundTrip(sent, base, null));
+    }
+
+    @Test
+    void quantizesToQuarterPixels() {
+        StateSnapshot s = snapshot(0, 10.3f, 5000f, 5000, AnimationStateMachine.AnimationType.IDLE, 99);
+        assertEquals(10.25f, s.getX());
+        assertEquals(1023.75f, s.getY());
+        assertEquals(2047, s.health);
+        assertEquals(63, s.frameIndex);
+    }
+
+    private static StateSnapshot snapshot(int seq, float x, float y, int health,
+                                          AnimationStateMachine.AnimationType animation, int frame) {
+        StateSnapshot s = new StateSnapshot();
+        s.set(x, y, health, animation, frame);
+        s.seq = seq;
+        return s;
+    }
+
+    private int encodedSize(StateSnapshot sent, StateSnapshot base) {
+        writer.wrap(buffer.clear());
+        sent.write(writer, base);
+        writer.flush();
+        return buffer.position();
+    }
+
+    // Writes against writerBase, then reads the way the server does with readerBase as the named baseline
+    private StateSnapshot roundTrip(StateSnapshot sent, StateSnapshot writerBase, StateSnapshot readerBase) {
+        writer.wrap(buffer.clear());
+        sent.write(writer, writerBase);
+        writer.flush();
+
+        reader.wrap(buffer.flip());
+        StateSnapshot got = new StateSnapshot();
+        got.seq = StateSnapshot.readSeq(reader);
+        int distance = StateSnapshot.readBaseDistance(reader);
+        assertEquals(readerBase == null ? 0 : (sent.seq - readerBase.seq) & StateSnapshot.SEQ_MASK, distance);
+        got.readFields(reader, readerBase);
+        assertFalse(buffer.hasRemaining(), "trailing bytes");
+        return got;
+    }
+
+    private static void assertSameState(StateSnapshot expected, StateSnapshot actual) {
+        assertEquals(expected.seq, actual.seq, "seq");
+        assertEquals(expected.x, actual.x, "x");
+        assertEquals(expected.y, actual.y, "y");
+        assertEquals(expected.health, actual.health, "health");
+        assertEquals(expected.animation, actual.animation, "animation");
+        assertEquals(expected.frameIndex, actual.frameIndex, "frameIndex");
+    }
+}
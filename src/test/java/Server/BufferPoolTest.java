@@ -0,0 +1,103 @@
+package Server;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPoolTest {
+    @Test
+    void handsOutEachBufferOnceUntilReleased() {
+        BufferPool pool = new BufferPool(4, 64);
+        Map<ByteBuffer, Boolean> out = new IdentityHashMap<>();
+        for (int i = 0; i < 4; i++) {
+            assertNull(out.put(pool.acquire(), true), "buffer handed out twice");
+        }
+        assertEquals(0, pool.available());
+        assertEquals(0, pool.getMisses());
+
+        ByteBuffer extra = pool.acquire();
+        assertEquals(1, pool.getMisses());
+        assertFalse(out.containsKey(extra));
+
+        for (ByteBuffer b : out.keySet()) pool.release(b);
+        assertEquals(4, pool.available());
+    }
+
+    @Test
+    void acquiredBufferIsCleared() {
+        BufferPool pool = new BufferPool(1, 64);
+        ByteBuffer b = pool.acquire();
+        b.putInt(7).flip();
+        pool.release(b);
+        ByteBuffer again = pool.acquire();
+        assertSame(b, again);
+        assertEquals(0, again.position());
+        assertEquals(64, again.limit());
+    }
+
+    @Test
+    void foreignBuffersAreNotKept() {
+        BufferPool pool = new BufferPool(2, 64);
+        pool.acquire();
+        pool.release(ByteBuffer.allocate(64));          // heap
+        pool.release(ByteBuffer.allocateDirect(32));    // wrong size
+        pool.release(null);
+        assertEquals(1, pool.available());
+    }
+
+    @Test
+    void fullPoolDropsTheExtraBuffer() {
+        BufferPool pool = new BufferPool(2, 64);
+        pool.release(ByteBuffer.allocateDirect(64));
+        assertEquals(2, pool.available());
+    }
+
+    /** Threads acquiring and releasing at once never hold the same buffer and lose none. */
+    @Test
+    void concurrentUseNeverSharesABuffer() throws InterruptedException {
+        BufferPool pool = new BufferPool(64, 64);
+        Map<IdentityKey, Boolean> held = new ConcurrentHashMap<>();
+        AtomicInteger shared = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                ByteBuffer[] mine = new ByteBuffer[8];
+                for (int round = 0; round < 20_000; round++) {
+                    for (int i = 0; i < mine.length; i++) {
+                        mine[i] = pool.acquire();
+                        if (held.putIfAbsent(new IdentityKey(mine[i]), true) != null) shared.incrementAndGet();
+                    }
+                    for (ByteBuffer b : mine) {
+                        held.remove(new IdentityKey(b));
+                        pool.release(b);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+
+        assertEquals(0, shared.get());
+        assertEquals(0, pool.getMisses());
+        assertEquals(64, pool.available());
+    }
+
+    // ByteBuffer equality is by content; the test needs identity
+    private record IdentityKey(ByteBuffer buffer) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey k && k.buffer == buffer;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(buffer);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package Server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomWorkerTest {
+    private static final SocketAddress FROM = new InetSocketAddress("127.0.0.1", 1);
+
+    private RoomShard shard;
+
+    @BeforeEach
+    void setUp() {
+        shard = new RoomShard("test-shard");
+        shard.start();
+    }
+
+    // Records what the worker hands it; handled counts down once per packet
+    private static final class Recorder implements RoomWorker.Handler {
+        final List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> receivedAt = Collections.synchronizedList(new ArrayList<>());
+        final List<ByteBuffer> released = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done;
+
+        Recorder(int expected) {
+            done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void handlePacket(MatchRoom room, SocketAddress from, ByteBuffer packet, long receivedNanos) {
+            assertSame(FROM, from);
+            handled.add(packet.getInt(0));
+            receivedAt.add(receivedNanos);
+            done.countDown();
+        }
+
+        @Override
+        public void tick(MatchRoom room, long tick) {
+        }
+
+        @Override
+        public void flush(MatchRoom room) {
+        }
+
+        @Override
+        public void release(ByteBuffer packet) {
+            released.add(packet);
+        }
+    }
+
+    private static ByteBuffer packet(int n) {
+        ByteBuffer bb = ByteBuffer.allocate(4);
+        bb.putInt(0, n);
+        return bb;
+    }
+
+    @Test
+    void fullMailboxDropsAtTheDoorAndKeepsOrder() throws InterruptedException {
+        Recorder recorder = new Recorder(RoomWorker.MAILBOX_CAPACITY);
+        RoomWorker worker = new RoomWorker(new MatchRoom(1), recorder, shard, 1_000_000L, 0);
+        int accepted = 0;
+        for (int i = 0; i < RoomWorker.MAILBOX_CAPACITY + 10; i++) {
+            if (worker.post(FROM, packet(i), i)) accepted++;
+        }
+        assertEquals(RoomWorker.MAILBOX_CAPACITY, accepted);
+        assertEquals(10, worker.getDroppedCount());
+
+        worker.start();
+        assertTrue(recorder.done.await(5, TimeUnit.SECONDS), "mail not handled");
+        worker.stop();
+        shard.stop();
+        for (int i = 0; i < RoomWorker.MAILBOX_CAPACITY; i++) {
+            assertEquals(i, (int) recorder.handled.get(i));
+            assertEquals(i, (long) recorder.receivedAt.get(i));
+        }
+    }
+
+    @Test
+    void ringWrapsAroundWhileTheWorkerRuns() throws InterruptedException {
+        int total = 10 * RoomWorker.MAILBOX_CAPACITY;
+        Recorder recorder = new Recorder(total);
+        RoomWorker worker = new RoomWorker(new MatchRoom(2), recorder, shard, 1_000_000L, 0);
+        worker.start();
+        for (int i = 0; i < total; i++) {
+            // The receiver retries nothing; wait out a full mailbox here so every packet is counted
+            while (!worker.post(FROM, packet(i), i)) Thread.onSpinWait();
+        }
+        assertTrue(recorder.done.await(5, TimeUnit.SECONDS), "mail not handled");
+        worker.stop();
+        shard.stop();
+        assertEquals(total, recorder.handled.size());
+        for (int i = 0; i < total; i++) assertEquals(i, (int) recorder.handled.get(i));
+        assertEquals(total, recorder.released.size());
+    }
+
+    @Test
+    void stoppedWorkerRefusesMail() {
+        RoomWorker worker = new RoomWorker(new MatchRoom(3), new Recorder(0), shard, 1_000_000L, 0);
+        worker.stop();
+        shard.stop();
+        assertFalse(worker.post(FROM, packet(0), 0));
+        assertEquals(1, worker.getDroppedCount());
+    }
+
+    @Test
+    void mailLeftInAStoppedRoomIsReleasedUnhandled() throws InterruptedException {
+        Recorder recorder = new Recorder(0);
+        RoomWorker worker = new RoomWorker(new MatchRoom(4), recorder, shard, 1_000_000L, 0);
+        for (int i = 0; i < 3; i++) worker.post(FROM, packet(i), i);
+        worker.stop();
+        worker.start();
+        for (int wait = 0; wait < 500 && recorder.released.size() < 3; wait++) Thread.sleep(10);
+        shard.stop();
+        assertEquals(3, recorder.released.size());
+        assertTrue(recorder.handled.isEmpty());
+    }
+}
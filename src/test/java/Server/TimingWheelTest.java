@@ -0,0 +1,175 @@
+package Server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+    private static final long TICK = 10;
+    private static final int SIZE = 8;
+
+    private TimingWheel wheel;
+    private List<String> fired;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimingWheel(TICK, SIZE, 0);
+        fired = new ArrayList<>();
+    }
+
+    private TimingWheel.Timer timer(String name) {
+        return wheel.newTimer(() -> fired.add(name));
+    }
+
+    @Test
+    void firesOnItsTickAndNotBefore() {
+        TimingWheel.Timer t = timer("a");
+        wheel.schedule(t, 0, 25);   // rounded up to tick 3
+        assertTrue(wheel.isScheduled(t));
+
+        wheel.advance(29);
+        assertTrue(fired.isEmpty());
+        wheel.advance(30);
+        assertEquals(List.of("a"), fired);
+        assertFalse(wheel.isScheduled(t));
+        assertEquals(0, wheel.size());
+
+        wheel.advance(1000);
+        assertEquals(1, fired.size(), "ran twice");
+    }
+
+    @Test
+    void cancelledTimerNeverRuns() {
+        TimingWheel.Timer a = timer("a");
+        TimingWheel.Timer b = timer("b");
+        wheel.schedule(a, 0, 10);
+        wheel.schedule(b, 0, 10);
+        wheel.cancel(a);
+        wheel.cancel(a);
+        assertEquals(1, wheel.size());
+
+        wheel.advance(50);
+        assertEquals(List.of("b"), fired);
+        wheel.cancel(b);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void reschedulingReplacesTheDeadline() {
+        TimingWheel.Timer t = timer("a");
+        wheel.schedule(t, 0, 20);
+        wheel.schedule(t, 0, 60);
+        assertEquals(1, wheel.size());
+
+        wheel.advance(50);
+        assertTrue(fired.isEmpty());
+        wheel.advance(60);
+        assertEquals(List.of("a"), fired);
+
+        // Earlier than before works too
+        wheel.schedule(t, 60, 100);
+        wheel.schedule(t, 60, 10);
+        wheel.advance(70);
+        assertEquals(List.of("a", "a"), fired);
+    }
+
+    @Test
+    void taskCanRearmItself() {
+        int[] runs = {0};
+        TimingWheel.Timer[] t = new TimingWheel.Timer[1];
+        t[0] = wheel.newTimer(() -> {
+            if (++runs[0] < 3) wheel.schedule(t[0], runs[0] * 50L, 50);   // runs at 50, 100, 150
+        });
+        wheel.schedule(t[0], 0, 50);
+
+        for (long now = 0; now <= 500; now += TICK) wheel.advance(now);
+        assertEquals(3, runs[0]);
+        assertFalse(wheel.isScheduled(t[0]));
+    }
+
+    @Test
+    void timerMoreThanARevolutionAwayWaitsForItsTick() {
+        TimingWheel.Timer near = timer("near");
+        TimingWheel.Timer far = timer("far");
+        wheel.schedule(near, 0, 10);               // tick 1
+        wheel.schedule(far, 0, 10 + SIZE * TICK);  // tick 9, same bucket
+
+        wheel.advance(10);
+        assertEquals(List.of("near"), fired);
+        assertTrue(wheel.isScheduled(far));
+        wheel.advance(80);
+        assertEquals(List.of("near"), fired);
+        wheel.advance(90);
+        assertEquals(List.of("near", "far"), fired);
+    }
+
+    @Test
+    void advanceMoreThanARevolutionLateRunsEverythingDueOnce() {
+        // Three revolutions' worth of deadlines, plus one still in the future afterwards
+        List<TimingWheel.Timer> due = new ArrayList<>();
+        for (int tick = 1; tick <= 3 * SIZE; tick++) {
+            TimingWheel.Timer t = timer("t" + tick);
+            wheel.schedule(t, 0, tick * TICK);
+            due.add(t);
+        }
+        TimingWheel.Timer later = timer("later");
+        wheel.schedule(later, 0, 1000 + 3 * TICK);   // tick 103, bucket 7
+
+        wheel.advance(1000);   // tick 100, twelve revolutions on
+        assertEquals(3 * SIZE, fired.size());
+        for (int tick = 1; tick <= 3 * SIZE; tick++) {
+            assertTrue(fired.contains("t" + tick), "t" + tick + " did not run");
+            assertFalse(wheel.isScheduled(due.get(tick - 1)));
+        }
+        assertTrue(wheel.isScheduled(later));
+        assertEquals(1, wheel.size());
+
+        // Every tick up to the late advance counts as processed
+        wheel.advance(1020);
+        assertEquals(3 * SIZE, fired.size());
+        wheel.advance(1030);
+        assertEquals("later", fired.get(fired.size() - 1));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deadlineInThePastRunsOnTheNextTick() {
+        wheel.advance(1000);
+        TimingWheel.Timer t = timer("a");
+        wheel.schedule(t, 500, 0);   // tick 50 already went by
+        wheel.advance(1000);
+        assertTrue(fired.isEmpty());
+        wheel.advance(1010);
+        assertEquals(List.of("a"), fired);
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheOthers() {
+        TimingWheel.Timer bad = wheel.newTimer(() -> {
+            throw new IllegalStateException("boom");
+        });
+        TimingWheel.Timer good = timer("good");
+        wheel.schedule(bad, 0, 10);
+        wheel.schedule(good, 0, 10);
+        wheel.advance(10);
+        assertEquals(List.of("good"), fired);
+    }
+
+    @Test
+    void wheelSizeRoundsUpToPowerOfTwo() {
+        TimingWheel odd = new TimingWheel(TICK, 5, 0);   // 8 buckets
+        int[] runs = {0};
+        TimingWheel.Timer a = odd.newTimer(() -> runs[0]++);
+        TimingWheel.Timer b = odd.newTimer(() -> runs[0]++);
+        odd.schedule(a, 0, 10);
+        odd.schedule(b, 0, 10 + 8 * TICK);
+        odd.advance(10);
+        assertEquals(1, runs[0]);
+        odd.advance(90);
+        assertEquals(2, runs[0]);
+    }
+}